@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar, runs the JMH benchmarks with the GC profiler so every
+ * result reports allocation rate (gc.alloc.rate.norm is bytes per operation) next to
+ * the score. Takes the same arguments as org.openjdk.jmh.Main, for example:
+ *
+ * java -jar benchmarks/target/benchmarks.jar ThrowCatchBenchmark -rf json -rff baseline.json
+ *
+ * @author reemar.app@gmail.com
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rendering a chain of wrapped exceptions, each layer created a few frames deeper in a
+ * recursive call, with printStackTrace() and with CompactStackTrace.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompactStackTraceBenchmark {
+
+    @Param({"3", "12"})
+    public int depth;
+
+    private Throwable chain;
+    private StringBuilder sb;
+
+    @Setup
+    public void setUp() {
+        chain = wrap(depth);
+        sb = new StringBuilder(CompactStackTrace.DEFAULT_MAX_CHARS + 64);
+    }
+
+    private static Throwable wrap(int depth) {
+        if (depth == 0) {
+            return recurse(20, new IllegalStateException("root cause"));
+        }
+        return ApplicationException.failedToInitializeComponent(CompactStackTraceBenchmark.class,
+                recurse(5, wrap(depth - 1)));
+    }
+
+    private static Throwable recurse(int frames, Throwable cause) {
+        if (frames == 0) {
+            return ApplicationException.missingResourceBundle("bundle", cause);
+        }
+        return recurse(frames - 1, cause);
+    }
+
+    @Benchmark
+    public int printStackTrace() {
+        StringWriter out = new StringWriter();
+        chain.printStackTrace(new PrintWriter(out));
+        return out.getBuffer().length();
+    }
+
+    @Benchmark
+    public int compact() {
+        sb.setLength(0);
+        CompactStackTrace.append(chain, sb, CompactStackTrace.DEFAULT_MAX_CHARS, CompactStackTrace.DEFAULT_MAX_FRAMES);
+        return sb.length();
+    }
+}
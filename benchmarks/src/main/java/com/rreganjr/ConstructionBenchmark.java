@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of creating an exception from a factory method, with and without reading
+ * the message, for eager and lazy message formatting.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConstructionBenchmark {
+
+    @Param({"false", "true"})
+    public boolean lazyMessages;
+
+    private boolean originalLazyMessages;
+
+    private String paramName = "name";
+    private String paramValue = "value";
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalLazyMessages = ApplicationException.isLazyMessages();
+        ApplicationException.setLazyMessages(lazyMessages);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ApplicationException.setLazyMessages(originalLazyMessages);
+    }
+
+    @Benchmark
+    public ApplicationException constructOnly() {
+        return ApplicationException.invalidParameterValue(paramName, paramValue);
+    }
+
+    @Benchmark
+    public String constructAndGetMessage() {
+        return ApplicationException.invalidParameterValue(paramName, paramValue).getMessage();
+    }
+
+    @Benchmark
+    public ApplicationException constructNoArgs() {
+        return ApplicationException.notImplemented();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a batch of dates in the default formats of DateParser, mixed at random, against
+ * trying each format in turn and catching the DateTimeParseException of each mismatch.
+ * The dates come from one source per format, as from several import files, or from no
+ * known source.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DateParserBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    private String[] texts;
+    private String[] sources;
+    private DateTimeFormatter[] formatters;
+    private DateParser parser;
+
+    @Setup
+    public void setUp() {
+        String[] patterns = DateParser.DEFAULT_PATTERNS;
+        formatters = new DateTimeFormatter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().appendPattern(patterns[i]);
+            if (!patterns[i].contains("H")) {
+                builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+            }
+            formatters[i] = builder.toFormatter(Locale.ENGLISH);
+        }
+        parser = new DateParser();
+        texts = new String[size];
+        sources = new String[size];
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2000, 1, 1, 0, 0);
+        for (int i = 0; i < size; i++) {
+            int format = random.nextInt(patterns.length);
+            texts[i] = formatters[format].format(start.plusSeconds(random.nextInt(Integer.MAX_VALUE)));
+            sources[i] = "source" + format;
+        }
+    }
+
+    @Benchmark
+    public int exceptionDrivenFallback() {
+        int parsed = 0;
+        for (String text : texts) {
+            for (DateTimeFormatter formatter : formatters) {
+                try {
+                    LocalDateTime.from(formatter.parse(text));
+                    parsed++;
+                    break;
+                } catch (DateTimeParseException e) {
+                    // try the next format
+                }
+            }
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int dateParser() {
+        int parsed = 0;
+        for (String text : texts) {
+            if (parser.tryParse(null, text) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int dateParserBySource() {
+        int parsed = 0;
+        for (int i = 0; i < texts.length; i++) {
+            if (parser.tryParse(sources[i], texts[i]) != null) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of using exceptions as hash set keys, the way deduplication code does. dedupNewExceptions
+ * creates stackless exceptions with lazy messages, so it measures hashing and comparing keys
+ * and arguments of exceptions whose messages are never rendered.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EqualityBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private ApplicationException[] exceptions;
+    private ApplicationException[] probes;
+    private Set<ApplicationException> set;
+    private String[] fields;
+    private String[] values;
+    private boolean originalLazy;
+    private StackTraceMode originalStackTraceMode;
+
+    @Setup
+    public void setUp() {
+        exceptions = new ApplicationException[size];
+        probes = new ApplicationException[size];
+        for (int i = 0; i < size; i++) {
+            exceptions[i] = ApplicationException.invalidParameterValue("field" + (i % 100), "value" + i);
+            probes[i] = ApplicationException.invalidParameterValue("field" + (i % 100), "value" + i);
+        }
+        set = new HashSet<ApplicationException>();
+        for (ApplicationException exception : exceptions) {
+            set.add(exception);
+        }
+        fields = new String[size];
+        values = new String[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = "field" + (i % 100);
+            // every value twice
+            values[i] = "value" + (i / 2);
+        }
+        originalLazy = ApplicationException.isLazyMessages();
+        originalStackTraceMode = ApplicationException.getStackTraceMode();
+        ApplicationException.setLazyMessages(true);
+        ApplicationException.setStackTraceMode(StackTraceMode.NONE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ApplicationException.setLazyMessages(originalLazy);
+        ApplicationException.setStackTraceMode(originalStackTraceMode);
+    }
+
+    @Benchmark
+    public int dedupNewExceptions() {
+        Set<ApplicationException> unique = new HashSet<ApplicationException>(size);
+        for (int i = 0; i < size; i++) {
+            unique.add(ApplicationException.invalidParameterValue(fields[i], values[i]));
+        }
+        return unique.size();
+    }
+
+    @Benchmark
+    public Set<ApplicationException> fillHashSet() {
+        Set<ApplicationException> filled = new HashSet<ApplicationException>(size * 2);
+        for (ApplicationException exception : exceptions) {
+            filled.add(exception);
+        }
+        return filled;
+    }
+
+    @Benchmark
+    public int containsEqualInstances() {
+        int found = 0;
+        for (ApplicationException probe : probes) {
+            if (set.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int hashCodeOnly() {
+        int hash = 0;
+        for (ApplicationException exception : exceptions) {
+            hash += exception.hashCode();
+        }
+        return hash;
+    }
+}
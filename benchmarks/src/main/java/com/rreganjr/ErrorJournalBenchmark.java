@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost to the recording thread of journaling an exception with ErrorJournal, against writing
+ * its message as a line to a buffered text log. The exceptions the journal accepted and dropped
+ * are reported as the recorded and dropped counters.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorJournalBenchmark {
+
+    private Path directory;
+    private ErrorJournal journal;
+    private Writer log;
+    private ApplicationException exception;
+
+    /**
+     * The exceptions each thread recorded and dropped in an iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long recorded;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            recorded = 0;
+            dropped = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = new ErrorJournal(directory);
+        log = new BufferedWriter(Files.newBufferedWriter(directory.resolve("errors.log"), StandardCharsets.UTF_8));
+        exception = ApplicationException.invalidParameterValue("name", "value");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        log.close();
+        for (File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public boolean journal(Counters counters) {
+        boolean recorded = journal.record(exception);
+        if (recorded) {
+            counters.recorded++;
+        } else {
+            counters.dropped++;
+        }
+        return recorded;
+    }
+
+    @Benchmark
+    public Writer textLog() throws IOException {
+        log.write(System.currentTimeMillis() + " " + Thread.currentThread().getName() + " " + exception.getMessage());
+        log.write('\n');
+        return log;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writing a JSON error body with ErrorJsonWriter, against building it in a StringBuilder from
+ * getMessage() and getArguments() and encoding the String, the way a REST layer would without it.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErrorJsonBenchmark {
+
+    private ApplicationException exception;
+    private ByteBuffer buffer;
+    private OutputStream out;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        exception = ApplicationException.invalidParameterValue("name", "value");
+        exception.getMessage();
+        buffer = ByteBuffer.allocateDirect(4096);
+        out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        };
+    }
+
+    @Benchmark
+    public int writeToByteBuffer() {
+        buffer.clear();
+        ErrorJsonWriter.write(exception, buffer);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public void writeToStream() throws IOException {
+        ErrorJsonWriter.write(exception, out);
+    }
+
+    @Benchmark
+    public void stringBuilder() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"code\":\"");
+        escape(sb, exception.getMessageKey().name());
+        sb.append("\",\"message\":\"");
+        escape(sb, exception.getMessage());
+        sb.append("\",\"args\":[");
+        Object[] args = exception.getArguments();
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"');
+            escape(sb, String.valueOf(args[i]));
+            sb.append('"');
+        }
+        sb.append("]}");
+        out.write(sb.toString().getBytes("UTF-8"));
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+}
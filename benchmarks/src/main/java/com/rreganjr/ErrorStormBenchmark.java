@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction latency during an error storm, 4 threads constructing invalidParameterValue
+ * 64 frames deep as fast as they can, with the ErrorStormController off and on. Sampled, so
+ * the p0.99 percentile shows what the controller's degradations take off the tail.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorStormBenchmark {
+
+    @Param({"false", "true"})
+    public boolean controllerEnabled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (controllerEnabled) {
+            ErrorStormController.enable(1000, 100);
+            ErrorStormController.setWindow(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ErrorStormController.disable();
+        ErrorStormController.setWindow(ErrorStormController.DEFAULT_WINDOW_MILLIS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ApplicationException storm() {
+        return construct(64);
+    }
+
+    private static ApplicationException construct(int depth) {
+        if (depth > 0) {
+            return construct(depth - 1);
+        }
+        return ApplicationException.invalidParameterValue("name", "value");
+    }
+}
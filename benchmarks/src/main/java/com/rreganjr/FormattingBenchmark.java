@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the argument formatting helpers: prettyArray with nested arrays and the
+ * comma delimited list builders on small and large inputs, unbounded and limited to the
+ * default number of items.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormattingBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private Object[] nestedArgs;
+    private String[] paramNames;
+    private Object[] values;
+
+    @Setup
+    public void setUp() {
+        paramNames = new String[size];
+        values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            paramNames[i] = "field" + i;
+            values[i] = (i % 2 == 0) ? "value" + i : Integer.valueOf(i);
+        }
+        Object[] inner = new Object[Math.min(size, 100)];
+        System.arraycopy(values, 0, inner, 0, inner.length);
+        nestedArgs = new Object[]{"outer", inner, new Object[]{1L, 2.5d, "x"}, null};
+    }
+
+    @Benchmark
+    public Object[] prettyArrayNested() {
+        return ApplicationException.prettyArray(nestedArgs);
+    }
+
+    @Benchmark
+    public String asCommaDelimitedList() {
+        return ApplicationException.asCommaDelimitedList(paramNames);
+    }
+
+    @Benchmark
+    public String asKeyValueCommaDelimitedList() {
+        return ApplicationException.asKeyValueCommaDelimitedList(paramNames, values);
+    }
+
+    @Benchmark
+    public String boundedCommaDelimitedList() {
+        return DelimitedList.of(paramNames).toString();
+    }
+
+    @Benchmark
+    public String boundedKeyValueCommaDelimitedList() {
+        return DelimitedList.of(paramNames, values, DelimitedList.DEFAULT_MAX_ITEMS).toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of ExceptionMetrics: recording an already constructed exception, alone and
+ * from 4 threads at once, and constructing a stackless exception with metrics on and off.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metricsEnabled;
+
+    private ApplicationException exception;
+    private StackTraceMode originalMode;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalMode = ApplicationException.getStackTraceMode();
+        ApplicationException.setStackTraceMode(StackTraceMode.NONE);
+        exception = ApplicationException.invalidParameterValue("name", "value");
+        if (metricsEnabled) {
+            ExceptionMetrics.enable();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ExceptionMetrics.disable();
+        ApplicationException.setStackTraceMode(originalMode);
+    }
+
+    @Benchmark
+    public void record() {
+        ExceptionMetrics.record(exception);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        ExceptionMetrics.record(exception);
+    }
+
+    @Benchmark
+    public ApplicationException construct() {
+        return ApplicationException.invalidParameterValue("name", "value");
+    }
+}
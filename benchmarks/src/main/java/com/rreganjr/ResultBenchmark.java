@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a batch of numbers where every failureEvery-th one is invalid, reporting failures by
+ * throwing and catching an ApplicationException, against returning an ApplicationError in a
+ * Result that is mapped and checked.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultBenchmark {
+
+    private static final Function<Integer, Integer> DOUBLE = new Function<Integer, Integer>() {
+        public Integer apply(Integer value) {
+            return value * 2;
+        }
+    };
+
+    @Param({"1000"})
+    public int size;
+
+    @Param({"2", "100"})
+    public int failureEvery;
+
+    private String[] texts;
+
+    @Setup
+    public void setUp() {
+        texts = new String[size];
+        for (int i = 0; i < size; i++) {
+            texts[i] = i % failureEvery == 0 ? "x" + i : Integer.toString(i % 128);
+        }
+    }
+
+    @Benchmark
+    public int throwAndCatch() {
+        int sum = 0;
+        for (String text : texts) {
+            try {
+                sum += DOUBLE.apply(parseOrThrow(text));
+            } catch (ApplicationException e) {
+                sum--;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int result() {
+        int sum = 0;
+        for (String text : texts) {
+            Result<Integer> result = parse(text).map(DOUBLE);
+            sum += result.isSuccess() ? result.get() : -1;
+        }
+        return sum;
+    }
+
+    private static int parseOrThrow(String text) {
+        if (!isNumber(text)) {
+            throw ApplicationException.invalidParameterValue("number", text);
+        }
+        return Integer.parseInt(text);
+    }
+
+    private static Result<Integer> parse(String text) {
+        if (!isNumber(text)) {
+            return Result.failure(ApplicationError.invalidParameterValue("number", text));
+        }
+        return Result.success(Integer.valueOf(text));
+    }
+
+    private static boolean isNumber(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
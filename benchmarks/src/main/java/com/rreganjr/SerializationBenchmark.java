@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding an exception with a cause with ExceptionCodec, against Java serialization
+ * with ObjectOutputStream and ObjectInputStream. The encoded sizes of the same exception are
+ * compared by ExceptionCodecTests.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    @Param({"0", "16"})
+    public int maxFrames;
+
+    private ApplicationException exception;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        exception = new ApplicationException(StackTraceMode.FULL, ApplicationException.missingParameterValue("other"),
+                ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value");
+        buffer = ByteBuffer.allocateDirect(64 * 1024);
+        encoded = ByteBuffer.allocate(64 * 1024);
+        ExceptionCodec.encode(exception, encoded, maxFrames, ExceptionCodec.DEFAULT_MAX_CAUSES);
+        encoded.flip();
+        serialized = serialize(exception);
+    }
+
+    private static byte[] serialize(ApplicationException exception) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(exception);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public int codecEncode() {
+        buffer.clear();
+        ExceptionCodec.encode(exception, buffer, maxFrames, ExceptionCodec.DEFAULT_MAX_CAUSES);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public ApplicationException codecDecode() {
+        return ExceptionCodec.decode(encoded.duplicate());
+    }
+
+    @Benchmark
+    public byte[] javaSerialize() throws IOException {
+        return serialize(exception);
+    }
+
+    @Benchmark
+    public Object javaDeserialize() throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
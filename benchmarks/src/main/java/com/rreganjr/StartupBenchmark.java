@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starting components that each wait a few milliseconds, as for a connection, one at a time
+ * against StartupOrchestrator. Every fourth component depends on the three before it.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    // distinct types to identify the components
+    private static final Class<?>[] TYPES = {
+            String.class, Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Character.class,
+            Boolean.class, Object.class, Number.class, Thread.class, Runnable.class, Class.class, Void.class, Math.class
+    };
+
+    @Param({"4", "16"})
+    public int components;
+
+    private StartupOrchestrator.Component[] initializers;
+
+    @Setup
+    public void setUp() {
+        initializers = new StartupOrchestrator.Component[components];
+        for (int i = 0; i < components; i++) {
+            initializers[i] = new StartupOrchestrator.Component() {
+                @Override
+                public void initialize() throws Exception {
+                    Thread.sleep(5);
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public int oneAtATime() throws Exception {
+        for (StartupOrchestrator.Component initializer : initializers) {
+            initializer.initialize();
+        }
+        return initializers.length;
+    }
+
+    @Benchmark
+    public StartupReport orchestrated() throws Exception {
+        StartupOrchestrator orchestrator = new StartupOrchestrator();
+        for (int i = 0; i < components; i++) {
+            if (i % 4 == 3) {
+                orchestrator.add(TYPES[i], initializers[i], TYPES[i - 1], TYPES[i - 2], TYPES[i - 3]);
+            } else {
+                orchestrator.add(TYPES[i], initializers[i]);
+            }
+        }
+        return orchestrator.start();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of throwing an exception depth frames below the benchmark method and catching it,
+ * with the default stack trace mode. See StackTraceModeBenchmark for the other modes.
+ *
+ * @author reemar.app@gmail.com
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ThrowCatchBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    private String paramValue = "value";
+
+    @Benchmark
+    public ApplicationException throwAndCatch() {
+        try {
+            validate(depth, paramValue);
+            return null;
+        } catch (ApplicationException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public String throwAndCatchGetMessage() {
+        try {
+            validate(depth, paramValue);
+            return null;
+        } catch (ApplicationException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static void validate(int depth, String value) {
+        if (depth > 1) {
+            validate(depth - 1, value);
+        } else {
+            throw ApplicationException.invalidParameterValue("name", value);
+        }
+    }
+}
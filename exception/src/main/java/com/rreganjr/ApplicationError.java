@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import com.rreganjr.ApplicationException.MessageKey;
+import com.rreganjr.ApplicationException.MessageKeys;
+
+import java.util.Arrays;
+
+/**
+ * An error as a value: the MessageKey and arguments an ApplicationException would be created
+ * with, without capturing a stack or formatting a message. Hot parsing and validation code
+ * returns it, usually in a {@link Result}, and the boundary calls {@link #toException()}.
+ *
+ * The factories mirror those of ApplicationException, and the exception of an error is equal
+ * to the one the ApplicationException factory creates from the same arguments.
+ *
+ * Errors are immutable as long as their arguments are.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ApplicationError {
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final ApplicationError NOT_IMPLEMENTED = new ApplicationError(null, MessageKeys.MSG_NOT_IMPLEMENTED, NO_ARGS);
+    private static final ApplicationError NO_RESOURCE_BUNDLE = new ApplicationError(null, MessageKeys.MSG_NO_RESOURCE_BUNDLE, NO_ARGS);
+
+    private final Throwable cause;
+    private final MessageKey messageKey;
+    private final Object[] args;
+
+    private ApplicationError(Throwable cause, MessageKey messageKey, Object[] args) {
+        if (messageKey == null) {
+            throw new IllegalArgumentException("messageKey");
+        }
+        this.cause = cause;
+        this.messageKey = messageKey;
+        this.args = args == null ? NO_ARGS : args;
+    }
+
+    /**
+     * @param messageKey - the key of the message, of ApplicationException or of a subclass
+     * @param args - the message arguments
+     * @return an error whose exception is a plain ApplicationException
+     */
+    public static ApplicationError of(MessageKey messageKey, Object... args) {
+        return new ApplicationError(null, messageKey, args);
+    }
+
+    /**
+     * @see #of(MessageKey, Object...)
+     */
+    public static ApplicationError of(Throwable cause, MessageKey messageKey, Object... args) {
+        return new ApplicationError(cause, messageKey, args);
+    }
+
+    /**
+     * @see ApplicationException#notImplemented()
+     */
+    public static ApplicationError notImplemented() {
+        return NOT_IMPLEMENTED;
+    }
+
+    /**
+     * @see ApplicationException#notSupported(Object)
+     */
+    public static ApplicationError notSupported(Object object) {
+        return new ApplicationError(null, MessageKeys.MSG_NOT_SUPPORTED, new Object[]{object});
+    }
+
+    /**
+     * @see ApplicationException#failedToInitializeComponent(Class, Throwable)
+     */
+    public static ApplicationError failedToInitializeComponent(Class<?> type, Throwable cause) {
+        return new ApplicationError(cause, MessageKeys.MSG_FAILED_TO_INITIALIZE_COMPONENT, new Object[]{type.getName(), cause});
+    }
+
+    /**
+     * @see ApplicationException#failedToInitializeComponent(Class, String)
+     */
+    public static ApplicationError failedToInitializeComponent(Class<?> type, String details) {
+        return new ApplicationError(null, MessageKeys.MSG_FAILED_TO_INITIALIZE_COMPONENT, new Object[]{type.getName(), details});
+    }
+
+    /**
+     * @see ApplicationException#unsupportedDateString(String)
+     */
+    public static ApplicationError unsupportedDateString(String dateString) {
+        return new ApplicationError(null, MessageKeys.MSG_UNSUPPORTED_DATE, new Object[]{dateString});
+    }
+
+    /**
+     * @see ApplicationException#missingResourceBundle(String, Throwable)
+     */
+    public static ApplicationError missingResourceBundle(String bundleName, Throwable cause) {
+        return new ApplicationError(cause, MessageKeys.MSG_MISSING_RESOURCE_BUNDLE, new Object[]{bundleName, cause});
+    }
+
+    /**
+     * @see ApplicationException#missingResourceBundle()
+     */
+    public static ApplicationError missingResourceBundle() {
+        return NO_RESOURCE_BUNDLE;
+    }
+
+    /**
+     * @see ApplicationException#invalidParameterValue(String, String)
+     */
+    public static ApplicationError invalidParameterValue(String paramName, String paramValue) {
+        return new ApplicationError(null, MessageKeys.MSG_INVALID_VALUE, new Object[]{paramName, paramValue});
+    }
+
+    /**
+     * @see ApplicationException#invalidParameterValues(String, String)
+     */
+    public static ApplicationError invalidParameterValues(String paramName, String paramValue) {
+        return new ApplicationError(null, MessageKeys.MSG_INVALID_VALUES, new Object[]{paramName, paramValue});
+    }
+
+    /**
+     * @see ApplicationException#missingParameterValue(String)
+     */
+    public static ApplicationError missingParameterValue(String paramName) {
+        return new ApplicationError(null, MessageKeys.MSG_MISSING_VALUE, new Object[]{paramName});
+    }
+
+    /**
+     * @see ApplicationException#missingParameterValues(String)
+     */
+    public static ApplicationError missingParameterValues(String paramName) {
+        return new ApplicationError(null, MessageKeys.MSG_MISSING_VALUES, new Object[]{paramName});
+    }
+
+    /**
+     * @see ApplicationException#invalidAndMissingParameterValues(String, String, String)
+     */
+    public static ApplicationError invalidAndMissingParameterValues(String invalidParamNames, String invalidParamValues,
+                                                                    String missingParamNames) {
+        return new ApplicationError(null, MessageKeys.MSG_INVALID_AND_MISSING_VALUES,
+                new Object[]{invalidParamNames, invalidParamValues, missingParamNames});
+    }
+
+    public MessageKey getMessageKey() {
+        return messageKey;
+    }
+
+    /**
+     * @return a copy of the message arguments
+     */
+    public Object[] getArguments() {
+        return args.clone();
+    }
+
+    /**
+     * @return the cause of the exception, null if none
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Creates the exception, capturing the stack and applying the sharing mode as the
+     * ApplicationException factory does.
+     */
+    public ApplicationException toException() {
+        if (this == NOT_IMPLEMENTED) {
+            return ApplicationException.notImplemented();
+        }
+        if (this == NO_RESOURCE_BUNDLE) {
+            return ApplicationException.missingResourceBundle();
+        }
+        if (cause != null) {
+            return new ApplicationException(cause, messageKey, args);
+        }
+        return new ApplicationException(messageKey, args);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ApplicationError)) {
+            return false;
+        }
+        ApplicationError other = (ApplicationError) obj;
+        return messageKey.equals(other.messageKey) && Arrays.deepEquals(args, other.args)
+                && (cause == null ? other.cause == null : cause.equals(other.cause));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * messageKey.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    /**
+     * @return the key and arguments, the message isn't formatted
+     */
+    @Override
+    public String toString() {
+        return messageKey.name() + Arrays.deepToString(args);
+    }
+}
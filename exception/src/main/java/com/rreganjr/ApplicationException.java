@@ -19,8 +19,20 @@
  */
 package com.rreganjr;
 
-import java.util.Formatter;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,12 +51,111 @@ import org.apache.commons.logging.LogFactory;
  */
 public class ApplicationException extends RuntimeException {
 	static final Log log = LogFactory.getLog(ApplicationException.class);
-    static final ResourceBundle messages = ResourceBundle.getBundle(ApplicationException.class.getName());
     static final long serialVersionUID = 0;
 
     static final String NULL_ARG = "<null>";
 
-    protected static interface MessageKey {
+    /**
+     * System property that turns on lazy message formatting, see {@link #setLazyMessages(boolean)}
+     */
+    public static final String LAZY_MESSAGES_PROPERTY = ApplicationException.class.getName() + ".lazyMessages";
+
+    private static volatile boolean lazyMessages = Boolean.getBoolean(LAZY_MESSAGES_PROPERTY);
+
+    /**
+     * System property naming the default {@link StackTraceMode}, see {@link #setStackTraceMode(StackTraceMode)}.
+     * The mode for a single key can be set with this property followed by "." and the key name, for example
+     * -Dcom.rreganjr.ApplicationException.stackTraceMode.MSG_INVALID_VALUE=NONE
+     */
+    public static final String STACK_TRACE_MODE_PROPERTY = ApplicationException.class.getName() + ".stackTraceMode";
+
+    /**
+     * System property for the number of frames kept in {@link StackTraceMode#SHALLOW} mode.
+     */
+    public static final String SHALLOW_STACK_DEPTH_PROPERTY = ApplicationException.class.getName() + ".shallowStackDepth";
+
+    static final int DEFAULT_SHALLOW_STACK_DEPTH = 8;
+
+    private static volatile StackTraceMode defaultStackTraceMode =
+            StackTraceMode.valueOf(System.getProperty(STACK_TRACE_MODE_PROPERTY, StackTraceMode.FULL.name()));
+    private static volatile int shallowStackDepth = Integer.getInteger(SHALLOW_STACK_DEPTH_PROPERTY, DEFAULT_SHALLOW_STACK_DEPTH);
+    private static final ConcurrentMap<String, StackTraceMode> keyStackTraceModes = stackTraceModesFromSystemProperties();
+
+    private final transient MessageKey msgKey;
+    private final transient Object[] args;
+
+    /**
+     * System property naming the {@link SharingMode}, see {@link #setSharingMode(SharingMode)}.
+     */
+    public static final String SHARING_MODE_PROPERTY = ApplicationException.class.getName() + ".sharingMode";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static volatile SharingMode sharingMode =
+            SharingMode.valueOf(System.getProperty(SHARING_MODE_PROPERTY, SharingMode.NONE.name()));
+    private static final ConcurrentMap<MessageKey, ApplicationException> sharedInstances =
+            new ConcurrentHashMap<MessageKey, ApplicationException>();
+    private static final ThreadLocal<Map<MessageKey, ApplicationException>> perThreadInstances =
+            new ThreadLocal<Map<MessageKey, ApplicationException>>() {
+                @Override
+                protected Map<MessageKey, ApplicationException> initialValue() {
+                    return new HashMap<MessageKey, ApplicationException>();
+                }
+            };
+
+    /**
+     * Set on the thread that is rebuilding decoded exceptions, see {@link #rebuilding(boolean)}.
+     */
+    private static final ThreadLocal<Boolean> rebuilding = new ThreadLocal<Boolean>();
+
+    private static final ApplicationExceptionListener[] NO_LISTENERS = new ApplicationExceptionListener[0];
+    private static volatile ApplicationExceptionListener[] listeners = NO_LISTENERS;
+
+    /**
+     * System property that turns off context capture when "false", see {@link #setContextProvider(ExceptionContextProvider)}.
+     */
+    public static final String CONTEXT_CAPTURE_PROPERTY = ApplicationException.class.getName() + ".contextCapture";
+
+    private static volatile ExceptionContextProvider contextProvider =
+            "false".equalsIgnoreCase(System.getProperty(CONTEXT_CAPTURE_PROPERTY)) ? null : ExceptionContext.BOUND;
+
+    /**
+     * The context when this was constructed, null if there was none.
+     */
+    private final ExceptionContext context;
+
+    /**
+     * The rendered message, written at most once per render and safe to race on since
+     * every render of the same key and args produces an equal string.
+     */
+    private volatile String message;
+
+    /**
+     * The cached {@link #hashCode()}, 0 until it's computed.
+     */
+    private transient int hash;
+
+    /**
+     * False while the Throwable constructors run so that their call to fillInStackTrace()
+     * is skipped, the ApplicationException constructors record the stack for the resolved mode.
+     */
+    private boolean stackTraceResolved;
+
+    /**
+     * The frames of a stack recorded in SHALLOW or NONE mode, read by {@link #frames()} without
+     * the copy getStackTrace() makes. Null for a full stack or after setStackTrace().
+     */
+    private transient StackTraceElement[] ownFrames;
+
+    /**
+     * The cached default {@link ExceptionFingerprint}, 0 until it's computed.
+     */
+    private transient volatile long fingerprint;
+
+    /**
+     * Identifies a message in the ApplicationException*.properties files, usually implemented by an enum.
+     */
+    public static interface MessageKey {
         public String name();
     }
 
@@ -62,11 +173,15 @@ public class ApplicationException extends RuntimeException {
         MSG_INVALID_VALUE,
         MSG_MISSING_VALUE,
         MSG_INVALID_VALUES,
-        MSG_MISSING_VALUES
+        MSG_MISSING_VALUES,
+        MSG_INVALID_AND_MISSING_VALUES
     }
 
+	/**
+	 * @return a new exception, or a shared one depending on the {@link SharingMode}
+	 */
 	public static ApplicationException notImplemented() {
-		return new ApplicationException(MessageKeys.MSG_NOT_IMPLEMENTED);
+		return argumentFree(MessageKeys.MSG_NOT_IMPLEMENTED);
 	}
 
 	public static ApplicationException notSupported(Object object) {
@@ -81,7 +196,7 @@ public class ApplicationException extends RuntimeException {
 	 * @return
 	 */
 	public static ApplicationException failedToInitializeComponent(Class<?> type, Throwable cause) {
-		return new ApplicationException(MessageKeys.MSG_FAILED_TO_INITIALIZE_COMPONENT, type.getName(), cause);
+		return new ApplicationException(cause, MessageKeys.MSG_FAILED_TO_INITIALIZE_COMPONENT, type.getName(), cause);
 	}
 
 	/**
@@ -99,6 +214,7 @@ public class ApplicationException extends RuntimeException {
 	/**
 	 * @param dateString
 	 * @return
+	 * @see DateParser
 	 */
 	public static ApplicationException unsupportedDateString(String dateString) {
 		return new ApplicationException(MessageKeys.MSG_UNSUPPORTED_DATE, dateString);
@@ -114,10 +230,10 @@ public class ApplicationException extends RuntimeException {
 	}
 
 	/**
-	 * @return
+	 * @return a new exception, or a shared one depending on the {@link SharingMode}
 	 */
 	public static ApplicationException missingResourceBundle() {
-		return new ApplicationException(MessageKeys.MSG_NO_RESOURCE_BUNDLE);
+		return argumentFree(MessageKeys.MSG_NO_RESOURCE_BUNDLE);
 	}
 
 
@@ -161,6 +277,20 @@ public class ApplicationException extends RuntimeException {
 		return new ApplicationException(MessageKeys.MSG_MISSING_VALUES, paramName);
 	}
 
+	/**
+	 * 
+	 * @param invalidParamNames - the names of the parameters that have invalid values.
+	 * @param invalidParamValues - the invalid values.
+	 * @param missingParamNames - the names of the parameters that have no value.
+	 * @return ApplicationException
+	 * @see ValidationCollector
+	 */
+	public static ApplicationException invalidAndMissingParameterValues(String invalidParamNames, String invalidParamValues,
+			String missingParamNames) {
+		return new ApplicationException(MessageKeys.MSG_INVALID_AND_MISSING_VALUES, invalidParamNames, invalidParamValues,
+				missingParamNames);
+	}
+
 	/**
 	 * @param msgKey -
 	 *            the resource key to a format string appropriate for java.util.Formatter
@@ -169,10 +299,28 @@ public class ApplicationException extends RuntimeException {
 	 *            string
 	 */
 	protected ApplicationException(MessageKey msgKey, Object... args) {
-		super(format(msgKey, prettyArray(args)));
-		if (log.isDebugEnabled()) {
-			log.debug(getMessage());
+		super((String) null);
+		this.msgKey = msgKey;
+		this.args = args;
+		if (rebuilding.get() != null) {
+			this.context = null;
+			resolveStackTrace(StackTraceMode.NONE);
+			return;
+		}
+		this.context = captureContext();
+		int degradations = ErrorStormController.degradations(msgKey);
+		StackTraceMode stackTraceMode = (degradations & ErrorStormController.STACKLESS) != 0
+				? StackTraceMode.NONE : stackTraceMode(msgKey);
+		if (resolveStackTrace(stackTraceMode)) {
+			super.fillInStackTrace();
+		}
+		if (!lazyMessages && (degradations & ErrorStormController.DEFERRED_MESSAGES) == 0) {
+			this.message = render(Locale.getDefault());
 		}
+		if ((degradations & ErrorStormController.NO_DEBUG_LOGGING) == 0 && log.isDebugEnabled()) {
+			LoggingPolicy.debug(this, msgKey.name());
+		}
+		notifyListeners(stackTraceMode, false);
 	}
 
 	/**
@@ -185,22 +333,501 @@ public class ApplicationException extends RuntimeException {
 	 *            string
 	 */
 	protected ApplicationException(Throwable cause, MessageKey msgKey, Object... args) {
-		super(format(msgKey, prettyArray(args)), cause);
-		if (log.isDebugEnabled()) {
-			log.debug(getMessage(), cause);
+		super(null, cause);
+		this.msgKey = msgKey;
+		this.args = args;
+		if (rebuilding.get() != null) {
+			this.context = null;
+			resolveStackTrace(StackTraceMode.NONE);
+			return;
+		}
+		this.context = captureContext();
+		int degradations = ErrorStormController.degradations(msgKey);
+		StackTraceMode stackTraceMode = (degradations & ErrorStormController.STACKLESS) != 0
+				? StackTraceMode.NONE : stackTraceMode(msgKey);
+		if (resolveStackTrace(stackTraceMode)) {
+			super.fillInStackTrace();
+		}
+		if (!lazyMessages && (degradations & ErrorStormController.DEFERRED_MESSAGES) == 0) {
+			this.message = render(Locale.getDefault());
 		}
+		if ((degradations & ErrorStormController.NO_DEBUG_LOGGING) == 0 && log.isDebugEnabled()) {
+			LoggingPolicy.debug(this, msgKey.name());
+		}
+		notifyListeners(stackTraceMode, false);
 	}
 
+	/**
+	 * Use this constructor from factory methods that always want a particular
+	 * stack trace mode, regardless of the configured mode for the msgKey.
+	 *
+	 * @param stackTraceMode -
+	 *            how much of the stack to record
+	 * @param cause -
+	 *            a caught exception that resulted in this exception, may be null
+	 * @param msgKey -
+	 *            the resource key to a format string appropriate for java.util.Formatter
+	 * @param args -
+	 *            variable args list that map to the variables in the format
+	 *            string
+	 */
+	protected ApplicationException(StackTraceMode stackTraceMode, Throwable cause, MessageKey msgKey, Object... args) {
+		super(null, cause);
+		this.msgKey = msgKey;
+		this.args = args;
+		if (rebuilding.get() != null) {
+			this.context = null;
+			resolveStackTrace(StackTraceMode.NONE);
+			return;
+		}
+		this.context = captureContext();
+		// a storm doesn't override the explicit stack trace mode
+		int degradations = ErrorStormController.degradations(msgKey);
+		if (resolveStackTrace(stackTraceMode)) {
+			super.fillInStackTrace();
+		}
+		if (!lazyMessages && (degradations & ErrorStormController.DEFERRED_MESSAGES) == 0) {
+			this.message = render(Locale.getDefault());
+		}
+		if ((degradations & ErrorStormController.NO_DEBUG_LOGGING) == 0 && log.isDebugEnabled()) {
+			LoggingPolicy.debug(this, msgKey.name());
+		}
+		notifyListeners(stackTraceMode, false);
+	}
+
+    /**
+     * Creates an immutable stackless instance for the {@link SharingMode}: suppression and stack
+     * trace writes are disabled and the null cause can't be initialized later.
+     */
+    private ApplicationException(SharingMode sharingMode, MessageKey msgKey) {
+        super(null, null, false, false);
+        this.msgKey = msgKey;
+        this.args = NO_ARGS;
+        this.context = null;
+        this.stackTraceResolved = true;
+        this.ownFrames = StackFrames.EMPTY;
+        this.message = render(Locale.getDefault());
+    }
+
     /**
      * For testing only
      */
     ApplicationException(String message) {
         super(message);
+        this.msgKey = null;
+        this.args = null;
+        this.context = captureContext();
+        if (resolveStackTrace(StackTraceMode.FULL)) {
+            super.fillInStackTrace();
+        }
+    }
+
+    /**
+     * While set, the constructors build a plain instance for {@link ExceptionCodec}: no stack or
+     * context is recorded, the message is rendered when it's asked for and neither the storm
+     * controller nor the listeners are told, the exception was already counted where it was thrown.
+     *
+     * @param rebuilding - true before calling the constructor of a decoded exception, false after
+     */
+    static void rebuilding(boolean rebuilding) {
+        if (rebuilding) {
+            ApplicationException.rebuilding.set(Boolean.TRUE);
+        } else {
+            ApplicationException.rebuilding.remove();
+        }
+    }
+
+    /**
+     * Records the stack for SHALLOW mode and marks the stack as resolved so later
+     * calls to fillInStackTrace() behave normally.
+     *
+     * @return true if the caller should record the full stack, this has to happen
+     *         directly in the constructor so the trace starts at the caller like any other exception.
+     */
+    private boolean resolveStackTrace(StackTraceMode stackTraceMode) {
+        stackTraceResolved = true;
+        if (stackTraceMode == StackTraceMode.SHALLOW) {
+            StackTraceElement[] frames = StackFrames.capture(shallowStackDepth);
+            setStackTrace(frames);
+            ownFrames = frames;
+        } else if (stackTraceMode == StackTraceMode.NONE) {
+            ownFrames = StackFrames.EMPTY;
+        }
+        return stackTraceMode == StackTraceMode.FULL;
+    }
+
+    @Override
+    public void setStackTrace(StackTraceElement[] stackTrace) {
+        super.setStackTrace(stackTrace);
+        ownFrames = null;
+        fingerprint = 0;
+    }
+
+    /**
+     * @return the stack trace, not a copy when the exception recorded a shallow one or none, must not be modified
+     */
+    StackTraceElement[] frames() {
+        StackTraceElement[] frames = ownFrames;
+        return frames != null ? frames : getStackTrace();
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    void fingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Skips the stack capture done by the Throwable constructors, see {@link #resolveStackTrace(StackTraceMode)}.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        if (!stackTraceResolved) {
+            return this;
+        }
+        return super.fillInStackTrace();
+    }
+
+    /**
+     * Sets how much of the stack new exceptions record when their MessageKey doesn't have
+     * its own mode. Defaults to the value of the {@link #STACK_TRACE_MODE_PROPERTY} system
+     * property or {@link StackTraceMode#FULL}.
+     *
+     * @param stackTraceMode - the default mode
+     */
+    public static void setStackTraceMode(StackTraceMode stackTraceMode) {
+        if (stackTraceMode == null) {
+            throw new IllegalArgumentException("stackTraceMode");
+        }
+        defaultStackTraceMode = stackTraceMode;
+    }
+
+    /**
+     * @return the mode used for MessageKeys without their own mode
+     */
+    public static StackTraceMode getStackTraceMode() {
+        return defaultStackTraceMode;
+    }
+
+    /**
+     * Sets how much of the stack new exceptions with the named MessageKey record.
+     *
+     * @param keyName - the name of the MessageKey, for example "MSG_INVALID_VALUE"
+     * @param stackTraceMode - the mode for the key or null to use the default mode
+     */
+    public static void setStackTraceMode(String keyName, StackTraceMode stackTraceMode) {
+        if (stackTraceMode == null) {
+            keyStackTraceModes.remove(keyName);
+        } else {
+            keyStackTraceModes.put(keyName, stackTraceMode);
+        }
+    }
+
+    /**
+     * @param keyName - the name of the MessageKey
+     * @return the mode new exceptions with the named MessageKey will use
+     */
+    public static StackTraceMode getStackTraceMode(String keyName) {
+        StackTraceMode stackTraceMode = keyStackTraceModes.get(keyName);
+        return stackTraceMode != null ? stackTraceMode : defaultStackTraceMode;
+    }
+
+    /**
+     * @param depth - the number of frames recorded in {@link StackTraceMode#SHALLOW} mode
+     */
+    public static void setShallowStackDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth");
+        }
+        shallowStackDepth = depth;
+    }
+
+    public static int getShallowStackDepth() {
+        return shallowStackDepth;
+    }
+
+    static StackTraceMode stackTraceMode(MessageKey msgKey) {
+        if (msgKey != null && !keyStackTraceModes.isEmpty()) {
+            StackTraceMode stackTraceMode = keyStackTraceModes.get(msgKey.name());
+            if (stackTraceMode != null) {
+                return stackTraceMode;
+            }
+        }
+        return defaultStackTraceMode;
+    }
+
+    private static ConcurrentMap<String, StackTraceMode> stackTraceModesFromSystemProperties() {
+        ConcurrentMap<String, StackTraceMode> modes = new ConcurrentHashMap<String, StackTraceMode>();
+        String prefix = STACK_TRACE_MODE_PROPERTY + ".";
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                modes.put(name.substring(prefix.length()), StackTraceMode.valueOf(System.getProperty(name)));
+            }
+        }
+        return modes;
+    }
+
+    /**
+     * Calls the listeners at the end of the ApplicationException constructors, and emits the
+     * {@link JfrEvents creation event} first.
+     *
+     * @param stackTraceMode - how much of the stack was recorded
+     * @param shared - true if this is a shared instance being handed out again
+     */
+    private void notifyListeners(StackTraceMode stackTraceMode, boolean shared) {
+        JfrEvents.exceptionCreated(this, stackTraceMode, shared);
+        ApplicationExceptionListener[] listeners = ApplicationException.listeners;
+        for (int i = 0; i < listeners.length; i++) {
+            try {
+                listeners[i].exceptionCreated(this);
+            } catch (RuntimeException e) {
+                log.warn("ApplicationExceptionListener " + listeners[i] + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is told about every ApplicationException constructed from a MessageKey.
+     *
+     * @param listener - the listener to add, adding the same listener twice has no effect
+     */
+    public static synchronized void addListener(ApplicationExceptionListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        for (ApplicationExceptionListener existing : listeners) {
+            if (existing == listener) {
+                return;
+            }
+        }
+        ApplicationExceptionListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * @param listener - the listener to remove
+     */
+    public static synchronized void removeListener(ApplicationExceptionListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                ApplicationExceptionListener[] removed = new ApplicationExceptionListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, listeners.length - i - 1);
+                listeners = removed.length == 0 ? NO_LISTENERS : removed;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets what supplies the context of new exceptions, by default {@link ExceptionContext#BOUND}
+     * which captures the context bound with {@link ExceptionContext#run(ExceptionContext, Runnable)}.
+     * Shared instances, see {@link #setSharingMode(SharingMode)}, never have a context.
+     *
+     * @param provider - the provider or null to capture no context
+     */
+    public static void setContextProvider(ExceptionContextProvider provider) {
+        contextProvider = provider;
+    }
+
+    public static ExceptionContextProvider getContextProvider() {
+        return contextProvider;
+    }
+
+    private static ExceptionContext captureContext() {
+        ExceptionContextProvider provider = contextProvider;
+        if (provider == null) {
+            return null;
+        }
+        try {
+            return provider.capture();
+        } catch (RuntimeException e) {
+            log.warn("ExceptionContextProvider " + provider + " failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the key of the message or null for exceptions created from a plain message
+     */
+    public MessageKey getMessageKey() {
+        return msgKey;
+    }
+
+    /**
+     * @return a copy of the arguments the message is formatted with
+     */
+    public Object[] getArguments() {
+        return args == null ? new Object[0] : args.clone();
+    }
+
+    /**
+     * @return the context captured when this was constructed, {@link ExceptionContext#EMPTY} if there was none
+     */
+    public ExceptionContext getContext() {
+        return context == null ? ExceptionContext.EMPTY : context;
+    }
+
+    /**
+     * @return the arguments without copying them, they must not be changed
+     */
+    Object[] arguments() {
+        return args;
+    }
+
+    /**
+     * When lazy messages are on, exceptions keep their MessageKey and raw arguments and only
+     * look up and format the message the first time {@link #getMessage()} is called. This saves
+     * the bundle lookup and formatting for exceptions that are caught and discarded. Arguments
+     * are rendered when the message is first read, so they should not be changed after the
+     * exception is created.
+     *
+     * Defaults to the value of the {@link #LAZY_MESSAGES_PROPERTY} system property.
+     *
+     * @param lazy - true to defer formatting until the message is read
+     */
+    public static void setLazyMessages(boolean lazy) {
+        lazyMessages = lazy;
+    }
+
+    /**
+     * @return true if new exceptions defer formatting their message until it is read
+     */
+    public static boolean isLazyMessages() {
+        return lazyMessages;
+    }
+
+    /**
+     * Sets whether argument-free factories such as {@link #notImplemented()} return shared
+     * immutable instances, see {@link SharingMode} for the contract.
+     *
+     * Defaults to the value of the {@link #SHARING_MODE_PROPERTY} system property, NONE when not set.
+     */
+    public static void setSharingMode(SharingMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode");
+        }
+        sharingMode = mode;
+    }
+
+    public static SharingMode getSharingMode() {
+        return sharingMode;
+    }
+
+    /**
+     * Drops the shared instances so they are created again, with freshly rendered messages, on next use.
+     * Instances already handed out to threads in PER_THREAD mode are kept by those threads.
+     */
+    static void clearSharedInstances() {
+        sharedInstances.clear();
+    }
+
+    private static ApplicationException argumentFree(MessageKey msgKey) {
+        SharingMode mode = sharingMode;
+        if (mode == SharingMode.NONE) {
+            return new ApplicationException(msgKey);
+        }
+        ApplicationException exception;
+        if (mode == SharingMode.SHARED) {
+            exception = sharedInstances.get(msgKey);
+            if (exception == null) {
+                exception = new ApplicationException(mode, msgKey);
+                ApplicationException existing = sharedInstances.putIfAbsent(msgKey, exception);
+                if (existing != null) {
+                    exception = existing;
+                }
+            }
+        } else {
+            Map<MessageKey, ApplicationException> instances = perThreadInstances.get();
+            exception = instances.get(msgKey);
+            if (exception == null) {
+                exception = new ApplicationException(mode, msgKey);
+                instances.put(msgKey, exception);
+            }
+        }
+        exception.notifyListeners(StackTraceMode.NONE, true);
+        return exception;
+    }
+
+    /**
+     * @return the message formatted from the MessageKey and arguments, rendered on first access
+     *         when lazy messages are on.
+     */
+    @Override
+    public String getMessage() {
+        String message = this.message;
+        if (message == null) {
+            if (msgKey == null) {
+                return super.getMessage();
+            }
+            message = render(Locale.getDefault());
+            this.message = message;
+        }
+        return message;
+    }
+
+    /**
+     * Renders the message in another locale, the message in the default locale is the one
+     * returned by {@link #getMessage()}.
+     *
+     * @param locale - the locale to look the message bundle up for
+     * @return the message formatted from the bundle for the locale, not cached
+     */
+    public String getMessage(Locale locale) {
+        if (msgKey == null || locale.equals(Locale.getDefault())) {
+            return getMessage();
+        }
+        return render(locale);
+    }
+
+    /**
+     * The base name of the bundle with the messages of this exception's MessageKeys. Called
+     * from the constructor, so overrides must not depend on the state of the subclass. The
+     * bundle is loaded with the class loader of the exception's class.
+     *
+     * @return the bundle base name, {@link MessageSource#DEFAULT_BUNDLE} unless overridden
+     */
+    protected String getBundleName() {
+        return MessageSource.DEFAULT_BUNDLE;
+    }
+
+    private String render(Locale locale) {
+        Object event = JfrEvents.beginFormatting();
+        String bundleName = getBundleName();
+        ClassLoader loader = getClass().getClassLoader();
+        // the compiled message is the base bundle's, a translation for the default locale wins
+        if (msgKey instanceof CompiledMessageKey && locale.equals(Locale.getDefault())
+                && MessageSource.isBaseBundle(bundleName, locale, loader)) {
+            try {
+                String rendered = ((CompiledMessageKey) msgKey).render(args);
+                JfrEvents.endFormatting(event, msgKey, null, locale, true);
+                return rendered;
+            } catch (ClassCastException e) {
+                // arguments that didn't come through the generated factory, decoded by ExceptionCodec
+                // for example, aren't of the declared types, the bundle's pattern renders any argument
+            }
+        }
+        boolean cached = event != null && MessageSource.isCached(bundleName, locale, loader, msgKey);
+        String rendered = MessageSource.getTemplate(bundleName, locale, loader, msgKey).render(args);
+        JfrEvents.endFormatting(event, msgKey, bundleName, locale, cached);
+        return rendered;
+    }
+
+    /**
+     * The MessageKey and arguments are not serialized, make sure the message is.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
     }
 
 	/**
 	 * Format the supplied format string with the supplied arguments and return the string.
-	 * Cleanup the formatter.
+	 * The format string is compiled once per key, see MessageTemplate, and each argument
+	 * is rendered once with appendPretty.
 	 *
      * @param msgKey -
      *            the resource key to a format string appropriate for java.util.Formatter
@@ -209,13 +836,14 @@ public class ApplicationException extends RuntimeException {
 	 * @see java.util.Formatter
 	 */
 	static String format(MessageKey msgKey, Object... args) {
-		Formatter formatter = new Formatter();
-		try {
-            String format = messages.getString(msgKey.name());
-			return formatter.format(format, prettyArray(args)).toString();
-		} finally {
-			formatter.close();
-		}
+		return MessageSource.getTemplate(MessageSource.DEFAULT_BUNDLE, Locale.getDefault(), msgKey).render(args);
+	}
+
+	/**
+	 * @return the bundle of the ApplicationException messages for the default locale, loaded on first use
+	 */
+	static ResourceBundle messages() {
+		return MessageSource.getBundle(MessageSource.DEFAULT_BUNDLE, Locale.getDefault());
 	}
 
 	static Object[] prettyArray(Object[] args) {
@@ -223,27 +851,8 @@ public class ApplicationException extends RuntimeException {
             return new Object[0];
         }
 		Object[] pretty = new Object[args.length];
-		int i = 0;
-		for (Object o : args) {
-			if (o != null) {
-				if (Object[].class.isAssignableFrom(o.getClass())) {
-					StringBuilder b = new StringBuilder();
-					Object[] inner = (Object[])args[i];
-					if (inner.length > 0) {
-						for (int x = 0; x < inner.length - 1; x++) {
-							b.append(pretty(inner[x]));
-							b.append(", ");
-						}
-						b.append(pretty(inner[inner.length -1]));
-					}
-					pretty[i] = b.toString();
-				} else {
-					pretty[i] = pretty(o);
-				}
-			} else {
-				pretty[i] = NULL_ARG;
-			}
-			i++;
+		for (int i = 0; i < args.length; i++) {
+			pretty[i] = pretty(args[i]);
 		}
 		return pretty;
 	}
@@ -253,71 +862,343 @@ public class ApplicationException extends RuntimeException {
 			return NULL_ARG;
 		} else if (o instanceof String) {
 			return "\"" + o + "\"";
+		} else if (o instanceof Collection || o.getClass().isArray()) {
+			StringBuilder sb = new StringBuilder();
+			appendPretty(sb, o);
+			return sb.toString();
 		} else {
 			return o.toString();
 		}
 	}
 
+    /**
+     * Appends the same text as pretty(o) without creating intermediate strings: Strings are
+     * quoted, arrays (including primitive arrays) and Collections are flattened into a
+     * ", " delimited list and boxed primitives are appended as primitives.
+     *
+     * @param sb - the destination
+     * @param o - the argument to render
+     */
+    static void appendPretty(StringBuilder sb, Object o) {
+        appendPretty(sb, o, 0);
+    }
+
+    /**
+     * Appends an argument the way it appears in messages, for {@link CompiledMessageKey}s.
+     *
+     * @param sb - the destination
+     * @param arg - the argument to render
+     */
+    public static void appendArgument(StringBuilder sb, Object arg) {
+        appendPretty(sb, arg, 0);
+    }
+
+    private static final int MAX_PRETTY_NESTING = 8;
+
+    private static void appendPretty(StringBuilder sb, Object o, int nesting) {
+        if (o == null) {
+            sb.append(NULL_ARG);
+        } else if (o instanceof String) {
+            sb.append('"').append((String) o).append('"');
+        } else if (o instanceof Integer) {
+            sb.append(((Integer) o).intValue());
+        } else if (o instanceof Long) {
+            sb.append(((Long) o).longValue());
+        } else if (o instanceof Double) {
+            sb.append(((Double) o).doubleValue());
+        } else if (o instanceof Boolean) {
+            sb.append(((Boolean) o).booleanValue());
+        } else if (o instanceof Character) {
+            sb.append(((Character) o).charValue());
+        } else if (nesting >= MAX_PRETTY_NESTING) {
+            sb.append(o.toString());
+        } else if (o instanceof Object[]) {
+            Object[] array = (Object[]) o;
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendPretty(sb, array[i], nesting + 1);
+            }
+        } else if (o instanceof Collection) {
+            appendPrettyCollection(sb, (Collection<?>) o, nesting + 1);
+        } else if (o.getClass().isArray()) {
+            appendPrettyPrimitiveArray(sb, o);
+        } else if (o instanceof CharSequence) {
+            sb.append((CharSequence) o);
+        } else {
+            sb.append(o.toString());
+        }
+    }
+
+    private static void appendPrettyCollection(StringBuilder sb, Collection<?> collection, int nesting) {
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            List<?> list = (List<?>) collection;
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendPretty(sb, list.get(i), nesting);
+            }
+        } else {
+            boolean first = true;
+            for (Object element : collection) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                appendPretty(sb, element, nesting);
+                first = false;
+            }
+        }
+    }
+
+    private static void appendPrettyPrimitiveArray(StringBuilder sb, Object array) {
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (array instanceof int[]) {
+                sb.append(((int[]) array)[i]);
+            } else if (array instanceof long[]) {
+                sb.append(((long[]) array)[i]);
+            } else if (array instanceof double[]) {
+                sb.append(((double[]) array)[i]);
+            } else if (array instanceof float[]) {
+                sb.append(((float[]) array)[i]);
+            } else if (array instanceof boolean[]) {
+                sb.append(((boolean[]) array)[i]);
+            } else if (array instanceof char[]) {
+                sb.append(((char[]) array)[i]);
+            } else if (array instanceof short[]) {
+                sb.append(((short[]) array)[i]);
+            } else {
+                sb.append(((byte[]) array)[i]);
+            }
+        }
+    }
+
     /**
      * @param paramNames an array of parameter names
      * @return a String of the supplied array delimited by ", "
      */
     protected static String asCommaDelimitedList(String[] paramNames) {
-        StringBuilder sb = new StringBuilder();
-        if (paramNames != null) {
-            for (String paramName : paramNames) {
-                sb.append(paramName);
-                sb.append(", ");
+        return DelimitedList.of(paramNames, Integer.MAX_VALUE).toString();
+    }
+
+    /**
+     * @param paramNames an array of parameter names
+     * @param maxItems the most names rendered, the rest are counted as " and N more"
+     * @return a list of the supplied array delimited by ", ", rendered when first used
+     */
+    protected static DelimitedList asCommaDelimitedList(String[] paramNames, int maxItems) {
+        return DelimitedList.of(paramNames, maxItems);
+    }
+
+    protected static String asKeyValueCommaDelimitedList(String[] paramNames, Object[] values) {
+        return DelimitedList.of(paramNames, values, Integer.MAX_VALUE).toString();
+    }
+
+    /**
+     * @param paramNames an array of parameter names
+     * @param values the value of each parameter
+     * @param maxItems the most pairs rendered, the rest are counted as " and N more"
+     * @return a list of "name: value" pairs delimited by ", ", rendered when first used
+     */
+    protected static DelimitedList asKeyValueCommaDelimitedList(String[] paramNames, Object[] values, int maxItems) {
+        return DelimitedList.of(paramNames, values, maxItems);
+    }
+
+    /**
+     * Exceptions created from a MessageKey hash their class, key and arguments, so hashing
+     * never renders the message. The hash is computed once, the arguments must not change
+     * after construction. Exceptions created from a plain message hash the message.
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            final int prime = 31;
+            h = prime + getClass().hashCode();
+            if (msgKey == null) {
+                h = prime * h + (getMessage() == null ? 0 : getMessage().hashCode());
+            } else {
+                h = prime * h + msgKey.name().hashCode();
+                h = prime * h + argumentsHash(args, 0);
             }
-            if (sb.length() > 2) {
-                sb.setLength(sb.length() - 2);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Exceptions created from a MessageKey are equal when they have the same class, key and
+     * arguments, compared without rendering. Arguments are normalized the way they render:
+     * Integer, Long, Short and Byte are equal when their values are, as are Double and Float,
+     * arrays and Collections are equal when their elements are, Strings are only equal to
+     * Strings and other CharSequences are equal when their characters are. Arguments decoded
+     * by {@link ExceptionCodec} as their rendering are equal to the arguments that render the
+     * same and are neither Strings, boxed primitives nor sequences. Other arguments are
+     * compared with equals(). Exceptions created from a plain message are equal when the
+     * messages are, and never equal to exceptions created from a MessageKey.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ApplicationException other = (ApplicationException) obj;
+        if (msgKey == null || other.msgKey == null) {
+            if (msgKey != other.msgKey) {
+                return false;
             }
+            return getMessage() == null ? other.getMessage() == null : getMessage().equals(other.getMessage());
         }
-        return sb.toString();
+        if (hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        if (msgKey != other.msgKey
+                && (msgKey.getClass() != other.msgKey.getClass() || !msgKey.name().equals(other.msgKey.name()))) {
+            return false;
+        }
+        return sameArguments(args, other.args, 0);
     }
 
-    protected static String asKeyValueCommaDelimitedList(String[] paramNames, Object[] values) {
-        StringBuilder sb = new StringBuilder();
-        if (paramNames != null) {
-            int i = 0;
-            for (i=0; i<paramNames.length; i++) {
-                sb.append(paramNames[i]);
-                sb.append(": ");
-                sb.append(values[i]);
-                sb.append(", ");
+    private static final int RENDERED_HASH = 0x52;
+
+    private static int argumentsHash(Object[] args, int nesting) {
+        int h = 1;
+        for (int i = 0; args != null && i < args.length; i++) {
+            h = 31 * h + argumentHash(args[i], nesting);
+        }
+        return h;
+    }
+
+    private static int argumentHash(Object arg, int nesting) {
+        if (arg == null) {
+            return 0;
+        } else if (arg instanceof String) {
+            return arg.hashCode();
+        } else if (isIntegral(arg)) {
+            long value = ((Number) arg).longValue();
+            return (int) (value ^ (value >>> 32));
+        } else if (arg instanceof Double || arg instanceof Float) {
+            long bits = Double.doubleToLongBits(((Number) arg).doubleValue());
+            return (int) (bits ^ (bits >>> 32));
+        } else if (nesting < MAX_PRETTY_NESTING && arg instanceof Object[]) {
+            return argumentsHash((Object[]) arg, nesting + 1);
+        } else if (nesting < MAX_PRETTY_NESTING && (arg instanceof Collection || arg.getClass().isArray())) {
+            int h = 1;
+            int length = sequenceLength(arg);
+            Iterator<?> elements = arg instanceof Collection ? ((Collection<?>) arg).iterator() : null;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + argumentHash(elements != null ? elements.next() : Array.get(arg, i), nesting + 1);
+            }
+            return h;
+        } else if (arg instanceof Boolean || arg instanceof Character) {
+            return arg.hashCode();
+        }
+        // may be equal to an argument decoded as its rendering, which can't be hashed alike without rendering
+        return RENDERED_HASH;
+    }
+
+    private static boolean sameArguments(Object[] args, Object[] otherArgs, int nesting) {
+        int length = args == null ? 0 : args.length;
+        if (length != (otherArgs == null ? 0 : otherArgs.length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!sameArgument(args[i], otherArgs[i], nesting)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameArgument(Object arg, Object other, int nesting) {
+        if (arg == other) {
+            return true;
+        } else if (arg == null || other == null) {
+            return false;
+        } else if (arg instanceof String || other instanceof String) {
+            return arg.equals(other);
+        } else if (arg instanceof ExceptionCodec.RenderedArgument || other instanceof ExceptionCodec.RenderedArgument) {
+            // only arguments hashed alike, the codec sends the others as their own types
+            return hashedByRendering(arg, nesting) && hashedByRendering(other, nesting)
+                    && rendering(arg).equals(rendering(other));
+        } else if (isIntegral(arg)) {
+            return isIntegral(other) && ((Number) arg).longValue() == ((Number) other).longValue();
+        } else if (arg instanceof Double || arg instanceof Float) {
+            return (other instanceof Double || other instanceof Float)
+                    && Double.compare(((Number) arg).doubleValue(), ((Number) other).doubleValue()) == 0;
+        } else if (nesting < MAX_PRETTY_NESTING && isSequence(arg)) {
+            return isSequence(other) && sameSequence(arg, other, nesting + 1);
+        } else if (arg instanceof CharSequence) {
+            if (!(other instanceof CharSequence)) {
+                return false;
+            }
+            CharSequence chars = (CharSequence) arg;
+            CharSequence otherChars = (CharSequence) other;
+            if (chars.length() != otherChars.length()) {
+                return false;
             }
-            if (sb.length() > 2) {
-                sb.setLength(sb.length() - 2);
+            for (int i = 0; i < chars.length(); i++) {
+                if (chars.charAt(i) != otherChars.charAt(i)) {
+                    return false;
+                }
             }
+            return true;
         }
+        return arg.equals(other);
+    }
+
+    private static String rendering(Object arg) {
+        StringBuilder sb = new StringBuilder();
+        appendPretty(sb, arg);
         return sb.toString();
     }
 
-	@Override
-	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + (getClass().hashCode());
-		result = prime * result + ((getMessage() == null) ? 0 : getMessage().hashCode());
-		return result;
-	}
+    private static boolean sameSequence(Object sequence, Object other, int nesting) {
+        if (sequence instanceof Object[] && other instanceof Object[]) {
+            return sameArguments((Object[]) sequence, (Object[]) other, nesting);
+        }
+        int length = sequenceLength(sequence);
+        if (length != sequenceLength(other)) {
+            return false;
+        }
+        Iterator<?> elements = sequence instanceof Collection ? ((Collection<?>) sequence).iterator() : null;
+        Iterator<?> otherElements = other instanceof Collection ? ((Collection<?>) other).iterator() : null;
+        for (int i = 0; i < length; i++) {
+            Object element = elements != null ? elements.next() : Array.get(sequence, i);
+            Object otherElement = otherElements != null ? otherElements.next() : Array.get(other, i);
+            if (!sameArgument(element, otherElement, nesting)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-	@Override
-	public boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
-			return false;
-		ApplicationException other = (ApplicationException) obj;
-		if (getMessage() == null) {
-			if (other.getMessage() != null) {
-				return false;
-			} else {
-				return true;
-			}
-		}
-		return getMessage().equals(other.getMessage());
-	}
+    private static boolean isIntegral(Object arg) {
+        return arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte;
+    }
+
+    /**
+     * @return true for the arguments {@link #argumentHash(Object, int)} hashes as RENDERED_HASH
+     */
+    private static boolean hashedByRendering(Object arg, int nesting) {
+        return !(arg instanceof String || isIntegral(arg) || arg instanceof Double || arg instanceof Float
+                || arg instanceof Boolean || arg instanceof Character
+                || (nesting < MAX_PRETTY_NESTING && isSequence(arg)));
+    }
+
+    private static boolean isSequence(Object arg) {
+        return arg instanceof Collection || arg.getClass().isArray();
+    }
+
+    private static int sequenceLength(Object sequence) {
+        return sequence instanceof Collection ? ((Collection<?>) sequence).size() : Array.getLength(sequence);
+    }
 }
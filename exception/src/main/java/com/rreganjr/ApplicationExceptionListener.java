@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Told about every ApplicationException constructed from a MessageKey, see
+ * {@link ApplicationException#addListener(ApplicationExceptionListener)}.
+ *
+ * Listeners run on the constructing thread at the end of the ApplicationException
+ * constructor, before any subclass constructor finishes, so they have to be cheap and
+ * must not rely on state set by subclasses. An exception thrown by a listener is logged
+ * and otherwise ignored.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface ApplicationExceptionListener {
+
+    /**
+     * @param exception - the exception being constructed, its stack trace is already recorded
+     */
+    void exceptionCreated(ApplicationException exception);
+}
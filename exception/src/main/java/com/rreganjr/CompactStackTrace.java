@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Renders a throwable with its causes and suppressed exceptions like printStackTrace(), but
+ * compacted for deeply wrapped chains:
+ * <ul>
+ * <li>frames shared with the enclosing trace are folded into "... N more", as printStackTrace() does</li>
+ * <li>at most maxFrames frames are rendered per throwable, the rest are counted</li>
+ * <li>runs of a repeating group of up to {@value #MAX_CYCLE} frames, like recursion, are rendered once with a count</li>
+ * <li>runs of 3 or more wrapper layers of the same class and MessageKey (or message for other
+ *     throwables) are rendered as the outermost and innermost layer and a count</li>
+ * <li>consecutive suppressed exceptions of the same class, message and top frame are rendered once with a count</li>
+ * <li>rendering stops at maxChars characters and ends with a truncation marker</li>
+ * </ul>
+ * Rendering appends straight to the caller's StringBuilder and stops walking the chain when
+ * the limit is reached, so the cost of a huge chain is bounded by maxChars.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class CompactStackTrace {
+
+    public static final int DEFAULT_MAX_CHARS = 16 * 1024;
+    public static final int DEFAULT_MAX_FRAMES = 16;
+
+    static final String TRUNCATED = "... [truncated]";
+
+    private static final int MAX_CYCLE = 4;
+    private static final int MIN_CYCLE_REPEATS = 3;
+    private static final int MIN_WRAPPER_RUN = 3;
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    private final StringBuilder out;
+    private final int limit;
+    private final int maxFrames;
+    private final Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+    private boolean full;
+
+    private CompactStackTrace(StringBuilder out, int maxChars, int maxFrames) {
+        this.out = out;
+        this.limit = out.length() + maxChars;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * @return the compacted rendering with the default limits
+     */
+    public static String toString(Throwable throwable) {
+        StringBuilder sb = new StringBuilder(1024);
+        append(throwable, sb, DEFAULT_MAX_CHARS, DEFAULT_MAX_FRAMES);
+        return sb.toString();
+    }
+
+    /**
+     * @param throwable - the throwable to render
+     * @param sb - receives the rendering
+     * @param maxChars - the most characters appended, not counting the truncation marker
+     * @param maxFrames - the most frames rendered per throwable
+     */
+    public static void append(Throwable throwable, StringBuilder sb, int maxChars, int maxFrames) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("maxChars");
+        }
+        if (maxFrames < 0) {
+            throw new IllegalArgumentException("maxFrames");
+        }
+        new CompactStackTrace(sb, maxChars, maxFrames).render(throwable, StackFrames.EMPTY, "", "");
+    }
+
+    /**
+     * Renders the throwable and its cause chain, walking the chain in a loop so long chains don't recurse.
+     */
+    private void render(Throwable throwable, StackTraceElement[] enclosing, String caption, String prefix) {
+        StackTraceElement[] trace = renderOne(throwable, enclosing, caption, prefix);
+        Throwable cause = throwable.getCause();
+        while (trace != null && cause != null) {
+            int run = wrapperRun(cause);
+            if (run >= MIN_WRAPPER_RUN) {
+                trace = renderOne(cause, trace, "Caused by: ", prefix);
+                for (int i = 1; i < run - 1 && trace != null; i++) {
+                    cause = cause.getCause();
+                    seen.add(cause);
+                    trace = cause.getStackTrace();
+                }
+                line(prefix, "\t... ", String.valueOf(run - 2), " similar wrapping layers of ", cause.getClass().getName());
+                cause = cause.getCause();
+            }
+            if (trace != null) {
+                trace = renderOne(cause, trace, "Caused by: ", prefix);
+                cause = cause.getCause();
+            }
+        }
+    }
+
+    /**
+     * Renders the throwable and its suppressed exceptions, not its cause.
+     *
+     * @return the trace of the throwable or null if rendering stops here
+     */
+    private StackTraceElement[] renderOne(Throwable throwable, StackTraceElement[] enclosing, String caption, String prefix) {
+        if (full) {
+            return null;
+        }
+        if (!seen.add(throwable)) {
+            line(prefix, caption, "[CIRCULAR REFERENCE: ", throwable.toString(), "]");
+            return null;
+        }
+        StackTraceElement[] trace = throwable.getStackTrace();
+        line(prefix, caption, throwable.toString(), "", "");
+        renderFrames(trace, enclosing, prefix);
+        renderSuppressed(throwable, trace, prefix);
+        return full ? null : trace;
+    }
+
+    /**
+     * @return the number of consecutive layers, starting at throwable, with its class and MessageKey or message
+     */
+    private int wrapperRun(Throwable throwable) {
+        int run = 1;
+        Throwable layer = throwable;
+        Throwable next = layer.getCause();
+        while (next != null && next != layer && sameKind(throwable, next) && !seen.contains(next)) {
+            run++;
+            layer = next;
+            next = layer.getCause();
+        }
+        return run;
+    }
+
+    private static boolean sameKind(Throwable a, Throwable b) {
+        if (a.getClass() != b.getClass()) {
+            return false;
+        }
+        if (a instanceof ApplicationException) {
+            ApplicationException.MessageKey key = ((ApplicationException) a).getMessageKey();
+            if (key != null) {
+                return key == ((ApplicationException) b).getMessageKey();
+            }
+        }
+        String message = a.getMessage();
+        return message == null ? b.getMessage() == null : message.equals(b.getMessage());
+    }
+
+    private void renderFrames(StackTraceElement[] trace, StackTraceElement[] enclosing, String prefix) {
+        int m = trace.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        int unique = m + 1;
+        int rendered = 0;
+        int i = 0;
+        while (i < unique && rendered < maxFrames && !full) {
+            int cycle = 0;
+            int repeats = 0;
+            for (int length = 1; length <= MAX_CYCLE && cycle == 0; length++) {
+                int count = repeats(trace, i, length, unique);
+                if (count >= MIN_CYCLE_REPEATS) {
+                    cycle = length;
+                    repeats = count;
+                }
+            }
+            if (cycle == 0) {
+                line(prefix, "\tat ", trace[i].toString(), "", "");
+                rendered++;
+                i++;
+            } else {
+                for (int j = 0; j < cycle && !full; j++) {
+                    line(prefix, "\tat ", trace[i + j].toString(), "", "");
+                }
+                line(prefix, "\t... above ", String.valueOf(cycle), " frames repeated ", (repeats - 1) + " more times");
+                rendered += cycle;
+                i += cycle * repeats;
+            }
+        }
+        if (i < unique) {
+            line(prefix, "\t... ", String.valueOf(unique - i), " frames omitted", "");
+        }
+        if (unique < trace.length) {
+            line(prefix, "\t... ", String.valueOf(trace.length - unique), " more", "");
+        }
+    }
+
+    /**
+     * @return how many times the length frames starting at start repeat back to back
+     */
+    private static int repeats(StackTraceElement[] trace, int start, int length, int end) {
+        int count = 1;
+        int next = start + length;
+        while (next + length <= end && sameFrames(trace, start, next, length)) {
+            count++;
+            next += length;
+        }
+        return count;
+    }
+
+    private static boolean sameFrames(StackTraceElement[] trace, int a, int b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!trace[a + i].equals(trace[b + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void renderSuppressed(Throwable throwable, StackTraceElement[] trace, String prefix) {
+        Throwable[] suppressed = throwable.getSuppressed();
+        int i = 0;
+        while (i < suppressed.length && !full) {
+            int similar = 1;
+            while (i + similar < suppressed.length && similarSuppressed(suppressed[i], suppressed[i + similar])) {
+                similar++;
+            }
+            render(suppressed[i], trace, "Suppressed: ", prefix + "\t");
+            if (similar > 1) {
+                line(prefix, "\t\t... ", String.valueOf(similar - 1), " similar suppressed", "");
+                for (int j = 1; j < similar; j++) {
+                    seen.add(suppressed[i + j]);
+                }
+            }
+            i += similar;
+        }
+    }
+
+    private static boolean similarSuppressed(Throwable a, Throwable b) {
+        if (a.getClass() != b.getClass()) {
+            return false;
+        }
+        String message = a.getMessage();
+        if (message == null ? b.getMessage() != null : !message.equals(b.getMessage())) {
+            return false;
+        }
+        StackTraceElement[] aTrace = a.getStackTrace();
+        StackTraceElement[] bTrace = b.getStackTrace();
+        if (aTrace.length == 0 || bTrace.length == 0) {
+            return aTrace.length == bTrace.length;
+        }
+        return aTrace[0].equals(bTrace[0]);
+    }
+
+    private void line(String prefix, String a, String b, String c, String d) {
+        if (full) {
+            return;
+        }
+        if (append(prefix) && append(a) && append(b) && append(c) && append(d)) {
+            append(NEW_LINE);
+        }
+    }
+
+    /**
+     * @return false once the limit is reached, the text is then cut at the limit and the marker appended
+     */
+    private boolean append(String s) {
+        if (full) {
+            return false;
+        }
+        int room = limit - out.length();
+        if (s.length() <= room) {
+            out.append(s);
+            return true;
+        }
+        out.append(s, 0, Math.max(room, 0)).append(TRUNCATED).append(NEW_LINE);
+        full = true;
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * A MessageKey that renders its own message in the default locale, without parsing a pattern.
+ * Generated by the exception-processor module from @MessageCatalog declarations; translations
+ * are still looked up in the exception's bundle by
+ * {@link ApplicationException#getMessage(java.util.Locale)}, and a translation for the default
+ * locale is used instead of the compiled message.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface CompiledMessageKey extends ApplicationException.MessageKey {
+
+    /**
+     * @param args - the raw arguments of the exception
+     * @return the message with the arguments rendered as {@link ApplicationException#appendArgument} does
+     * @throws ClassCastException if an argument is not of the type declared for it, the message is
+     *         then rendered from the bundle
+     */
+    String render(Object[] args);
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses dates that come in one of several formats, without the exception per rejected
+ * format of trying DateTimeFormatter.parse on each in turn. Only when every format fails
+ * does {@link #parse(String, String)} create an {@link ApplicationException#unsupportedDateString(String)}.
+ *
+ * The patterns are compiled once into thread-safe formatters. A format is rejected with
+ * parseUnresolved, which reports a mismatch without throwing, and the text is resolved only
+ * by the format that matched. The format that last parsed each source is tried first, then
+ * the one that last parsed text of the same shape (length and the position of the characters
+ * that aren't digits), then the rest in order. Dates without a time are at the start of the
+ * day. Dates are resolved strictly, so the 30th of February is rejected rather than moved
+ * to the end of the month.
+ *
+ * A parser is thread safe and meant to be shared.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class DateParser {
+    /**
+     * The patterns of {@link #DateParser()}: ISO dates and date-times, US and European dates
+     * and dates with an English month name.
+     */
+    public static final String[] DEFAULT_PATTERNS = {
+            "uuuu-MM-dd",
+            "uuuu-MM-dd'T'HH:mm:ss",
+            "uuuu-MM-dd HH:mm:ss",
+            "uuuu-MM-dd'T'HH:mm:ss.SSS",
+            "uuuuMMdd",
+            "MM/dd/uuuu",
+            "dd.MM.uuuu",
+            "dd MMM uuuu",
+            "MMM d, uuuu",
+    };
+
+    static final int MAX_SOURCES = 1024;
+
+    private static final int SHAPES = 256;
+
+    private final String[] patterns;
+    private final DateTimeFormatter[] formatters;
+    private final ConcurrentMap<String, Integer> formatBySource = new ConcurrentHashMap<String, Integer>();
+    // index + 1 of the format that last parsed text of a shape, a racy hint checked by parsing
+    private final int[] formatByShape = new int[SHAPES];
+
+    public DateParser() {
+        this(Locale.ENGLISH, DEFAULT_PATTERNS);
+    }
+
+    /**
+     * @param locale - the locale of month and day names
+     * @param patterns - DateTimeFormatter patterns, in the order they are tried; a year of era
+     *                 (yyyy) is taken to be in the current era
+     */
+    public DateParser(Locale locale, String... patterns) {
+        if (patterns.length == 0) {
+            throw new IllegalArgumentException("patterns");
+        }
+        this.patterns = patterns.clone();
+        this.formatters = new DateTimeFormatter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().appendPattern(patterns[i])
+                    .parseDefaulting(ChronoField.ERA, 1);
+            if (!hasTime(patterns[i])) {
+                builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+            }
+            formatters[i] = builder.toFormatter(locale).withResolverStyle(ResolverStyle.STRICT);
+        }
+    }
+
+    /**
+     * @param source - where the text comes from, a file or feed name, null if unknown
+     * @param text - the date to parse
+     * @return the date, at the start of the day when the text has no time
+     * @throws ApplicationException {@link ApplicationException#unsupportedDateString(String)}
+     *                              when no format matches
+     */
+    public LocalDateTime parse(String source, String text) {
+        LocalDateTime date = tryParse(source, text);
+        if (date == null) {
+            throw ApplicationException.unsupportedDateString(text);
+        }
+        return date;
+    }
+
+    /**
+     * @see #parse(String, String)
+     */
+    public LocalDateTime parse(String text) {
+        return parse(null, text);
+    }
+
+    /**
+     * @return the date, or null when no format matches, without creating an exception
+     */
+    public LocalDateTime tryParse(String source, String text) {
+        if (text == null) {
+            return null;
+        }
+        int bySource = -1;
+        if (source != null) {
+            Integer cached = formatBySource.get(source);
+            if (cached != null) {
+                bySource = cached;
+                LocalDateTime date = tryFormat(bySource, text);
+                if (date != null) {
+                    return date;
+                }
+            }
+        }
+        int shape = shape(text) & (SHAPES - 1);
+        int byShape = formatByShape[shape] - 1;
+        LocalDateTime date = null;
+        int format = byShape;
+        if (byShape >= 0 && byShape != bySource) {
+            date = tryFormat(byShape, text);
+        }
+        for (int i = 0; date == null && i < formatters.length; i++) {
+            if (i != bySource && i != byShape) {
+                date = tryFormat(i, text);
+                format = i;
+            }
+        }
+        if (date == null) {
+            return null;
+        }
+        formatByShape[shape] = format + 1;
+        if (source != null && format != bySource && (bySource >= 0 || formatBySource.size() < MAX_SOURCES)) {
+            formatBySource.put(source, format);
+        }
+        return date;
+    }
+
+    /**
+     * @return the pattern that last parsed a date from the source, null if none did
+     */
+    public String getPattern(String source) {
+        Integer format = formatBySource.get(source);
+        return format == null ? null : patterns[format];
+    }
+
+    private LocalDateTime tryFormat(int format, String text) {
+        DateTimeFormatter formatter = formatters[format];
+        ParsePosition position = new ParsePosition(0);
+        if (formatter.parseUnresolved(text, position) == null || position.getIndex() != text.length()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.from(formatter.parse(text));
+        } catch (DateTimeException e) {
+            // the fields matched but don't make a date, like the 31st of April
+            return null;
+        }
+    }
+
+    /**
+     * @return a hash of the length and of where the separators and letters are
+     */
+    static int shape(String text) {
+        int hash = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                hash = 31 * hash + (i << 8 | (Character.isLetter(c) ? 'a' : c & 0xff));
+            }
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean hasTime(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == 'H' || c == 'h' || c == 'k' || c == 'K')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A comma delimited list of items, or of "key: value" pairs, for messages naming many
+ * parameters. Only the first maxItems items are rendered, followed by " and N more", so a
+ * validation failure listing 100k field names doesn't produce a multi-megabyte message.
+ *
+ * The list is a CharSequence view that renders on first use and keeps the result, so passed
+ * as an argument of an exception with a lazy message it costs nothing until the message is
+ * rendered. {@link #appendTo(Appendable)} streams the items without building the whole
+ * String. Renderings are pre-sized from the lengths of String items, and lists of more than
+ * {@value #PARALLEL_THRESHOLD} rendered items are rendered in chunks on the common fork-join
+ * pool and joined once.
+ *
+ * The items must not change while the list is in use.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class DelimitedList implements CharSequence {
+    /**
+     * The number of items rendered when not given.
+     */
+    public static final int DEFAULT_MAX_ITEMS = 1000;
+
+    static final int PARALLEL_THRESHOLD = 8192;
+
+    private static final String DELIMITER = ", ";
+    private static final String SEPARATOR = ": ";
+    private static final int ESTIMATED_ITEM_LENGTH = 8;
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final int count;
+    private final int maxItems;
+    private volatile String rendered;
+
+    private DelimitedList(Object[] keys, Object[] values, int count, int maxItems) {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("maxItems");
+        }
+        if (values != null && values.length < count) {
+            throw new IllegalArgumentException("values");
+        }
+        this.keys = keys;
+        this.values = values;
+        this.count = count;
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * @param items - the items, null for an empty list
+     * @return the list of the first {@link #DEFAULT_MAX_ITEMS} items
+     */
+    public static DelimitedList of(Object[] items) {
+        return of(items, DEFAULT_MAX_ITEMS);
+    }
+
+    /**
+     * @param items - the items, null for an empty list
+     * @param maxItems - the most items rendered, Integer.MAX_VALUE for all of them
+     */
+    public static DelimitedList of(Object[] items, int maxItems) {
+        return new DelimitedList(items, null, items == null ? 0 : items.length, maxItems);
+    }
+
+    /**
+     * @param keys - the keys, null for an empty list
+     * @param values - the value of each key, at least as many as there are keys
+     * @param maxItems - the most pairs rendered, Integer.MAX_VALUE for all of them
+     * @return the list of "key: value" pairs
+     */
+    public static DelimitedList of(Object[] keys, Object[] values, int maxItems) {
+        if (keys != null && values == null) {
+            throw new IllegalArgumentException("values");
+        }
+        return new DelimitedList(keys, keys == null ? null : values, keys == null ? 0 : keys.length, maxItems);
+    }
+
+    /**
+     * @param items - a growing array holding count items
+     */
+    static DelimitedList of(Object[] items, int count, int maxItems) {
+        return new DelimitedList(items, null, count, maxItems);
+    }
+
+    /**
+     * @return the number of items left out of the rendering
+     */
+    public int getOmitted() {
+        return count - reported();
+    }
+
+    private int reported() {
+        return Math.min(count, maxItems);
+    }
+
+    /**
+     * Appends the rendering item by item, a StringBuilder is pre-sized first.
+     *
+     * @return out
+     */
+    public <A extends Appendable> A appendTo(A out) throws IOException {
+        String done = rendered;
+        if (done != null) {
+            out.append(done);
+            return out;
+        }
+        if (out instanceof StringBuilder) {
+            StringBuilder sb = (StringBuilder) out;
+            sb.ensureCapacity(sb.length() + estimateLength(0, reported()));
+        }
+        appendItems(out, 0, reported());
+        appendOmitted(out);
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        String done = rendered;
+        if (done == null) {
+            done = render();
+            rendered = done;
+        }
+        return done;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    private String render() {
+        int reported = reported();
+        try {
+            if (reported <= PARALLEL_THRESHOLD) {
+                return appendTo(new StringBuilder(estimateLength(0, reported) + 24)).toString();
+            }
+            int chunkCount = (reported + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+            String[] chunks = new String[chunkCount];
+            ForkJoinPool.commonPool().invoke(new RenderTask(chunks, 0, chunkCount));
+            int length = 24;
+            for (String chunk : chunks) {
+                length += chunk.length() + DELIMITER.length();
+            }
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < chunks.length; i++) {
+                if (i > 0) {
+                    sb.append(DELIMITER);
+                }
+                sb.append(chunks[i]);
+            }
+            appendOmitted(sb);
+            return sb.toString();
+        } catch (IOException e) {
+            // not thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void appendItems(Appendable out, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                out.append(DELIMITER);
+            }
+            out.append(String.valueOf(keys[i]));
+            if (values != null) {
+                out.append(SEPARATOR).append(String.valueOf(values[i]));
+            }
+        }
+    }
+
+    private void appendOmitted(Appendable out) throws IOException {
+        int omitted = getOmitted();
+        if (omitted > 0) {
+            out.append(" and ").append(String.valueOf(omitted)).append(" more");
+        }
+    }
+
+    /**
+     * @return the exact length of String items, an estimate for others
+     */
+    private int estimateLength(int from, int to) {
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            length += itemLength(keys[i]) + DELIMITER.length();
+            if (values != null) {
+                length += itemLength(values[i]) + SEPARATOR.length();
+            }
+        }
+        return (int) Math.min(length, Integer.MAX_VALUE - 64);
+    }
+
+    private static int itemLength(Object item) {
+        return item instanceof String ? ((String) item).length() : ESTIMATED_ITEM_LENGTH;
+    }
+
+    /**
+     * Renders a range of chunks, splitting it in half until it is one chunk.
+     */
+    private final class RenderTask extends RecursiveAction {
+        static final long serialVersionUID = 0;
+
+        private final String[] chunks;
+        private final int from;
+        private final int to;
+
+        RenderTask(String[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int first = from * PARALLEL_THRESHOLD;
+                int last = Math.min(first + PARALLEL_THRESHOLD, reported());
+                StringBuilder sb = new StringBuilder(estimateLength(first, last));
+                try {
+                    appendItems(sb, first, last);
+                } catch (IOException e) {
+                    // not thrown by a StringBuilder
+                    throw new IllegalStateException(e);
+                }
+                chunks[from] = sb.toString();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RenderTask(chunks, from, middle), new RenderTask(chunks, middle, to));
+        }
+    }
+}
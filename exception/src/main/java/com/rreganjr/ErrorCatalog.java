@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Groups ApplicationExceptions by {@link ExceptionFingerprint} into a bounded catalog that
+ * tracks when each group was first and last seen and how many exceptions it has had, without
+ * keeping the exceptions themselves.
+ *
+ * Recording an exception of a group already in the catalog is a map lookup and a few counter
+ * updates. New groups are added under a lock; once the catalog is full a new group has to win
+ * against a victim to get in. The victim is the least recently seen of a few randomly sampled
+ * groups, and the new group is admitted only if it has been seen more often than the victim
+ * according to a small count-min sketch of recent fingerprint frequencies (TinyLFU). A burst of
+ * one-off exceptions therefore can't flush out the groups that keep recurring. The sketch is
+ * halved periodically so old popularity fades.
+ *
+ * Register the catalog with {@link ApplicationException#addListener} to group every exception.
+ *
+ * @author reemar.app@gmail.com
+ */
+public class ErrorCatalog implements ApplicationExceptionListener {
+    static final int SAMPLE_SIZE = 8;
+
+    private final int maximumSize;
+    private final int frames;
+    private final boolean includeArguments;
+    private final ConcurrentMap<Long, Group> groups = new ConcurrentHashMap<Long, Group>();
+    private final Group[] entries;
+    private final FrequencySketch sketch;
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private int size;
+
+    /**
+     * Groups by class, key and the default number of frames, ignoring argument values.
+     *
+     * @param maximumSize - the most groups kept
+     */
+    public ErrorCatalog(int maximumSize) {
+        this(maximumSize, ExceptionFingerprint.DEFAULT_FRAMES, false);
+    }
+
+    /**
+     * @param maximumSize - the most groups kept
+     * @param frames - the number of innermost frames fingerprinted
+     * @param includeArguments - when true exceptions with different argument values are in different groups
+     */
+    public ErrorCatalog(int maximumSize, int frames, boolean includeArguments) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize");
+        }
+        if (frames < 0) {
+            throw new IllegalArgumentException("frames");
+        }
+        this.maximumSize = maximumSize;
+        this.frames = frames;
+        this.includeArguments = includeArguments;
+        this.entries = new Group[maximumSize];
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public void exceptionCreated(ApplicationException exception) {
+        record(exception);
+    }
+
+    /**
+     * @param exception - the exception to count
+     * @return the group of the exception or null if the catalog is full and the group was not admitted
+     */
+    public Group record(ApplicationException exception) {
+        return record(exception, System.currentTimeMillis());
+    }
+
+    Group record(ApplicationException exception, long now) {
+        long fingerprint = ExceptionFingerprint.of(exception, frames, includeArguments);
+        sketch.increment(fingerprint);
+        Group group = groups.get(fingerprint);
+        if (group != null) {
+            group.seen(now);
+            return group;
+        }
+        return add(fingerprint, exception, now);
+    }
+
+    private synchronized Group add(long fingerprint, ApplicationException exception, long now) {
+        Group group = groups.get(fingerprint);
+        if (group != null) {
+            group.seen(now);
+            return group;
+        }
+        int index;
+        if (size < maximumSize) {
+            index = size++;
+        } else {
+            index = victim();
+            Group victim = entries[index];
+            if (sketch.frequency(fingerprint) <= sketch.frequency(victim.fingerprint)) {
+                rejected.increment();
+                return null;
+            }
+            groups.remove(victim.fingerprint);
+            evicted.increment();
+        }
+        ApplicationException.MessageKey msgKey = exception.getMessageKey();
+        group = new Group(fingerprint, exception.getClass().getName(), msgKey == null ? null : msgKey.name(),
+                exception.getMessage(), now);
+        entries[index] = group;
+        groups.put(fingerprint, group);
+        return group;
+    }
+
+    /**
+     * @return the index of the least recently seen of a sample of the entries
+     */
+    private int victim() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int victim = random.nextInt(size);
+        for (int i = 1; i < SAMPLE_SIZE; i++) {
+            int candidate = random.nextInt(size);
+            if (entries[candidate].lastSeen < entries[victim].lastSeen) {
+                victim = candidate;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * @param fingerprint - see {@link ExceptionFingerprint}
+     * @return the group or null if it is not in the catalog
+     */
+    public Group get(long fingerprint) {
+        return groups.get(fingerprint);
+    }
+
+    /**
+     * @return the groups in the catalog, most exceptions first
+     */
+    public List<Group> getGroups() {
+        List<Group> sorted = new ArrayList<Group>(groups.values());
+        Collections.sort(sorted, new Comparator<Group>() {
+            @Override
+            public int compare(Group a, Group b) {
+                return Long.compare(b.getCount(), a.getCount());
+            }
+        });
+        return sorted;
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the number of groups removed to make room for more frequent ones
+     */
+    public long getEvictionCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return the number of exceptions whose group was not admitted because the catalog was full
+     */
+    public long getRejectionCount() {
+        return rejected.sum();
+    }
+
+    public synchronized void clear() {
+        groups.clear();
+        for (int i = 0; i < size; i++) {
+            entries[i] = null;
+        }
+        size = 0;
+        sketch.clear();
+        evicted.reset();
+        rejected.reset();
+    }
+
+    /**
+     * The exceptions with one fingerprint.
+     */
+    public static final class Group {
+        private final long fingerprint;
+        private final String exceptionClass;
+        private final String messageKey;
+        private final String firstMessage;
+        private final long firstSeen;
+        private volatile long lastSeen;
+        private final LongAdder count = new LongAdder();
+
+        Group(long fingerprint, String exceptionClass, String messageKey, String firstMessage, long now) {
+            this.fingerprint = fingerprint;
+            this.exceptionClass = exceptionClass;
+            this.messageKey = messageKey;
+            this.firstMessage = firstMessage;
+            this.firstSeen = now;
+            this.lastSeen = now;
+            this.count.increment();
+        }
+
+        void seen(long now) {
+            count.increment();
+            if (now > lastSeen) {
+                lastSeen = now;
+            }
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getExceptionClass() {
+            return exceptionClass;
+        }
+
+        /**
+         * @return the name of the MessageKey or null for exceptions created from a plain message
+         */
+        public String getMessageKey() {
+            return messageKey;
+        }
+
+        /**
+         * @return the message of the first exception in the group
+         */
+        public String getFirstMessage() {
+            return firstMessage;
+        }
+
+        /**
+         * @return when the first exception was recorded, in milliseconds since the epoch
+         */
+        public long getFirstSeen() {
+            return firstSeen;
+        }
+
+        /**
+         * @return when the latest exception was recorded, in milliseconds since the epoch
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        /**
+         * @return the number of exceptions recorded while the group was in the catalog
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Group{fingerprint=" + Long.toHexString(fingerprint) + ", exceptionClass=" + exceptionClass
+                    + ", messageKey=" + messageKey + ", count=" + getCount() + ", firstSeen=" + firstSeen
+                    + ", lastSeen=" + lastSeen + "}";
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters, 16 to a long, estimating how often each fingerprint
+     * was recorded recently. Each counter is checked and incremented with a compare and set of
+     * its long so a saturated counter never carries into its neighbour. The thread whose increment
+     * resets the sample count halves the counters.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final AtomicLongArray table;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(maximumSize, 16) - 1) << 1;
+            table = new AtomicLongArray(length);
+            sampleSize = 10 * Math.max(maximumSize, 16);
+        }
+
+        int frequency(long fingerprint) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int counter = counterIndex(fingerprint, i);
+                frequency = Math.min(frequency, (int) ((table.get(counter >>> 4) >>> ((counter & 15) << 2)) & 15));
+            }
+            return frequency;
+        }
+
+        void increment(long fingerprint) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= increment(counterIndex(fingerprint, i));
+            }
+            if (added) {
+                int count = additions.incrementAndGet();
+                if (count >= sampleSize && additions.compareAndSet(count, 0)) {
+                    halve();
+                }
+            }
+        }
+
+        /**
+         * @return false if the counter is already at its maximum
+         */
+        private boolean increment(int counter) {
+            int index = counter >>> 4;
+            int shift = (counter & 15) << 2;
+            for (;;) {
+                long value = table.get(index);
+                if (((value >>> shift) & 15) == 15) {
+                    return false;
+                }
+                if (table.compareAndSet(index, value, value + (1L << shift))) {
+                    return true;
+                }
+            }
+        }
+
+        private int counterIndex(long fingerprint, int i) {
+            long hash = (fingerprint + SEEDS[i]) * SEEDS[i];
+            hash ^= hash >>> 32;
+            return (int) hash & ((table.length() << 4) - 1);
+        }
+
+        private void halve() {
+            for (int i = 0; i < table.length(); i++) {
+                long value;
+                do {
+                    value = table.get(i);
+                } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+            }
+        }
+
+        void clear() {
+            additions.set(0);
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends every ApplicationException to memory-mapped segment files in a directory, as a
+ * compact binary record of its timestamp, fingerprint, MessageKey, thread and arguments, so
+ * the errors of the last day can be queried after an incident with {@link ErrorJournalReader}.
+ *
+ * Recording hands the exception to a single writer thread through a bounded ring: a
+ * recording thread claims a slot with a compare and set on the ring's tail and publishes it
+ * by bumping the slot's sequence, and only the writer takes slots, so neither side locks.
+ * The writer parks while the ring is empty and the recording thread that publishes to it
+ * wakes it. On close the writer seals the tail once it has caught up, so a recording thread
+ * racing the close either claims a slot that is still written or finds the journal closed.
+ * When the writer falls a whole ring behind, new exceptions are dropped, see
+ * {@link #getDroppedCount()}. The writer renders the arguments and computes the fingerprint,
+ * recording costs the constructing thread a few field writes.
+ *
+ * A segment is rotated when it is full or older than the segment duration. Its index, the
+ * number of records of each key per minute, is then written next to it, so counts by key are
+ * answered without reading the segment. Segments whose newest record is older than the
+ * retention are deleted at rotation.
+ *
+ * Records are visible to readers in the same machine once written, see {@link #flush()}, and
+ * forced to disk when their segment is rotated or the journal closed.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ErrorJournal implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+    public static final long DEFAULT_SEGMENT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    static final int MIN_SEGMENT_SIZE = 64 << 10;
+    static final int DEFAULT_CAPACITY = 8192;
+    static final int MAGIC = 0x41454a31;
+    static final int INDEX_MAGIC = 0x41454931;
+    static final int HEADER_LENGTH = 4;
+    // length, timestamp and fingerprint
+    static final int FIXED_LENGTH = 20;
+    static final int MAX_STRING_CHARS = 256;
+    static final int MAX_ARGUMENTS = 16;
+    static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final String INDEX_SUFFIX = ".index";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long segmentMillis;
+    private final long retentionMillis;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+    private final Thread writer;
+    // set by the writer before it parks on an empty ring
+    private volatile boolean parked;
+
+    /**
+     * The tail once the writer has stopped, no slot can be claimed.
+     */
+    private static final long SEALED = -1;
+
+    private final ApplicationExceptionListener listener = new ApplicationExceptionListener() {
+        @Override
+        public void exceptionCreated(ApplicationException exception) {
+            record(exception);
+        }
+    };
+
+    // the writer thread's
+    private final Map<String, byte[]> encodedKeys = new HashMap<String, byte[]>();
+    private Segment segment;
+    private int segmentCount;
+
+    /**
+     * Opens a journal with 16MB segments of up to an hour, kept for a day.
+     */
+    public ErrorJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_MILLIS, DEFAULT_RETENTION_MILLIS, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param directory - where the segments are written, created if missing
+     * @param segmentSize - the size of a segment file, at least 64KB
+     * @param segmentMillis - the longest time a segment is written to
+     * @param retentionMillis - how long a segment is kept after its newest record
+     */
+    public ErrorJournal(Path directory, int segmentSize, long segmentMillis, long retentionMillis) throws IOException {
+        this(directory, segmentSize, segmentMillis, retentionMillis, DEFAULT_CAPACITY);
+    }
+
+    ErrorJournal(Path directory, int segmentSize, long segmentMillis, long retentionMillis, int capacity) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("segmentSize");
+        }
+        if (segmentMillis <= 0 || retentionMillis <= 0) {
+            throw new IllegalArgumentException(segmentMillis <= 0 ? "segmentMillis" : "retentionMillis");
+        }
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.segmentMillis = segmentMillis;
+        this.retentionMillis = retentionMillis;
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot(i);
+        }
+        mask = capacity - 1;
+        deleteExpired(System.currentTimeMillis());
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "ApplicationException-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Starts journaling every ApplicationException created.
+     */
+    public void attach() {
+        ApplicationException.addListener(listener);
+    }
+
+    /**
+     * Stops journaling the exceptions created, the journal stays open.
+     */
+    public void detach() {
+        ApplicationException.removeListener(listener);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return false when the exception was dropped because the writer is a whole ring behind
+     *         or the journal is closed
+     */
+    public boolean record(ApplicationException exception) {
+        return record(exception, System.currentTimeMillis());
+    }
+
+    boolean record(ApplicationException exception, long timestamp) {
+        if (closed || exception.getMessageKey() == null) {
+            dropped.increment();
+            return false;
+        }
+        long position;
+        Slot slot;
+        do {
+            position = tail.get();
+            if (position == SEALED) {
+                dropped.increment();
+                return false;
+            }
+            slot = slots[(int) position & mask];
+            if (slot.sequence != position) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+        slot.exception = exception;
+        slot.timestamp = timestamp;
+        slot.thread = Thread.currentThread().getName();
+        slot.sequence = position + 1;
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of exceptions written, including those dropped on a write failure
+     */
+    public long getWrittenCount() {
+        return head;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until the writer has written every exception recorded before the call, so
+     * readers see them.
+     */
+    public void flush() throws InterruptedException {
+        long recorded = tail.get();
+        while (head < recorded && writer.isAlive()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Stops journaling, writes the recorded exceptions and the index of the last segment.
+     */
+    @Override
+    public void close() throws IOException {
+        detach();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing the journal", e);
+        }
+    }
+
+    private void write() {
+        while (true) {
+            long position = head;
+            Slot slot = slots[(int) position & mask];
+            if (slot.sequence != position + 1) {
+                if (closed && tail.compareAndSet(position, SEALED)) {
+                    break;
+                }
+                // a producer publishing after this write sees the flag and unparks
+                parked = true;
+                if (slot.sequence != position + 1 && !closed) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            ApplicationException exception = slot.exception;
+            long timestamp = slot.timestamp;
+            String thread = slot.thread;
+            slot.exception = null;
+            slot.thread = null;
+            slot.sequence = position + slots.length;
+            try {
+                write(exception, timestamp, thread);
+            } catch (RuntimeException | IOException e) {
+                dropped.increment();
+                ApplicationException.log.warn("Failed to journal " + exception.getMessageKey().name() + " to " + directory, e);
+            }
+            head = position + 1;
+        }
+        try {
+            finish();
+        } catch (IOException e) {
+            ApplicationException.log.warn("Failed to finish the journal segment in " + directory, e);
+        }
+    }
+
+    private void write(ApplicationException exception, long timestamp, String thread) throws IOException {
+        String keyName = exception.getMessageKey().name();
+        byte[] key = encodedKeys.get(keyName);
+        if (key == null) {
+            key = encode(keyName);
+            encodedKeys.put(keyName, key);
+        }
+        byte[] threadName = encode(thread);
+        Object[] args = exception.arguments();
+        int argCount = args == null ? 0 : Math.min(args.length, MAX_ARGUMENTS);
+        byte[][] encodedArgs = new byte[argCount][];
+        int length = FIXED_LENGTH + 2 + key.length + 2 + threadName.length + 1;
+        for (int i = 0; i < argCount; i++) {
+            encodedArgs[i] = encode(render(args[i]));
+            length += 2 + encodedArgs[i].length;
+        }
+        if (segment == null || timestamp - segment.startMillis >= segmentMillis
+                || segment.position + length + 4 > segmentSize) {
+            finish();
+            segment = new Segment(newSegmentPath(timestamp), timestamp);
+        }
+        MappedByteBuffer buffer = segment.buffer;
+        int start = segment.position;
+        int position = start + 4;
+        buffer.putLong(position, timestamp);
+        buffer.putLong(position + 8, ExceptionFingerprint.of(exception));
+        position = put(buffer, position + 16, key);
+        position = put(buffer, position, threadName);
+        buffer.put(position++, (byte) argCount);
+        for (byte[] arg : encodedArgs) {
+            position = put(buffer, position, arg);
+        }
+        // the length goes last, a reader stops at a zero length
+        buffer.putInt(start, length);
+        segment.position = start + length;
+        segment.count(keyName, timestamp);
+    }
+
+    private static int put(MappedByteBuffer buffer, int position, byte[] bytes) {
+        buffer.putShort(position, (short) bytes.length);
+        ((Buffer) buffer).position(position + 2);
+        buffer.put(bytes);
+        return position + 2 + bytes.length;
+    }
+
+    /**
+     * @return a String argument as is, so it can be queried, others as they appear in messages
+     */
+    private static String render(Object arg) {
+        if (arg instanceof String) {
+            return (String) arg;
+        }
+        StringBuilder sb = new StringBuilder();
+        ApplicationException.appendArgument(sb, arg);
+        return sb.toString();
+    }
+
+    private static byte[] encode(String value) {
+        if (value.length() > MAX_STRING_CHARS) {
+            value = value.substring(0, MAX_STRING_CHARS);
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path newSegmentPath(long timestamp) {
+        return directory.resolve(String.format("%020d-%06d%s", timestamp, segmentCount++ % 1000000, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Forces the current segment, writes its index and deletes the expired segments.
+     */
+    private void finish() throws IOException {
+        Segment finished = segment;
+        if (finished == null) {
+            return;
+        }
+        segment = null;
+        finished.buffer.force();
+        Path index = indexPath(finished.path);
+        Path temporary = index.resolveSibling(index.getFileName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary));
+        try {
+            finished.writeIndex(out);
+        } finally {
+            out.close();
+        }
+        Files.move(temporary, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteExpired(finished.maxTimestamp);
+    }
+
+    /**
+     * Deletes the segments, other than the current one, whose newest record is before now
+     * minus the retention. A segment ends where the next one starts, or at the newest record
+     * of its index.
+     */
+    private void deleteExpired(long now) throws IOException {
+        long cutoff = now - retentionMillis;
+        List<Path> segments = ErrorJournalReader.segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            if (segment != null && path.equals(segment.path)) {
+                continue;
+            }
+            long end;
+            if (i + 1 < segments.size()) {
+                end = ErrorJournalReader.startMillis(segments.get(i + 1));
+            } else {
+                ErrorJournalReader.Index index = ErrorJournalReader.readIndex(indexPath(path));
+                end = index == null ? Long.MAX_VALUE : index.maxTimestamp;
+            }
+            if (end < cutoff) {
+                Files.deleteIfExists(indexPath(path));
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * The segment being written and the counts of its index.
+     */
+    private final class Segment {
+        final Path path;
+        final long startMillis;
+        final MappedByteBuffer buffer;
+        final Map<String, TreeMap<Long, int[]>> counts = new HashMap<String, TreeMap<Long, int[]>>();
+        int position = HEADER_LENGTH;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+
+        Segment(Path path, long startMillis) throws IOException {
+            this.path = path;
+            this.startMillis = startMillis;
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } finally {
+                channel.close();
+            }
+            buffer.putInt(0, MAGIC);
+        }
+
+        void count(String key, long timestamp) {
+            TreeMap<Long, int[]> buckets = counts.get(key);
+            if (buckets == null) {
+                buckets = new TreeMap<Long, int[]>();
+                counts.put(key, buckets);
+            }
+            Long bucket = Math.floorDiv(timestamp, BUCKET_MILLIS) * BUCKET_MILLIS;
+            int[] count = buckets.get(bucket);
+            if (count == null) {
+                buckets.put(bucket, new int[]{1});
+            } else {
+                count[0]++;
+            }
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        void writeIndex(DataOutputStream out) throws IOException {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeInt(counts.size());
+            for (Map.Entry<String, TreeMap<Long, int[]>> key : counts.entrySet()) {
+                out.writeUTF(key.getKey());
+                out.writeInt(key.getValue().size());
+                for (Map.Entry<Long, int[]> bucket : key.getValue().entrySet()) {
+                    out.writeLong(bucket.getKey());
+                    out.writeInt(bucket.getValue()[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A ring slot, free for the producer at position p when its sequence is p and ready for
+     * the writer when it is p + 1.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        ApplicationException exception;
+        long timestamp;
+        String thread;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Queries the segments of an {@link ErrorJournal}, for example the number of
+ * MSG_INVALID_VALUE exceptions per minute for one parameter name.
+ *
+ * Counts by key are read from the index of each rotated segment. Segments without an index,
+ * like the one being written, and queries on an argument are answered by scanning the mapped
+ * segment in place: keys and arguments are compared as encoded bytes and nothing is decoded
+ * unless given to a {@link RecordVisitor}. Segments outside the time range, or whose index
+ * doesn't have the key, are skipped.
+ *
+ * Times are rounded down to minutes, a record is counted when its minute is within
+ * [from, to).
+ *
+ * Run it with java com.rreganjr.ErrorJournalReader, see {@link #main(String[])}.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ErrorJournalReader {
+    /**
+     * Told about each record found by {@link #forEach}.
+     */
+    public static interface RecordVisitor {
+        void visit(long timestamp, long fingerprint, String key, String thread, String[] args);
+    }
+
+    private final Path directory;
+
+    public ErrorJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the start of each minute with records of the key, and their number
+     */
+    public SortedMap<Long, Long> countPerMinute(String key, long from, long to) throws IOException {
+        return countPerMinute(key, -1, null, from, to);
+    }
+
+    /**
+     * @param argument - the index of the argument to match, for example 0 for the parameter
+     *                 name of MSG_INVALID_VALUE
+     * @param value - the rendered argument, at most the first 256 characters are compared
+     * @return the start of each minute with matching records, and their number
+     */
+    public SortedMap<Long, Long> countPerMinute(String key, int argument, String value, long from, long to) throws IOException {
+        final long first = bucket(from);
+        final long last = bucket(to);
+        final SortedMap<Long, Long> counts = new TreeMap<Long, Long>();
+        byte[] encodedKey = encode(key);
+        byte[] encodedValue = value == null ? null : encode(value);
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            if (!overlaps(segments, i, first, last)) {
+                continue;
+            }
+            Index index = readIndex(ErrorJournal.indexPath(segment));
+            if (index != null) {
+                SortedMap<Long, Integer> buckets = index.counts.get(key);
+                if (buckets == null) {
+                    continue;
+                }
+                SortedMap<Long, Integer> inRange = buckets.subMap(first, last);
+                if (inRange.isEmpty()) {
+                    continue;
+                }
+                if (encodedValue == null) {
+                    for (Map.Entry<Long, Integer> bucket : inRange.entrySet()) {
+                        add(counts, bucket.getKey(), bucket.getValue());
+                    }
+                    continue;
+                }
+            }
+            MappedByteBuffer buffer = map(segment);
+            if (buffer == null) {
+                continue;
+            }
+            int position = ErrorJournal.HEADER_LENGTH;
+            int length;
+            while ((length = recordLength(buffer, position)) > 0) {
+                long bucket = bucket(buffer.getLong(position + 4));
+                int keyAt = position + ErrorJournal.FIXED_LENGTH;
+                if (bucket >= first && bucket < last && matches(buffer, keyAt, encodedKey)
+                        && (encodedValue == null || matches(buffer, argumentAt(buffer, keyAt, argument), encodedValue))) {
+                    add(counts, bucket, 1);
+                }
+                position += length;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param key - the key of the records, null for all
+     * @return the number of records visited
+     */
+    public int forEach(String key, long from, long to, RecordVisitor visitor) throws IOException {
+        long first = bucket(from);
+        long last = bucket(to);
+        byte[] encodedKey = key == null ? null : encode(key);
+        int visited = 0;
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            if (!overlaps(segments, i, first, last)) {
+                continue;
+            }
+            MappedByteBuffer buffer = map(segments.get(i));
+            if (buffer == null) {
+                continue;
+            }
+            int position = ErrorJournal.HEADER_LENGTH;
+            int length;
+            while ((length = recordLength(buffer, position)) > 0) {
+                long timestamp = buffer.getLong(position + 4);
+                int keyAt = position + ErrorJournal.FIXED_LENGTH;
+                if (bucket(timestamp) >= first && bucket(timestamp) < last
+                        && (encodedKey == null || matches(buffer, keyAt, encodedKey))) {
+                    int threadAt = keyAt + 2 + stringLength(buffer, keyAt);
+                    int argsAt = threadAt + 2 + stringLength(buffer, threadAt);
+                    String[] args = new String[buffer.get(argsAt) & 0xff];
+                    int argAt = argsAt + 1;
+                    for (int a = 0; a < args.length; a++) {
+                        args[a] = decode(buffer, argAt);
+                        argAt += 2 + stringLength(buffer, argAt);
+                    }
+                    visitor.visit(timestamp, buffer.getLong(position + 12), decode(buffer, keyAt),
+                            decode(buffer, threadAt), args);
+                    visited++;
+                }
+                position += length;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Prints the number of records of a key per minute:
+     * <pre>
+     * ErrorJournalReader &lt;directory&gt; &lt;key&gt; [&lt;argument index&gt;=&lt;value&gt;] [&lt;from&gt; [&lt;to&gt;]]
+     * </pre>
+     * with from and to as ISO instants like 2015-03-01T10:15:00Z, all of the journal when not given.
+     */
+    public static void main(String[] args) throws IOException {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        if (args.length < 2) {
+            err.println("usage: ErrorJournalReader <directory> <key> [<argument index>=<value>] [<from> [<to>]]");
+            return 2;
+        }
+        int next = 2;
+        int argument = -1;
+        String value = null;
+        if (args.length > next && args[next].indexOf('=') > 0 && Character.isDigit(args[next].charAt(0))) {
+            int separator = args[next].indexOf('=');
+            argument = Integer.parseInt(args[next].substring(0, separator));
+            value = args[next].substring(separator + 1);
+            next++;
+        }
+        long from = args.length > next ? Instant.parse(args[next]).toEpochMilli() : Long.MIN_VALUE + ErrorJournal.BUCKET_MILLIS;
+        long to = args.length > next + 1 ? Instant.parse(args[next + 1]).toEpochMilli() : Long.MAX_VALUE - ErrorJournal.BUCKET_MILLIS;
+        SortedMap<Long, Long> counts = new ErrorJournalReader(Paths.get(args[0])).countPerMinute(args[1], argument, value, from, to);
+        for (Map.Entry<Long, Long> count : counts.entrySet()) {
+            out.println(Instant.ofEpochMilli(count.getKey()) + " " + count.getValue());
+        }
+        return 0;
+    }
+
+    /**
+     * @return the segment files of the journal, oldest first
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<Path>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ErrorJournal.SEGMENT_SUFFIX);
+        try {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        } finally {
+            stream.close();
+        }
+        // the names start with the zero padded time of the first record
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static long startMillis(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('-')));
+    }
+
+    /**
+     * @return the index of a rotated segment, null if it has none
+     */
+    static Index readIndex(Path path) throws IOException {
+        InputStream in;
+        try {
+            in = Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readInt() != ErrorJournal.INDEX_MAGIC) {
+                return null;
+            }
+            Index index = new Index(data.readLong(), data.readLong());
+            int keys = data.readInt();
+            for (int k = 0; k < keys; k++) {
+                String key = data.readUTF();
+                TreeMap<Long, Integer> buckets = new TreeMap<Long, Integer>();
+                int count = data.readInt();
+                for (int b = 0; b < count; b++) {
+                    buckets.put(data.readLong(), data.readInt());
+                }
+                index.counts.put(key, buckets);
+            }
+            return index;
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * @return whether the segment, which ends where the next starts, may hold the minutes [first, last)
+     */
+    private static boolean overlaps(List<Path> segments, int i, long first, long last) {
+        if (bucket(startMillis(segments.get(i))) >= last) {
+            return false;
+        }
+        return i + 1 == segments.size() || startMillis(segments.get(i + 1)) >= first;
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(segment, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // deleted by retention
+            return null;
+        }
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return buffer.limit() >= ErrorJournal.HEADER_LENGTH && buffer.getInt(0) == ErrorJournal.MAGIC ? buffer : null;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the length of the record at the position, 0 at the end of the written records
+     */
+    private static int recordLength(MappedByteBuffer buffer, int position) {
+        if (position + 4 > buffer.limit()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        return length >= ErrorJournal.FIXED_LENGTH && position + length <= buffer.limit() ? length : 0;
+    }
+
+    /**
+     * @return the position of the argument, -1 if the record has fewer arguments
+     */
+    private static int argumentAt(MappedByteBuffer buffer, int keyAt, int argument) {
+        int threadAt = keyAt + 2 + stringLength(buffer, keyAt);
+        int argsAt = threadAt + 2 + stringLength(buffer, threadAt);
+        if (argument < 0 || argument >= (buffer.get(argsAt) & 0xff)) {
+            return -1;
+        }
+        int position = argsAt + 1;
+        for (int i = 0; i < argument; i++) {
+            position += 2 + stringLength(buffer, position);
+        }
+        return position;
+    }
+
+    private static boolean matches(MappedByteBuffer buffer, int position, byte[] expected) {
+        if (position < 0 || stringLength(buffer, position) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(position + 2 + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int stringLength(MappedByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xffff;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int position) {
+        byte[] bytes = new byte[stringLength(buffer, position)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        if (value.length() > ErrorJournal.MAX_STRING_CHARS) {
+            value = value.substring(0, ErrorJournal.MAX_STRING_CHARS);
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long bucket(long timestamp) {
+        return Math.floorDiv(timestamp, ErrorJournal.BUCKET_MILLIS) * ErrorJournal.BUCKET_MILLIS;
+    }
+
+    private static void add(SortedMap<Long, Long> counts, long bucket, long count) {
+        Long current = counts.get(bucket);
+        counts.put(bucket, current == null ? count : current + count);
+    }
+
+    /**
+     * The index of a rotated segment: the number of records of each key per minute.
+     */
+    static final class Index {
+        final long minTimestamp;
+        final long maxTimestamp;
+        final Map<String, TreeMap<Long, Integer>> counts = new HashMap<String, TreeMap<Long, Integer>>();
+
+        Index(long minTimestamp, long maxTimestamp) {
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+        }
+    }
+}
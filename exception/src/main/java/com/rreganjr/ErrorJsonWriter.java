@@ -0,0 +1,424 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes ApplicationExceptions as JSON error bodies, UTF-8 encoded, straight to an
+ * OutputStream or a ByteBuffer:
+ *
+ * <pre>
+ * {"code":"MSG_INVALID_VALUE","message":"...","args":["name","value"],"cause":{...}}
+ * </pre>
+ *
+ * The code is the MessageKey name and the opening of every body up to the message is escaped
+ * and encoded once per MessageKey enum constant, so a body costs escaping the message and
+ * the arguments only. Numbers, booleans and nulls are written as JSON values, arrays and
+ * Collections as JSON arrays and anything else as the string of its toString(). Exceptions
+ * without a MessageKey have no code and no args. Causes that are not ApplicationExceptions
+ * are written as {"type":"class name","message":"..."} and end the chain.
+ *
+ * Nothing is allocated per body for OutputStreams apart from the rendered message when
+ * messages are lazy and rendering of doubles, floats and other arguments: output goes
+ * through a per-thread 1KB buffer that is flushed to the stream when full and at the end of
+ * the body. The stream itself is not flushed.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ErrorJsonWriter {
+
+    public static final int DEFAULT_MAX_CAUSES = 8;
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final int MAX_ARG_NESTING = 8;
+
+    private static final byte[] MESSAGE_ONLY = ascii("{\"message\":\"");
+    private static final byte[] ARGS = ascii("\",\"args\":[");
+    private static final byte[] CAUSE = ascii(",\"cause\":");
+    private static final byte[] TYPE = ascii("{\"type\":\"");
+    private static final byte[] MESSAGE = ascii("\",\"message\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    /**
+     * The escaped {"code":"...","message":" opening of the bodies per MessageKey enum constant.
+     */
+    private static final ConcurrentMap<ApplicationException.MessageKey, byte[]> openings =
+            new ConcurrentHashMap<ApplicationException.MessageKey, byte[]>();
+
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+    private ErrorJsonWriter() {
+    }
+
+    /**
+     * Writes the body with up to {@link #DEFAULT_MAX_CAUSES} causes.
+     */
+    public static void write(ApplicationException exception, OutputStream out) throws IOException {
+        write(exception, out, DEFAULT_MAX_CAUSES);
+    }
+
+    /**
+     * @param exception - the exception to write
+     * @param out - receives the body, it isn't flushed or closed
+     * @param maxCauses - the most causes written, 0 for none
+     */
+    public static void write(ApplicationException exception, OutputStream out, int maxCauses) throws IOException {
+        if (maxCauses < 0) {
+            throw new IllegalArgumentException("maxCauses");
+        }
+        byte[] buffer = buffers.get();
+        // taken while in use so a stream that writes another body on this thread gets its own
+        buffers.set(null);
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            StreamSink sink = new StreamSink(out, buffer);
+            sink.writeThrowable(exception, maxCauses);
+            sink.flush();
+        } finally {
+            buffers.set(buffer);
+        }
+    }
+
+    /**
+     * Writes the body with up to {@link #DEFAULT_MAX_CAUSES} causes.
+     */
+    public static void write(ApplicationException exception, ByteBuffer buffer) {
+        write(exception, buffer, DEFAULT_MAX_CAUSES);
+    }
+
+    /**
+     * @param exception - the exception to write
+     * @param buffer - receives the body from its position
+     * @param maxCauses - the most causes written, 0 for none
+     * @throws java.nio.BufferOverflowException if the body doesn't fit, the position is then undefined
+     */
+    public static void write(ApplicationException exception, ByteBuffer buffer, int maxCauses) {
+        if (maxCauses < 0) {
+            throw new IllegalArgumentException("maxCauses");
+        }
+        try {
+            new BufferSink(buffer).writeThrowable(exception, maxCauses);
+        } catch (IOException e) {
+            // not thrown by a BufferSink
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the body as a String, for logging and tests
+     */
+    public static String toJson(ApplicationException exception) {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream(256);
+        try {
+            write(exception, out);
+        } catch (IOException e) {
+            // not thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] opening(ApplicationException.MessageKey msgKey) {
+        byte[] opening = msgKey instanceof Enum ? openings.get(msgKey) : null;
+        if (opening == null) {
+            BufferSink sink = new BufferSink(ByteBuffer.allocate(16 + 6 * msgKey.name().length() + 14));
+            sink.putAll(ascii("{\"code\":\""));
+            sink.putEscaped(msgKey.name());
+            sink.putAll(ascii("\",\"message\":\""));
+            ByteBuffer bytes = sink.buffer;
+            opening = new byte[bytes.position()];
+            System.arraycopy(bytes.array(), 0, opening, 0, opening.length);
+            if (msgKey instanceof Enum) {
+                // keys that aren't enum constants, like decoded ones, could fill the map
+                byte[] existing = openings.putIfAbsent(msgKey, opening);
+                if (existing != null) {
+                    opening = existing;
+                }
+            }
+        }
+        return opening;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The JSON encoding on top of a byte destination.
+     */
+    private abstract static class Sink {
+
+        abstract void put(int b) throws IOException;
+
+        void putAll(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                put(b);
+            }
+        }
+
+        void writeThrowable(Throwable throwable, int causes) throws IOException {
+            if (!(throwable instanceof ApplicationException)) {
+                putAll(TYPE);
+                putEscaped(throwable.getClass().getName());
+                putAll(MESSAGE);
+                writeString(throwable.getMessage());
+                put('}');
+                return;
+            }
+            ApplicationException exception = (ApplicationException) throwable;
+            ApplicationException.MessageKey msgKey = exception.getMessageKey();
+            putAll(msgKey == null ? MESSAGE_ONLY : opening(msgKey));
+            putEscaped(exception.getMessage());
+            if (msgKey == null) {
+                put('"');
+            } else {
+                putAll(ARGS);
+                Object[] args = exception.arguments();
+                for (int i = 0; args != null && i < args.length; i++) {
+                    if (i > 0) {
+                        put(',');
+                    }
+                    writeValue(args[i], 0);
+                }
+                put(']');
+            }
+            Throwable cause = exception.getCause();
+            if (causes > 0 && cause != null && cause != exception) {
+                putAll(CAUSE);
+                writeThrowable(cause, causes - 1);
+            }
+            put('}');
+        }
+
+        private void writeValue(Object value, int nesting) throws IOException {
+            if (value == null) {
+                putAll(NULL);
+            } else if (value instanceof CharSequence) {
+                writeString((CharSequence) value);
+            } else if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte) {
+                putLong(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                double d = ((Number) value).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    writeString(value.toString());
+                } else {
+                    putAscii(value.toString());
+                }
+            } else if (value instanceof Number) {
+                putAscii(value.toString());
+            } else if (value instanceof Boolean) {
+                putAll((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Character) {
+                put('"');
+                putEscaped(String.valueOf(value));
+                put('"');
+            } else if (nesting < MAX_ARG_NESTING && value.getClass().isArray()) {
+                put('[');
+                int length = Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        put(',');
+                    }
+                    writeValue(Array.get(value, i), nesting + 1);
+                }
+                put(']');
+            } else if (nesting < MAX_ARG_NESTING && value instanceof Collection) {
+                put('[');
+                boolean first = true;
+                for (Object element : (Collection<?>) value) {
+                    if (!first) {
+                        put(',');
+                    }
+                    writeValue(element, nesting + 1);
+                    first = false;
+                }
+                put(']');
+            } else {
+                writeString(value.toString());
+            }
+        }
+
+        private void writeString(CharSequence s) throws IOException {
+            if (s == null) {
+                putAll(NULL);
+            } else {
+                put('"');
+                putEscaped(s);
+                put('"');
+            }
+        }
+
+        private void putAscii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                put(s.charAt(i));
+            }
+        }
+
+        private void putLong(long value) throws IOException {
+            if (value < 0) {
+                put('-');
+                if (value == Long.MIN_VALUE) {
+                    putAscii("9223372036854775808");
+                    return;
+                }
+                value = -value;
+            }
+            long divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                put((int) ('0' + (value / divisor) % 10));
+            }
+        }
+
+        /**
+         * Encodes the characters as UTF-8, escaping quotes, backslashes and control characters.
+         */
+        void putEscaped(CharSequence s) throws IOException {
+            if (s == null) {
+                return;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    put('\\');
+                    put(c);
+                } else if (c < 0x20) {
+                    put('\\');
+                    switch (c) {
+                        case '\n':
+                            put('n');
+                            break;
+                        case '\r':
+                            put('r');
+                            break;
+                        case '\t':
+                            put('t');
+                            break;
+                        default:
+                            put('u');
+                            put('0');
+                            put('0');
+                            put(HEX[c >> 4]);
+                            put(HEX[c & 0xf]);
+                    }
+                } else if (c < 0x80) {
+                    put(c);
+                } else if (c < 0x800) {
+                    put(0xc0 | (c >> 6));
+                    put(0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    put(0xf0 | (codePoint >> 18));
+                    put(0x80 | ((codePoint >> 12) & 0x3f));
+                    put(0x80 | ((codePoint >> 6) & 0x3f));
+                    put(0x80 | (codePoint & 0x3f));
+                } else {
+                    if (Character.isSurrogate(c)) {
+                        c = '?';
+                    }
+                    put(0xe0 | (c >> 12));
+                    put(0x80 | ((c >> 6) & 0x3f));
+                    put(0x80 | (c & 0x3f));
+                }
+            }
+        }
+    }
+
+    private static final class BufferSink extends Sink {
+        final ByteBuffer buffer;
+
+        BufferSink(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void put(int b) {
+            buffer.put((byte) b);
+        }
+
+        @Override
+        void putAll(byte[] bytes) {
+            buffer.put(bytes);
+        }
+
+        @Override
+        void putEscaped(CharSequence s) {
+            try {
+                super.putEscaped(s);
+            } catch (IOException e) {
+                // not thrown by a BufferSink
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class StreamSink extends Sink {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int count;
+
+        StreamSink(OutputStream out, byte[] buffer) {
+            this.out = out;
+            this.buffer = buffer;
+        }
+
+        @Override
+        void put(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        void putAll(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - count) {
+                flush();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes the exceptions of a MessageKey cheaper while they are constructed faster than a rate,
+ * as when a bad client floods a service with invalid input, and constructs them normally again
+ * once the storm is over.
+ *
+ * Each key's constructions are counted in a LongAdder. The thread whose construction ends a
+ * rate window, one second by default, computes the key's rate: at the enter rate or above the
+ * key starts storming, and a storming key stops only after the quiet windows in a row below the
+ * lower exit rate, so a rate hovering around a threshold doesn't flip the key back and forth.
+ * The windows of keys that stopped being constructed are ended when the key is read and by a
+ * sweep every second, so a storm that stops at once still ends and is reported.
+ * While a key storms its exceptions get the {@link #setDegradations(Set) degradations}, all of
+ * them by default: no stack trace (except for exceptions constructed with an explicit
+ * StackTraceMode), the message formatted when first read, and no debug logging.
+ *
+ * Storms are reported to {@link ErrorStormListener}s and through {@link #getStormingKeys()}.
+ *
+ * Disabled by default, call {@link #enable()} to start watching the rates. Disabled, the cost
+ * to constructors is one volatile read.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ErrorStormController {
+
+    /**
+     * What a storming key's exceptions do without.
+     */
+    public static enum Degradation {
+        STACKLESS,
+        DEFERRED_MESSAGES,
+        NO_DEBUG_LOGGING;
+
+        final int bit = 1 << ordinal();
+    }
+
+    /**
+     * System property with the exceptions per second of a key that start a storm.
+     */
+    public static final String ENTER_RATE_PROPERTY = ErrorStormController.class.getName() + ".enterRate";
+    /**
+     * System property with the exceptions per second of a key below which a storm ends.
+     */
+    public static final String EXIT_RATE_PROPERTY = ErrorStormController.class.getName() + ".exitRate";
+    public static final int DEFAULT_ENTER_RATE = 1000;
+    public static final int DEFAULT_EXIT_RATE = 100;
+    static final long DEFAULT_WINDOW_MILLIS = 1000;
+    static final int DEFAULT_QUIET_WINDOWS = 5;
+
+    static final int STACKLESS = Degradation.STACKLESS.bit;
+    static final int DEFERRED_MESSAGES = Degradation.DEFERRED_MESSAGES.bit;
+    static final int NO_DEBUG_LOGGING = Degradation.NO_DEBUG_LOGGING.bit;
+    private static final int ALL = STACKLESS | DEFERRED_MESSAGES | NO_DEBUG_LOGGING;
+
+    private static final AtomicLongFieldUpdater<KeyState> WINDOW_START =
+            AtomicLongFieldUpdater.newUpdater(KeyState.class, "windowStart");
+
+    private static final ConcurrentMap<String, KeyState> states = new ConcurrentHashMap<String, KeyState>();
+    private static final List<ErrorStormListener> listeners = new CopyOnWriteArrayList<ErrorStormListener>();
+
+    private static volatile boolean enabled;
+    private static volatile double enterRate = DEFAULT_ENTER_RATE;
+    private static volatile double exitRate = DEFAULT_EXIT_RATE;
+    private static volatile long windowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+    private static volatile int quietWindows = DEFAULT_QUIET_WINDOWS;
+    private static volatile int degradations = ALL;
+    private static ScheduledExecutorService sweeper;
+
+    private ErrorStormController() {
+    }
+
+    /**
+     * Starts watching with the rates of {@link #ENTER_RATE_PROPERTY} and {@link #EXIT_RATE_PROPERTY},
+     * 1000 and 100 exceptions per second when not set.
+     */
+    public static void enable() {
+        enable(Integer.getInteger(ENTER_RATE_PROPERTY, DEFAULT_ENTER_RATE),
+                Integer.getInteger(EXIT_RATE_PROPERTY, DEFAULT_EXIT_RATE));
+    }
+
+    /**
+     * @param enterRate - the exceptions per second of a key that start a storm
+     * @param exitRate - the exceptions per second of a key below which a storm ends, lower than enterRate
+     */
+    public static synchronized void enable(double enterRate, double exitRate) {
+        if (exitRate <= 0 || exitRate >= enterRate) {
+            throw new IllegalArgumentException("exitRate");
+        }
+        ErrorStormController.enterRate = enterRate;
+        ErrorStormController.exitRate = exitRate;
+        enabled = true;
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ApplicationException-error-storms");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sweeper.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    sweep(System.nanoTime());
+                }
+            }, DEFAULT_WINDOW_MILLIS, DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops watching, the storming keys end their storms.
+     */
+    public static synchronized void disable() {
+        enabled = false;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        reset();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forgets the rates, the storming keys end their storms.
+     */
+    public static synchronized void reset() {
+        for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+            if (entry.getValue().storming) {
+                entry.getValue().storming = false;
+                notifyListeners(entry.getKey(), entry.getValue().rate, false);
+            }
+        }
+        states.clear();
+    }
+
+    /**
+     * @param degradations - what storming keys' exceptions do without, empty to only report storms
+     */
+    public static void setDegradations(Set<Degradation> degradations) {
+        int bits = 0;
+        for (Degradation degradation : degradations) {
+            bits |= degradation.bit;
+        }
+        ErrorStormController.degradations = bits;
+    }
+
+    public static Set<Degradation> getDegradations() {
+        Set<Degradation> set = EnumSet.noneOf(Degradation.class);
+        for (Degradation degradation : Degradation.values()) {
+            if ((degradations & degradation.bit) != 0) {
+                set.add(degradation);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * @param millis - how often each key's rate is computed
+     */
+    public static void setWindow(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("millis");
+        }
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public static long getWindow() {
+        return TimeUnit.NANOSECONDS.toMillis(windowNanos);
+    }
+
+    /**
+     * @param windows - the windows in a row below the exit rate that end a storm
+     */
+    public static void setQuietWindows(int windows) {
+        if (windows <= 0) {
+            throw new IllegalArgumentException("windows");
+        }
+        quietWindows = windows;
+    }
+
+    public static int getQuietWindows() {
+        return quietWindows;
+    }
+
+    /**
+     * @param listener - told when keys start and stop storming
+     */
+    public static void addListener(ErrorStormListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener");
+        }
+        listeners.add(listener);
+    }
+
+    public static void removeListener(ErrorStormListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static boolean isStorming(String keyName) {
+        KeyState state = states.get(keyName);
+        if (state == null) {
+            return false;
+        }
+        roll(keyName, state, System.nanoTime());
+        return state.storming;
+    }
+
+    /**
+     * @return the exceptions per second of the key in its last complete window
+     */
+    public static double getRate(String keyName) {
+        KeyState state = states.get(keyName);
+        if (state == null) {
+            return 0;
+        }
+        roll(keyName, state, System.nanoTime());
+        return state.rate;
+    }
+
+    /**
+     * @return the names of the keys storming now, sorted
+     */
+    public static Set<String> getStormingKeys() {
+        Set<String> keys = new TreeSet<String>();
+        long now = System.nanoTime();
+        for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+            roll(entry.getKey(), entry.getValue(), now);
+            if (entry.getValue().storming) {
+                keys.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    /**
+     * Counts the construction of an exception, called at the start of the ApplicationException
+     * constructors.
+     *
+     * @return the {@link Degradation} bits that apply to the exception, 0 when the key isn't storming
+     */
+    static int degradations(ApplicationException.MessageKey msgKey) {
+        if (!enabled || msgKey == null) {
+            return 0;
+        }
+        return record(msgKey.name(), System.nanoTime());
+    }
+
+    static int record(String keyName, long now) {
+        KeyState state = states.get(keyName);
+        if (state == null) {
+            state = new KeyState(now);
+            KeyState existing = states.putIfAbsent(keyName, state);
+            if (existing != null) {
+                state = existing;
+            }
+        }
+        state.count.increment();
+        roll(keyName, state, now);
+        return state.storming ? degradations : 0;
+    }
+
+    /**
+     * Ends the windows of keys that are no longer constructed.
+     */
+    static void sweep(long now) {
+        for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+            roll(entry.getKey(), entry.getValue(), now);
+        }
+    }
+
+    /**
+     * Evaluates the key's window if it has ended, in the one thread that moves it on.
+     */
+    private static void roll(String keyName, KeyState state, long now) {
+        long start = state.windowStart;
+        if (now - start >= windowNanos && WINDOW_START.compareAndSet(state, start, now)) {
+            evaluate(keyName, state, now - start);
+        }
+    }
+
+    /**
+     * Computes the rate of the window that ended and starts or stops the key's storm, called by
+     * the one thread that moved the window on.
+     */
+    private static void evaluate(String keyName, KeyState state, long elapsed) {
+        double rate = state.count.sumThenReset() * 1e9 / elapsed;
+        state.rate = rate;
+        if (!state.storming) {
+            if (rate >= enterRate) {
+                state.quiet = 0;
+                state.storming = true;
+                notifyListeners(keyName, rate, true);
+            }
+        } else if (rate < exitRate) {
+            // a window that ends after a long pause counts every window it spans
+            state.quiet += Math.max(1, elapsed / windowNanos);
+            if (state.quiet >= quietWindows) {
+                state.storming = false;
+                notifyListeners(keyName, rate, false);
+            }
+        } else {
+            state.quiet = 0;
+        }
+    }
+
+    private static void notifyListeners(String keyName, double rate, boolean started) {
+        for (ErrorStormListener listener : listeners) {
+            try {
+                if (started) {
+                    listener.stormStarted(keyName, rate);
+                } else {
+                    listener.stormEnded(keyName, rate);
+                }
+            } catch (RuntimeException e) {
+                ApplicationException.log.warn("ErrorStormListener " + listener + " failed", e);
+            }
+        }
+    }
+
+    private static final class KeyState {
+        final LongAdder count = new LongAdder();
+        volatile long windowStart;
+        volatile double rate;
+        volatile long quiet;
+        volatile boolean storming;
+
+        KeyState(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Told when a MessageKey starts and stops storming, see
+ * {@link ErrorStormController#addListener(ErrorStormListener)}.
+ *
+ * Listeners run on the thread constructing the exception that ended a rate window, so they
+ * have to be cheap. An exception thrown by a listener is logged and otherwise ignored.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface ErrorStormListener {
+
+    /**
+     * @param keyName - the name of the MessageKey whose exceptions are now degraded
+     * @param rate - the exceptions per second of the key in the window that started the storm
+     */
+    void stormStarted(String keyName, double rate);
+
+    /**
+     * @param keyName - the name of the MessageKey whose exceptions are constructed normally again
+     * @param rate - the exceptions per second of the key in the window that ended the storm
+     */
+    void stormEnded(String keyName, double rate);
+}
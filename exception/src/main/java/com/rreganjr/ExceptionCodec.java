@@ -0,0 +1,656 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary wire format for ApplicationExceptions sent between services.
+ *
+ * Instead of the rendered message, an exception is sent as its MessageKey (the enum class and
+ * ordinal as a varint) and its typed arguments, so the receiver rebuilds an equivalent
+ * exception and can render it in its own locale. Stack frames are optional and truncated, and
+ * every string is written once per message: later occurrences are varint references into the
+ * table of strings already read, so repeated class and method names cost a byte or two.
+ *
+ * Encoding writes straight into the caller's ByteBuffer and decoding reads straight from it,
+ * there is no intermediate byte array. A buffer that is too small throws
+ * BufferOverflowException and leaves its position undefined.
+ *
+ * Arguments that are Strings, boxed primitives, arrays and Collections of them round trip as
+ * their own types. Other arguments are sent as their rendering and decoded as a CharSequence
+ * that renders the same. Causes that are not ApplicationExceptions are decoded as
+ * {@link RemoteCause}s with the original class name, message and frames.
+ *
+ * Both sides must have the same MessageKey enums, keys are matched by ordinal. Exceptions
+ * generated from a @MessageCatalog are rendered from their bundle when an argument is not
+ * decoded as its declared type.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ExceptionCodec {
+    static final byte MAGIC = 'A';
+    static final byte VERSION = 1;
+
+    public static final int DEFAULT_MAX_FRAMES = 16;
+    public static final int DEFAULT_MAX_CAUSES = 8;
+
+    private static final int KEY_ENUM = 1;
+    private static final int KEY_NAME = 2;
+    private static final int FOREIGN = 4;
+    private static final int CAUSE = 8;
+
+    private static final int ARG_NULL = 0;
+    private static final int ARG_STRING = 1;
+    private static final int ARG_INT = 2;
+    private static final int ARG_LONG = 3;
+    private static final int ARG_DOUBLE = 4;
+    private static final int ARG_FLOAT = 5;
+    private static final int ARG_BOOLEAN = 6;
+    private static final int ARG_CHAR = 7;
+    private static final int ARG_SHORT = 8;
+    private static final int ARG_BYTE = 9;
+    private static final int ARG_ARRAY = 10;
+    private static final int ARG_LIST = 11;
+    private static final int ARG_RENDERED = 12;
+
+    private static final int MAX_ARG_NESTING = 8;
+
+    private ExceptionCodec() {
+    }
+
+    /**
+     * Encodes with the default number of frames and causes.
+     */
+    public static void encode(ApplicationException exception, ByteBuffer buffer) {
+        encode(exception, buffer, DEFAULT_MAX_FRAMES, DEFAULT_MAX_CAUSES);
+    }
+
+    /**
+     * @param exception - the exception to encode
+     * @param buffer - written from its position, which is moved past the encoded exception
+     * @param maxFrames - the most frames sent per exception, the innermost first, 0 for none
+     * @param maxCauses - the most causes sent
+     */
+    public static void encode(ApplicationException exception, ByteBuffer buffer, int maxFrames, int maxCauses) {
+        if (maxFrames < 0) {
+            throw new IllegalArgumentException("maxFrames");
+        }
+        if (maxCauses < 0) {
+            throw new IllegalArgumentException("maxCauses");
+        }
+        buffer.put(MAGIC).put(VERSION);
+        new Encoder(buffer, maxFrames).writeThrowable(exception, maxCauses);
+    }
+
+    /**
+     * Decodes with the exception and MessageKey classes loaded by the class loader of ExceptionCodec.
+     */
+    public static ApplicationException decode(ByteBuffer buffer) {
+        return decode(buffer, ExceptionCodec.class.getClassLoader());
+    }
+
+    /**
+     * @param buffer - read from its position, which is moved past the encoded exception
+     * @param loader - loads the classes of the exceptions and MessageKeys
+     * @return an exception equal to the encoded one, with the sent frames as its stack trace
+     * @throws IllegalArgumentException if the buffer does not hold an encoded exception or its MessageKey is unknown here
+     */
+    public static ApplicationException decode(ByteBuffer buffer, ClassLoader loader) {
+        try {
+            if (buffer.get() != MAGIC || buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Not an encoded ApplicationException");
+            }
+            Throwable throwable = new Decoder(buffer, loader).readThrowable();
+            if (!(throwable instanceof ApplicationException)) {
+                throw new IllegalArgumentException("Not an encoded ApplicationException");
+            }
+            return (ApplicationException) throwable;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated ApplicationException", e);
+        } catch (NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed ApplicationException", e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed ApplicationException", e);
+        }
+    }
+
+    /**
+     * Writes one message, keeping the table of strings written so far.
+     */
+    private static final class Encoder {
+        private final ByteBuffer buffer;
+        private final int maxFrames;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        Encoder(ByteBuffer buffer, int maxFrames) {
+            this.buffer = buffer;
+            this.maxFrames = maxFrames;
+        }
+
+        void writeThrowable(Throwable throwable, int causes) {
+            Throwable cause = causes > 0 ? throwable.getCause() : null;
+            if (cause == throwable) {
+                cause = null;
+            }
+            ApplicationException.MessageKey msgKey = null;
+            int flags = cause != null ? CAUSE : 0;
+            if (throwable instanceof ApplicationException) {
+                msgKey = ((ApplicationException) throwable).getMessageKey();
+                if (msgKey instanceof Enum) {
+                    flags |= KEY_ENUM;
+                } else if (msgKey != null) {
+                    flags |= KEY_NAME;
+                }
+            } else {
+                flags |= FOREIGN;
+            }
+            buffer.put((byte) flags);
+            writeString(throwable instanceof RemoteCause
+                    ? ((RemoteCause) throwable).getClassName() : throwable.getClass().getName());
+            if ((flags & KEY_ENUM) != 0) {
+                writeString(((Enum<?>) msgKey).getDeclaringClass().getName());
+                writeVarint(((Enum<?>) msgKey).ordinal());
+            } else if ((flags & KEY_NAME) != 0) {
+                writeString(msgKey.name());
+            } else {
+                writeString(throwable instanceof RemoteCause
+                        ? ((RemoteCause) throwable).getRemoteMessage() : throwable.getMessage());
+            }
+            if ((flags & FOREIGN) == 0) {
+                Object[] args = ((ApplicationException) throwable).arguments();
+                int count = args == null ? 0 : args.length;
+                writeVarint(count);
+                for (int i = 0; i < count; i++) {
+                    writeArgument(args[i], 0);
+                }
+            }
+            StackTraceElement[] frames = maxFrames == 0 ? null : throwable.getStackTrace();
+            int frameCount = frames == null ? 0 : Math.min(maxFrames, frames.length);
+            writeVarint(frameCount);
+            for (int i = 0; i < frameCount; i++) {
+                StackTraceElement frame = frames[i];
+                writeString(frame.getClassName());
+                writeString(frame.getMethodName());
+                writeString(frame.getFileName());
+                writeVarint(zigzag(frame.getLineNumber()));
+            }
+            if (cause != null) {
+                writeThrowable(cause, causes - 1);
+            }
+        }
+
+        private void writeArgument(Object arg, int nesting) {
+            if (arg == null) {
+                buffer.put((byte) ARG_NULL);
+            } else if (arg instanceof String) {
+                buffer.put((byte) ARG_STRING);
+                writeString((String) arg);
+            } else if (arg instanceof Integer) {
+                buffer.put((byte) ARG_INT);
+                writeVarint(zigzag((Integer) arg));
+            } else if (arg instanceof Long) {
+                buffer.put((byte) ARG_LONG);
+                writeVarint(zigzag((Long) arg));
+            } else if (arg instanceof Double) {
+                buffer.put((byte) ARG_DOUBLE);
+                buffer.putDouble((Double) arg);
+            } else if (arg instanceof Float) {
+                buffer.put((byte) ARG_FLOAT);
+                buffer.putFloat((Float) arg);
+            } else if (arg instanceof Boolean) {
+                buffer.put((byte) ARG_BOOLEAN);
+                buffer.put((byte) ((Boolean) arg ? 1 : 0));
+            } else if (arg instanceof Character) {
+                buffer.put((byte) ARG_CHAR);
+                writeVarint((Character) arg);
+            } else if (arg instanceof Short) {
+                buffer.put((byte) ARG_SHORT);
+                writeVarint(zigzag((Short) arg));
+            } else if (arg instanceof Byte) {
+                buffer.put((byte) ARG_BYTE);
+                buffer.put((Byte) arg);
+            } else if (nesting < MAX_ARG_NESTING && arg.getClass().isArray()) {
+                buffer.put((byte) ARG_ARRAY);
+                int length = java.lang.reflect.Array.getLength(arg);
+                writeVarint(length);
+                for (int i = 0; i < length; i++) {
+                    writeArgument(java.lang.reflect.Array.get(arg, i), nesting + 1);
+                }
+            } else if (nesting < MAX_ARG_NESTING && arg instanceof Collection) {
+                Collection<?> collection = (Collection<?>) arg;
+                buffer.put((byte) ARG_LIST);
+                writeVarint(collection.size());
+                for (Object element : collection) {
+                    writeArgument(element, nesting + 1);
+                }
+            } else {
+                StringBuilder sb = new StringBuilder();
+                ApplicationException.appendPretty(sb, arg);
+                buffer.put((byte) ARG_RENDERED);
+                writeString(sb.toString());
+            }
+        }
+
+        /**
+         * 0 for null, 1 followed by the UTF-8 length and bytes for a string not written
+         * before, otherwise 2 + the index of the string in the table.
+         */
+        private void writeString(String s) {
+            if (s == null) {
+                buffer.put((byte) 0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarint(index + 2);
+                return;
+            }
+            strings.put(s, strings.size());
+            buffer.put((byte) 1);
+            writeVarint(utf8Length(s));
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte) c);
+                } else if (c < 0x800) {
+                    buffer.put((byte) (0xc0 | (c >> 6)));
+                    buffer.put((byte) (0x80 | (c & 0x3f)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+                } else {
+                    if (Character.isSurrogate(c)) {
+                        c = '?';
+                    }
+                    buffer.put((byte) (0xe0 | (c >> 12)));
+                    buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                    buffer.put((byte) (0x80 | (c & 0x3f)));
+                }
+            }
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * Reads one message, keeping the table of strings read so far.
+     */
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final ClassLoader loader;
+        private final List<String> strings = new ArrayList<String>();
+
+        Decoder(ByteBuffer buffer, ClassLoader loader) {
+            this.buffer = buffer;
+            this.loader = loader;
+        }
+
+        Throwable readThrowable() {
+            int flags = buffer.get();
+            String className = readString();
+            ApplicationException.MessageKey msgKey = null;
+            String message = null;
+            if ((flags & KEY_ENUM) != 0) {
+                msgKey = enumKey(readString(), (int) readVarint(), loader);
+            } else if ((flags & KEY_NAME) != 0) {
+                msgKey = new NamedKey(readString());
+            } else {
+                message = readString();
+            }
+            Object[] args = null;
+            if ((flags & FOREIGN) == 0) {
+                args = new Object[readCount()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArgument();
+                }
+            }
+            StackTraceElement[] frames = new StackTraceElement[readCount()];
+            for (int i = 0; i < frames.length; i++) {
+                String declaringClass = readString();
+                String methodName = readString();
+                String fileName = readString();
+                frames[i] = new StackTraceElement(declaringClass, methodName, fileName, unzigzag(readVarint()));
+            }
+            Throwable cause = (flags & CAUSE) != 0 ? readThrowable() : null;
+            Throwable throwable;
+            if ((flags & FOREIGN) != 0) {
+                throwable = new RemoteCause(className, message, cause);
+            } else if (msgKey == null) {
+                throwable = new ApplicationException(message);
+                if (cause != null) {
+                    throwable.initCause(cause);
+                }
+            } else {
+                throwable = newException(className, cause, msgKey, args, loader);
+            }
+            throwable.setStackTrace(frames);
+            return throwable;
+        }
+
+        private Object readArgument() {
+            int type = buffer.get();
+            switch (type) {
+                case ARG_NULL:
+                    return null;
+                case ARG_STRING:
+                    return readString();
+                case ARG_INT:
+                    return unzigzag(readVarint());
+                case ARG_LONG:
+                    return unzigzagLong(readVarint());
+                case ARG_DOUBLE:
+                    return buffer.getDouble();
+                case ARG_FLOAT:
+                    return buffer.getFloat();
+                case ARG_BOOLEAN:
+                    return buffer.get() != 0;
+                case ARG_CHAR:
+                    return (char) readVarint();
+                case ARG_SHORT:
+                    return (short) unzigzag(readVarint());
+                case ARG_BYTE:
+                    return buffer.get();
+                case ARG_ARRAY: {
+                    Object[] array = new Object[readCount()];
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readArgument();
+                    }
+                    return array;
+                }
+                case ARG_LIST: {
+                    int size = readCount();
+                    List<Object> list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readArgument());
+                    }
+                    return list;
+                }
+                case ARG_RENDERED:
+                    return new RenderedArgument(readString());
+                default:
+                    throw new IllegalArgumentException("Unknown argument type " + type);
+            }
+        }
+
+        private String readString() {
+            int tag = (int) readVarint();
+            if (tag == 0) {
+                return null;
+            }
+            if (tag < 0 || tag > 1) {
+                if (tag < 0 || tag - 2 >= strings.size()) {
+                    throw new IllegalArgumentException("Unknown string " + (tag - 2));
+                }
+                return strings.get(tag - 2);
+            }
+            int length = (int) readVarint();
+            if (length < 0) {
+                throw new IllegalArgumentException("Malformed ApplicationException, length " + length);
+            }
+            if (length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            String s;
+            if (buffer.hasArray()) {
+                s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                // through Buffer, ByteBuffer.position(int) doesn't exist on Java 8
+                ((Buffer) buffer).position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings.add(s);
+            return s;
+        }
+
+        /**
+         * @return the number of elements that follow, each takes at least a byte so there can't
+         *         be more than are left in the buffer
+         */
+        private int readCount() {
+            long count = readVarint();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed ApplicationException, count " + count);
+            }
+            return (int) count;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+    }
+
+    private static ApplicationException.MessageKey enumKey(String keyClassName, int ordinal, ClassLoader loader) {
+        Class<?> keyClass;
+        try {
+            keyClass = Class.forName(keyClassName, false, loader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown MessageKey class " + keyClassName, e);
+        }
+        Object[] keys = keyClass.getEnumConstants();
+        if (keys == null || !ApplicationException.MessageKey.class.isAssignableFrom(keyClass)
+                || ordinal < 0 || ordinal >= keys.length) {
+            throw new IllegalArgumentException("Unknown MessageKey " + keyClassName + "#" + ordinal);
+        }
+        return (ApplicationException.MessageKey) keys[ordinal];
+    }
+
+    /**
+     * Rebuilds the exception as its original class when it has a (Throwable, MessageKey, Object...)
+     * constructor, otherwise as an ApplicationException. The constructor runs without the hooks
+     * of a new exception, see {@link ApplicationException#rebuilding(boolean)}.
+     */
+    private static ApplicationException newException(String className, Throwable cause,
+                                                     ApplicationException.MessageKey msgKey, Object[] args,
+                                                     ClassLoader loader) {
+        ApplicationException.rebuilding(true);
+        try {
+            return construct(className, cause, msgKey, args, loader);
+        } finally {
+            ApplicationException.rebuilding(false);
+        }
+    }
+
+    private static ApplicationException construct(String className, Throwable cause,
+                                                  ApplicationException.MessageKey msgKey, Object[] args,
+                                                  ClassLoader loader) {
+        if (!ApplicationException.class.getName().equals(className)) {
+            try {
+                Class<?> type = Class.forName(className, false, loader);
+                if (ApplicationException.class.isAssignableFrom(type)) {
+                    Constructor<?> constructor = type.getDeclaredConstructor(
+                            Throwable.class, ApplicationException.MessageKey.class, Object[].class);
+                    constructor.setAccessible(true);
+                    return (ApplicationException) constructor.newInstance(cause, msgKey, args);
+                }
+            } catch (ClassNotFoundException e) {
+                // not known here, fall back to ApplicationException
+            } catch (NoSuchMethodException e) {
+                // fall back to ApplicationException
+            } catch (InstantiationException e) {
+                // fall back to ApplicationException
+            } catch (IllegalAccessException e) {
+                // fall back to ApplicationException
+            } catch (InvocationTargetException e) {
+                // fall back to ApplicationException
+            }
+        }
+        return new ApplicationException(StackTraceMode.NONE, cause, msgKey, args);
+    }
+
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(long value) {
+        return (int) unzigzagLong(value);
+    }
+
+    private static long unzigzagLong(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A MessageKey that is not an enum, known by its name only.
+     */
+    private static final class NamedKey implements ApplicationException.MessageKey {
+        private final String name;
+
+        NamedKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * An argument sent as its rendering, a CharSequence so it renders as sent, without quotes.
+     */
+    static final class RenderedArgument implements CharSequence, Serializable {
+        static final long serialVersionUID = 0;
+
+        private final String rendering;
+
+        RenderedArgument(String rendering) {
+            this.rendering = rendering;
+        }
+
+        @Override
+        public int length() {
+            return rendering.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return rendering.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return rendering.subSequence(start, end);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RenderedArgument && rendering.equals(((RenderedArgument) obj).rendering);
+        }
+
+        @Override
+        public int hashCode() {
+            return rendering.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return rendering;
+        }
+    }
+
+    /**
+     * A cause that was not an ApplicationException, rebuilt with the class name and message it had on the sender.
+     */
+    public static final class RemoteCause extends RuntimeException {
+        static final long serialVersionUID = 0;
+
+        private final String className;
+        private final String remoteMessage;
+
+        RemoteCause(String className, String remoteMessage, Throwable cause) {
+            super(remoteMessage == null ? className : className + ": " + remoteMessage, cause);
+            this.className = className;
+            this.remoteMessage = remoteMessage;
+        }
+
+        /**
+         * @return the name of the class of the original cause
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return the message of the original cause
+         */
+        public String getRemoteMessage() {
+            return remoteMessage;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+}
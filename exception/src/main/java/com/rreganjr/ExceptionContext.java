@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable set of correlation values, like request and trace ids, captured by every
+ * ApplicationException constructed while it's bound, see {@link ApplicationException#getContext()}.
+ *
+ * A context is bound for the duration of a task with {@link #run(ExceptionContext, Runnable)} or
+ * {@link #call(ExceptionContext, Callable)}. On JDKs with a final ScopedValue (25 and later)
+ * the binding is a ScopedValue, which virtual threads share cheaply and which is inherited by
+ * structured concurrency subtasks. On older JDKs it's a ThreadLocal that is restored when the
+ * task ends, so pooled and virtual threads don't keep it. Tasks handed to other threads can be
+ * wrapped with {@link #wrap(Runnable)} to carry the current context along.
+ *
+ * Capturing costs a volatile read while no context is bound anywhere, so exceptions created
+ * outside of a bound task don't pay for the lookup.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ExceptionContext implements Serializable {
+    static final long serialVersionUID = 0;
+
+    public static final ExceptionContext EMPTY = new ExceptionContext(new String[0], new String[0]);
+
+    /**
+     * The provider that captures the bound context, installed by default.
+     */
+    public static final ExceptionContextProvider BOUND = new ExceptionContextProvider() {
+        @Override
+        public ExceptionContext capture() {
+            return bindings.get() == 0 ? null : current();
+        }
+    };
+
+    private static final ThreadLocal<ExceptionContext> threadContext = new ThreadLocal<ExceptionContext>();
+
+    /**
+     * The number of tasks running with a bound context, 0 lets capture skip the lookup.
+     */
+    private static final AtomicInteger bindings = new AtomicInteger();
+
+    // ScopedValue.newInstance(), ScopedValue.where(ScopedValue, Object), Carrier.run(Runnable) and
+    // ScopedValue.orElse(Object) as handles taking and returning Objects, null when ScopedValue isn't final
+    private static final Object scopedValue;
+    private static final MethodHandle where;
+    private static final MethodHandle carrierRun;
+    private static final MethodHandle orElse;
+
+    static {
+        Object value = null;
+        MethodHandle whereHandle = null;
+        MethodHandle runHandle = null;
+        MethodHandle orElseHandle = null;
+        if (featureVersion() >= 25) {
+            try {
+                Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+                Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                value = lookup.findStatic(scopedValueClass, "newInstance", MethodType.methodType(scopedValueClass)).invoke();
+                whereHandle = lookup.findStatic(scopedValueClass, "where",
+                        MethodType.methodType(carrierClass, scopedValueClass, Object.class))
+                        .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+                runHandle = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class))
+                        .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+                orElseHandle = lookup.findVirtual(scopedValueClass, "orElse", MethodType.methodType(Object.class, Object.class))
+                        .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+            } catch (Throwable e) {
+                ApplicationException.log.warn("ScopedValue is not usable, falling back to a ThreadLocal", e);
+                value = null;
+            }
+        }
+        scopedValue = value;
+        where = value == null ? null : whereHandle;
+        carrierRun = value == null ? null : runHandle;
+        orElse = value == null ? null : orElseHandle;
+    }
+
+    private final String[] keys;
+    private final String[] values;
+
+    private ExceptionContext(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * @return a context holding the one value
+     */
+    public static ExceptionContext of(String key, String value) {
+        return EMPTY.with(key, value);
+    }
+
+    /**
+     * @param key - the name of the value, for example "requestId"
+     * @param value - the value, null removes the key
+     * @return a copy of this context with the value set
+     */
+    public ExceptionContext with(String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key");
+        }
+        int index = indexOf(key);
+        if (value == null) {
+            if (index < 0) {
+                return this;
+            }
+            String[] newKeys = new String[keys.length - 1];
+            String[] newValues = new String[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(values, index + 1, newValues, index, keys.length - index - 1);
+            return new ExceptionContext(newKeys, newValues);
+        }
+        if (index >= 0) {
+            String[] newValues = values.clone();
+            newValues[index] = value;
+            return new ExceptionContext(keys, newValues);
+        }
+        String[] newKeys = new String[keys.length + 1];
+        String[] newValues = new String[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, keys.length);
+        System.arraycopy(values, 0, newValues, 0, keys.length);
+        newKeys[keys.length] = key;
+        newValues[keys.length] = value;
+        return new ExceptionContext(newKeys, newValues);
+    }
+
+    /**
+     * @return the value of the key or null
+     */
+    public String get(String key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * @return the values by key in the order they were added
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the context bound to the running task, {@link #EMPTY} if there is none
+     */
+    public static ExceptionContext current() {
+        if (scopedValue != null) {
+            try {
+                Object context = orElse.invokeExact(scopedValue, (Object) EMPTY);
+                return (ExceptionContext) context;
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+        ExceptionContext context = threadContext.get();
+        return context == null ? EMPTY : context;
+    }
+
+    /**
+     * @return true if contexts are bound with a ScopedValue, false if with a ThreadLocal
+     */
+    public static boolean isScoped() {
+        return scopedValue != null;
+    }
+
+    /**
+     * Runs the task with the context bound, exceptions it creates capture the context.
+     */
+    public static void run(ExceptionContext context, Runnable task) {
+        if (context == null) {
+            throw new IllegalArgumentException("context");
+        }
+        bindings.incrementAndGet();
+        try {
+            if (scopedValue != null) {
+                try {
+                    Object carrier = where.invokeExact(scopedValue, (Object) context);
+                    carrierRun.invokeExact(carrier, task);
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            } else {
+                ExceptionContext previous = threadContext.get();
+                threadContext.set(context);
+                try {
+                    task.run();
+                } finally {
+                    if (previous == null) {
+                        threadContext.remove();
+                    } else {
+                        threadContext.set(previous);
+                    }
+                }
+            }
+        } finally {
+            bindings.decrementAndGet();
+        }
+    }
+
+    /**
+     * Calls the task with the context bound, exceptions it creates capture the context.
+     */
+    public static <T> T call(ExceptionContext context, final Callable<T> task) throws Exception {
+        final Object[] result = new Object[1];
+        final Exception[] failure = new Exception[1];
+        run(context, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = task.call();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+
+    /**
+     * @return a task that runs the given one with the context that is current now bound,
+     *         for handing work to executors
+     */
+    public static Runnable wrap(final Runnable task) {
+        final ExceptionContext context = bindings.get() == 0 ? EMPTY : current();
+        if (context.isEmpty()) {
+            return task;
+        }
+        return new Runnable() {
+            @Override
+            public void run() {
+                ExceptionContext.run(context, task);
+            }
+        };
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /**
+     * @return the JDK feature release, 8 on Java 8 where Runtime.version() doesn't exist
+     */
+    private static int featureVersion() {
+        try {
+            Object version = Runtime.class.getMethod("version").invoke(null);
+            return (Integer) Class.forName("java.lang.Runtime$Version").getMethod("major").invoke(version);
+        } catch (Exception e) {
+            return 8;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ExceptionContext && asMap().equals(((ExceptionContext) obj).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Supplies the context attached to every new ApplicationException, see
+ * {@link ApplicationException#setContextProvider(ExceptionContextProvider)}.
+ *
+ * Providers run on the constructing thread in the ApplicationException constructors, before
+ * the listeners, so they have to be cheap. An exception thrown by a provider is logged and the
+ * exception gets no context.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface ExceptionContextProvider {
+
+    /**
+     * @return the context for an exception constructed now, null for none
+     */
+    ExceptionContext capture();
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Computes a stable 64 bit fingerprint of an ApplicationException from its class, MessageKey
+ * and innermost stack frames, so exceptions thrown for the same reason from the same place
+ * group together even when their arguments differ.
+ *
+ * Frames contribute their class and method names but not line numbers, so fingerprints
+ * survive unrelated edits to the source. Exceptions without a stack trace (see
+ * {@link StackTraceMode#NONE}) are fingerprinted by class and key alone. Exceptions created
+ * from a plain message use the message in place of the key. The fingerprint is FNV-1a over
+ * the characters followed by a final avalanche step, and is the same across JVMs and runs.
+ *
+ * Shallow stacks are read without the copy getStackTrace() makes, and the default fingerprint
+ * is computed once per exception, so fingerprinting every exception on the listener path
+ * doesn't cost a copy of the whole stack for each of them.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ExceptionFingerprint {
+    /**
+     * The number of innermost frames used when not given.
+     */
+    public static final int DEFAULT_FRAMES = 5;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ExceptionFingerprint() {
+    }
+
+    /**
+     * @return the fingerprint of the class, key and {@link #DEFAULT_FRAMES} innermost frames, ignoring the arguments
+     */
+    public static long of(ApplicationException exception) {
+        return of(exception, DEFAULT_FRAMES, false);
+    }
+
+    /**
+     * @param exception - the exception to fingerprint
+     * @param frames - the number of innermost frames to include
+     * @param includeArguments - when true exceptions with different argument values get different fingerprints
+     * @return the fingerprint
+     */
+    public static long of(ApplicationException exception, int frames, boolean includeArguments) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("frames");
+        }
+        boolean cached = frames == DEFAULT_FRAMES && !includeArguments;
+        if (cached && exception.fingerprint() != 0) {
+            return exception.fingerprint();
+        }
+        long hash = hash(FNV_OFFSET_BASIS, exception.getClass().getName());
+        ApplicationException.MessageKey msgKey = exception.getMessageKey();
+        hash = hash(hash, msgKey != null ? msgKey.name() : exception.getMessage());
+        if (frames > 0) {
+            StackTraceElement[] stackTrace = exception.frames();
+            for (int i = 0; i < frames && i < stackTrace.length; i++) {
+                hash = hash(hash, stackTrace[i].getClassName());
+                hash = hash(hash, stackTrace[i].getMethodName());
+            }
+        }
+        if (includeArguments) {
+            StringBuilder sb = new StringBuilder();
+            ApplicationException.appendPretty(sb, exception.arguments());
+            hash = hash(hash, sb);
+        }
+        long fingerprint = mix(hash);
+        if (cached) {
+            exception.fingerprint(fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static long hash(long hash, CharSequence chars) {
+        if (chars != null) {
+            for (int i = 0; i < chars.length(); i++) {
+                char c = chars.charAt(i);
+                hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+                hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+            }
+        }
+        // separates the parts so ("ab", "c") and ("a", "bc") differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts constructed ApplicationExceptions per MessageKey and per concrete class.
+ *
+ * The hot path is a map lookup and a LongAdder increment, so threads constructing the
+ * same kind of exception don't contend. Rates are derived off the hot path: a daemon
+ * thread samples the totals once a second into a short history, and the rate over a
+ * window is the difference between the newest sample and the one window seconds older.
+ *
+ * The metrics are read with {@link #snapshot()}, through the ExceptionMetricsMXBean
+ * (see {@link #registerMBean()}) or pushed to {@link MetricsExporter}s every export interval.
+ *
+ * Disabled by default, call {@link #enable()} to start counting.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ExceptionMetrics {
+    /**
+     * The JMX object name of the ExceptionMetricsMXBean.
+     */
+    public static final String OBJECT_NAME = "com.rreganjr:type=ExceptionMetrics";
+
+    /**
+     * The windows, in seconds, rates are reported for.
+     */
+    public static final int[] RATE_WINDOWS = {10, 60, 300};
+
+    static final int HISTORY_LENGTH = 301;
+    static final int DEFAULT_EXPORT_INTERVAL_SECONDS = 60;
+
+    private static final ConcurrentMap<String, Counter> keyCounters = new ConcurrentHashMap<String, Counter>();
+    private static final ConcurrentMap<String, Counter> classCounters = new ConcurrentHashMap<String, Counter>();
+    private static final ClassValue<Counter> classCounterValues = new ClassValue<Counter>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return counter(classCounters, type.getName());
+        }
+    };
+    private static final List<MetricsExporter> exporters = new CopyOnWriteArrayList<MetricsExporter>();
+
+    private static final ApplicationExceptionListener listener = new ApplicationExceptionListener() {
+        @Override
+        public void exceptionCreated(ApplicationException exception) {
+            record(exception);
+        }
+    };
+
+    private static volatile int exportIntervalSeconds = DEFAULT_EXPORT_INTERVAL_SECONDS;
+    private static ScheduledExecutorService sampler;
+    private static long ticks;
+
+    private ExceptionMetrics() {
+    }
+
+    /**
+     * Starts counting constructed exceptions and sampling rates.
+     */
+    public static synchronized void enable() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ApplicationException-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        sampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        ApplicationException.addListener(listener);
+    }
+
+    /**
+     * Stops counting, the counts so far are kept.
+     */
+    public static synchronized void disable() {
+        ApplicationException.removeListener(listener);
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    public static synchronized boolean isEnabled() {
+        return sampler != null;
+    }
+
+    /**
+     * Sets all counts and rates back to zero.
+     */
+    public static void reset() {
+        for (Counter counter : keyCounters.values()) {
+            counter.reset();
+        }
+        for (Counter counter : classCounters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Counts an exception, called by the listener registered by {@link #enable()}.
+     */
+    static void record(ApplicationException exception) {
+        ApplicationException.MessageKey msgKey = exception.getMessageKey();
+        if (msgKey != null) {
+            counter(keyCounters, msgKey.name()).total.increment();
+        }
+        classCounterValues.get(exception.getClass()).total.increment();
+    }
+
+    /**
+     * @param exporter - told about a snapshot of the metrics every export interval
+     */
+    public static void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public static void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * @param seconds - how often the exporters are sent a snapshot
+     */
+    public static void setExportInterval(int seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("seconds");
+        }
+        exportIntervalSeconds = seconds;
+    }
+
+    /**
+     * Sends a snapshot to the exporters now.
+     */
+    public static void export() {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        MetricsSnapshot snapshot = snapshot();
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.export(snapshot);
+            } catch (RuntimeException e) {
+                ApplicationException.log.warn("MetricsExporter " + exporter + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * @return the counts so far and the rates over each of the {@link #RATE_WINDOWS}
+     */
+    public static MetricsSnapshot snapshot() {
+        Map<Integer, Map<String, Double>> ratesByKey = new HashMap<Integer, Map<String, Double>>();
+        for (int window : RATE_WINDOWS) {
+            ratesByKey.put(window, rates(keyCounters, window));
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), counts(keyCounters), counts(classCounters), ratesByKey);
+    }
+
+    /**
+     * @param keyName - the name of the MessageKey
+     * @return the number of exceptions with the key constructed while enabled
+     */
+    public static long getCount(String keyName) {
+        Counter counter = keyCounters.get(keyName);
+        return counter == null ? 0 : counter.total.sum();
+    }
+
+    /**
+     * @param keyName - the name of the MessageKey
+     * @param windowSeconds - the window to average over, at most {@value #HISTORY_LENGTH} - 1 seconds
+     * @return exceptions per second with the key over the window
+     */
+    public static double getRate(String keyName, int windowSeconds) {
+        Counter counter = keyCounters.get(keyName);
+        return counter == null ? 0 : counter.rate(windowSeconds);
+    }
+
+    /**
+     * Registers the ExceptionMetricsMXBean with the platform MBean server under {@link #OBJECT_NAME}.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MBean(), name);
+            }
+        } catch (JMException e) {
+            throw ApplicationException.failedToInitializeComponent(ExceptionMetrics.class, e);
+        }
+    }
+
+    public static void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw ApplicationException.failedToInitializeComponent(ExceptionMetrics.class, e);
+        }
+    }
+
+    /**
+     * Samples the totals, once a second on the sampler thread.
+     */
+    static void tick() {
+        long tick;
+        synchronized (ExceptionMetrics.class) {
+            tick = ++ticks;
+        }
+        for (Counter counter : keyCounters.values()) {
+            counter.sample();
+        }
+        for (Counter counter : classCounters.values()) {
+            counter.sample();
+        }
+        if (tick % exportIntervalSeconds == 0) {
+            export();
+        }
+    }
+
+    private static Counter counter(ConcurrentMap<String, Counter> counters, String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            Counter existing = counters.putIfAbsent(name, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter;
+    }
+
+    private static Map<String, Long> counts(ConcurrentMap<String, Counter> counters) {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().total.sum());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private static Map<String, Double> rates(ConcurrentMap<String, Counter> counters, int windowSeconds) {
+        Map<String, Double> rates = new HashMap<String, Double>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            rates.put(entry.getKey(), entry.getValue().rate(windowSeconds));
+        }
+        return Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * A striped total and the once a second samples of it.
+     */
+    private static final class Counter {
+        final LongAdder total = new LongAdder();
+        private final long[] history = new long[HISTORY_LENGTH];
+        private int samples;
+
+        synchronized void sample() {
+            history[samples % HISTORY_LENGTH] = total.sum();
+            samples++;
+        }
+
+        synchronized double rate(int windowSeconds) {
+            if (windowSeconds <= 0 || windowSeconds >= HISTORY_LENGTH) {
+                throw new IllegalArgumentException("windowSeconds");
+            }
+            int window = Math.min(windowSeconds, samples - 1);
+            if (window <= 0) {
+                return 0;
+            }
+            long newest = history[(samples - 1) % HISTORY_LENGTH];
+            long oldest = history[(samples - 1 - window) % HISTORY_LENGTH];
+            return (newest - oldest) / (double) window;
+        }
+
+        synchronized void reset() {
+            total.reset();
+            samples = 0;
+        }
+    }
+
+    /**
+     * The ExceptionMetricsMXBean registered by {@link #registerMBean()}.
+     */
+    private static final class MBean implements ExceptionMetricsMXBean {
+        @Override
+        public Map<String, Long> getCountsByMessageKey() {
+            return counts(keyCounters);
+        }
+
+        @Override
+        public Map<String, Long> getCountsByClass() {
+            return counts(classCounters);
+        }
+
+        @Override
+        public Map<String, Double> getTenSecondRates() {
+            return rates(keyCounters, 10);
+        }
+
+        @Override
+        public Map<String, Double> getOneMinuteRates() {
+            return rates(keyCounters, 60);
+        }
+
+        @Override
+        public Map<String, Double> getFiveMinuteRates() {
+            return rates(keyCounters, 300);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return ExceptionMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            if (enabled) {
+                enable();
+            } else {
+                disable();
+            }
+        }
+
+        @Override
+        public void reset() {
+            ExceptionMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ExceptionMetrics}, registered under {@link ExceptionMetrics#OBJECT_NAME}.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface ExceptionMetricsMXBean {
+
+    /**
+     * @return the number of exceptions constructed per MessageKey name
+     */
+    Map<String, Long> getCountsByMessageKey();
+
+    /**
+     * @return the number of exceptions constructed per exception class name
+     */
+    Map<String, Long> getCountsByClass();
+
+    /**
+     * @return exceptions per second per MessageKey name over the last 10 seconds
+     */
+    Map<String, Double> getTenSecondRates();
+
+    /**
+     * @return exceptions per second per MessageKey name over the last minute
+     */
+    Map<String, Double> getOneMinuteRates();
+
+    /**
+     * @return exceptions per second per MessageKey name over the last 5 minutes
+     */
+    Map<String, Double> getFiveMinuteRates();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.time.Instant;
+
+/**
+ * One exception kept by the {@link FlightRecorder}.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class FlightRecord {
+    private final long sequence;
+    private final long timestamp;
+    private final long threadId;
+    private final String threadName;
+    private final String exceptionClass;
+    private final String messageKey;
+    private final Object[] arguments;
+    private final StackTraceElement[] topFrames;
+
+    FlightRecord(long sequence, long timestamp, long threadId, String threadName, String exceptionClass,
+                 String messageKey, Object[] arguments, StackTraceElement[] topFrames) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.exceptionClass = exceptionClass;
+        this.messageKey = messageKey;
+        this.arguments = arguments;
+        this.topFrames = topFrames;
+    }
+
+    /**
+     * @return the position of the exception among all the exceptions recorded since the recorder was enabled
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return when the exception was recorded, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public String getExceptionClass() {
+        return exceptionClass;
+    }
+
+    /**
+     * @return the name of the MessageKey or null for exceptions created from a plain message
+     */
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    /**
+     * @return a copy of the raw arguments of the exception
+     */
+    public Object[] getArguments() {
+        return arguments.clone();
+    }
+
+    /**
+     * @param maxLength - the longest rendering to return, longer renderings are cut and end with "..."
+     * @return the arguments rendered the way they are in messages
+     */
+    public String getRenderedArguments(int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        ApplicationException.appendPretty(sb, arguments);
+        if (sb.length() > maxLength) {
+            sb.setLength(Math.max(0, maxLength - 3));
+            sb.append("...");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the innermost frames of the exception, empty when its stack trace was not captured
+     */
+    public StackTraceElement[] getTopFrames() {
+        return topFrames.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Instant.ofEpochMilli(timestamp)).append(" [").append(threadName).append("] ")
+                .append(exceptionClass).append(' ').append(messageKey)
+                .append('(').append(getRenderedArguments(FlightRecorder.getMaxArgumentsLength())).append(')');
+        for (StackTraceElement frame : topFrames) {
+            sb.append(System.lineSeparator()).append("\tat ").append(frame);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Keeps the most recent ApplicationExceptions in a fixed size ring so they can be looked at
+ * after an incident without having logged them all.
+ *
+ * The ring is allocated when the recorder is enabled and recording does not allocate: a
+ * writer claims the next slot with one atomic increment and a compare and set on the slot's
+ * version, stores the timestamp, thread and exception and publishes them by bumping the
+ * version again. Readers copy a slot and keep the copy only if its version did not change,
+ * so neither side takes a lock. A writer that laps a slot still being written drops its
+ * exception rather than waiting, see {@link #getDroppedCount()}.
+ *
+ * The MessageKey, raw arguments and top frames are read from the kept exception when the
+ * recorder is dumped, so recording never renders arguments or copies stack traces. The
+ * recorder keeps the last capacity exceptions (and what they reference) reachable.
+ *
+ * Dump the kept exceptions with {@link #snapshot()}, {@link #dump(Path)}, through the
+ * FlightRecorderMXBean (see {@link #registerMBean()}) or automatically when the number of
+ * exceptions in a second reaches a threshold, see {@link #setDumpTrigger(int, Path)}.
+ *
+ * Disabled by default, call {@link #enable()} to start recording.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class FlightRecorder {
+    /**
+     * The JMX object name of the FlightRecorderMXBean.
+     */
+    public static final String OBJECT_NAME = "com.rreganjr:type=FlightRecorder";
+
+    /**
+     * System property with the number of exceptions kept, rounded up to a power of two.
+     */
+    public static final String CAPACITY_PROPERTY = FlightRecorder.class.getName() + ".capacity";
+    static final int DEFAULT_CAPACITY = 4096;
+    static final int DEFAULT_TOP_FRAMES = 8;
+    static final int DEFAULT_MAX_ARGUMENTS_LENGTH = 256;
+    static final long DEFAULT_DUMP_COOL_DOWN_MILLIS = 60000;
+
+    private static final AtomicLongFieldUpdater<Slot> VERSION = AtomicLongFieldUpdater.newUpdater(Slot.class, "version");
+
+    private static final ApplicationExceptionListener listener = new ApplicationExceptionListener() {
+        @Override
+        public void exceptionCreated(ApplicationException exception) {
+            record(exception);
+        }
+    };
+
+    private static volatile Ring ring;
+    private static volatile boolean enabled;
+    private static volatile int topFrames = DEFAULT_TOP_FRAMES;
+    private static volatile int maxArgumentsLength = DEFAULT_MAX_ARGUMENTS_LENGTH;
+
+    private static ScheduledExecutorService trigger;
+    private static int triggerThreshold;
+    private static Path triggerDirectory;
+    private static long dumpCoolDownMillis = DEFAULT_DUMP_COOL_DOWN_MILLIS;
+    private static long lastRecordedCount;
+    private static long lastDumpTime = Long.MIN_VALUE;
+
+    private FlightRecorder() {
+    }
+
+    /**
+     * Starts recording into a ring of {@link #CAPACITY_PROPERTY} exceptions, 4096 when not set.
+     */
+    public static void enable() {
+        enable(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Starts recording. The kept exceptions are cleared when the capacity changes.
+     *
+     * @param capacity - the number of exceptions to keep, rounded up to a power of two
+     */
+    public static synchronized void enable(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        if (ring == null || ring.slots.length != size) {
+            ring = new Ring(size);
+        }
+        ApplicationException.addListener(listener);
+        enabled = true;
+    }
+
+    /**
+     * Stops recording, the kept exceptions can still be dumped.
+     */
+    public static synchronized void disable() {
+        ApplicationException.removeListener(listener);
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Forgets the kept exceptions.
+     */
+    public static synchronized void clear() {
+        if (ring != null) {
+            ring = new Ring(ring.slots.length);
+        }
+        lastRecordedCount = 0;
+    }
+
+    /**
+     * @return the number of exceptions kept, 0 before the recorder is first enabled
+     */
+    public static int getCapacity() {
+        Ring current = ring;
+        return current == null ? 0 : current.slots.length;
+    }
+
+    /**
+     * @return the number of exceptions recorded since the recorder was enabled or cleared
+     */
+    public static long getRecordedCount() {
+        Ring current = ring;
+        return current == null ? 0 : current.cursor.get() - current.dropped.sum();
+    }
+
+    /**
+     * @return the number of exceptions dropped because their slot was still being written by another thread
+     */
+    public static long getDroppedCount() {
+        Ring current = ring;
+        return current == null ? 0 : current.dropped.sum();
+    }
+
+    /**
+     * @param frames - the number of innermost frames included with each dumped exception
+     */
+    public static void setTopFrames(int frames) {
+        if (frames < 0) {
+            throw new IllegalArgumentException("frames");
+        }
+        topFrames = frames;
+    }
+
+    public static int getTopFrames() {
+        return topFrames;
+    }
+
+    /**
+     * @param length - the longest rendering of the arguments written when dumping
+     */
+    public static void setMaxArgumentsLength(int length) {
+        if (length < 3) {
+            throw new IllegalArgumentException("length");
+        }
+        maxArgumentsLength = length;
+    }
+
+    public static int getMaxArgumentsLength() {
+        return maxArgumentsLength;
+    }
+
+    /**
+     * Records an exception, called by the listener registered by {@link #enable()}.
+     */
+    static void record(ApplicationException exception) {
+        Ring current = ring;
+        if (current == null) {
+            return;
+        }
+        long sequence = current.cursor.getAndIncrement();
+        Slot slot = current.slots[(int) sequence & current.mask];
+        long version = slot.version;
+        if ((version & 1) != 0 || !VERSION.compareAndSet(slot, version, version + 1)) {
+            current.dropped.increment();
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        slot.sequence = sequence;
+        slot.timestamp = System.currentTimeMillis();
+        slot.threadId = thread.getId();
+        slot.threadName = thread.getName();
+        slot.exception = exception;
+        slot.version = version + 2;
+    }
+
+    /**
+     * @return the kept exceptions, oldest first
+     */
+    public static List<FlightRecord> snapshot() {
+        Ring current = ring;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        List<Slot> copies = new ArrayList<Slot>(current.slots.length);
+        for (Slot slot : current.slots) {
+            long version = slot.version;
+            if (version == 0 || (version & 1) != 0) {
+                continue;
+            }
+            Slot copy = new Slot();
+            copy.sequence = slot.sequence;
+            copy.timestamp = slot.timestamp;
+            copy.threadId = slot.threadId;
+            copy.threadName = slot.threadName;
+            copy.exception = slot.exception;
+            // a successful compare and set orders the reads above before it, so an unchanged
+            // version means the copy was not torn by a writer
+            if (VERSION.compareAndSet(slot, version, version)) {
+                copies.add(copy);
+            }
+        }
+        Collections.sort(copies, new Comparator<Slot>() {
+            @Override
+            public int compare(Slot a, Slot b) {
+                return Long.compare(a.sequence, b.sequence);
+            }
+        });
+        int frames = topFrames;
+        List<FlightRecord> records = new ArrayList<FlightRecord>(copies.size());
+        for (Slot copy : copies) {
+            records.add(toRecord(copy, frames));
+        }
+        return records;
+    }
+
+    /**
+     * Writes the kept exceptions, oldest first, in the format of {@link FlightRecord#toString()}.
+     *
+     * @param writer - where to write the exceptions
+     * @return the number of exceptions written
+     */
+    public static int dump(Writer writer) throws IOException {
+        List<FlightRecord> records = snapshot();
+        for (FlightRecord record : records) {
+            writer.write(record.toString());
+            writer.write(System.lineSeparator());
+        }
+        writer.flush();
+        return records.size();
+    }
+
+    /**
+     * @param file - the file to write the kept exceptions to, replaced if it exists
+     * @return the number of exceptions written
+     */
+    public static int dump(Path file) throws IOException {
+        Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        try {
+            return dump(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Dumps the kept exceptions to a new file in the directory when at least threshold
+     * exceptions are recorded within a second. Checked once a second, and at most one dump
+     * is written per cool down period.
+     *
+     * @param threshold - exceptions per second that trigger a dump
+     * @param directory - where the flight-recorder-&lt;time&gt;.txt files are written
+     */
+    public static synchronized void setDumpTrigger(int threshold, Path directory) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold");
+        }
+        if (directory == null) {
+            throw new IllegalArgumentException("directory");
+        }
+        triggerThreshold = threshold;
+        triggerDirectory = directory;
+        lastRecordedCount = getRecordedCount();
+        if (trigger == null) {
+            trigger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ApplicationException-flight-recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            trigger.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    checkTrigger(System.currentTimeMillis());
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops dumping on error rate spikes.
+     */
+    public static synchronized void clearDumpTrigger() {
+        if (trigger != null) {
+            trigger.shutdownNow();
+            trigger = null;
+        }
+        triggerThreshold = 0;
+        triggerDirectory = null;
+        lastDumpTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * @param millis - the least time between two triggered dumps
+     */
+    public static synchronized void setDumpCoolDown(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("millis");
+        }
+        dumpCoolDownMillis = millis;
+    }
+
+    /**
+     * Dumps if the exceptions recorded since the last check reach the threshold, once a second on the trigger thread.
+     *
+     * @return the file written or null
+     */
+    static synchronized Path checkTrigger(long now) {
+        long recorded = getRecordedCount();
+        long recent = recorded - lastRecordedCount;
+        lastRecordedCount = recorded;
+        if (triggerDirectory == null || recent < triggerThreshold
+                || (lastDumpTime != Long.MIN_VALUE && now - lastDumpTime < dumpCoolDownMillis)) {
+            return null;
+        }
+        lastDumpTime = now;
+        Path file = triggerDirectory.resolve("flight-recorder-" + now + ".txt");
+        try {
+            int dumped = dump(file);
+            ApplicationException.log.warn(recent + " exceptions in the last second, dumped the last " + dumped + " to " + file);
+            return file;
+        } catch (IOException e) {
+            ApplicationException.log.warn("Failed to dump the flight recorder to " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Registers the FlightRecorderMXBean with the platform MBean server under {@link #OBJECT_NAME}.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MBean(), name);
+            }
+        } catch (JMException e) {
+            throw ApplicationException.failedToInitializeComponent(FlightRecorder.class, e);
+        }
+    }
+
+    public static void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            throw ApplicationException.failedToInitializeComponent(FlightRecorder.class, e);
+        }
+    }
+
+    private static FlightRecord toRecord(Slot slot, int frames) {
+        ApplicationException exception = slot.exception;
+        ApplicationException.MessageKey msgKey = exception.getMessageKey();
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        return new FlightRecord(slot.sequence, slot.timestamp, slot.threadId, slot.threadName,
+                exception.getClass().getName(), msgKey == null ? null : msgKey.name(),
+                exception.getArguments(), Arrays.copyOf(stackTrace, Math.min(frames, stackTrace.length)));
+    }
+
+    /**
+     * The preallocated slots and the count of exceptions recorded into them.
+     */
+    private static final class Ring {
+        final Slot[] slots;
+        final int mask;
+        final AtomicLong cursor = new AtomicLong();
+        final LongAdder dropped = new LongAdder();
+
+        Ring(int size) {
+            slots = new Slot[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Slot();
+            }
+            mask = size - 1;
+        }
+    }
+
+    /**
+     * One recorded exception, guarded by its version: odd while being written, 0 when never written.
+     */
+    private static final class Slot {
+        volatile long version;
+        long sequence;
+        long timestamp;
+        long threadId;
+        String threadName;
+        ApplicationException exception;
+    }
+
+    /**
+     * The FlightRecorderMXBean registered by {@link #registerMBean()}.
+     */
+    private static final class MBean implements FlightRecorderMXBean {
+        @Override
+        public boolean isEnabled() {
+            return FlightRecorder.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            if (enabled) {
+                enable();
+            } else {
+                disable();
+            }
+        }
+
+        @Override
+        public int getCapacity() {
+            return FlightRecorder.getCapacity();
+        }
+
+        @Override
+        public long getRecordedCount() {
+            return FlightRecorder.getRecordedCount();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return FlightRecorder.getDroppedCount();
+        }
+
+        @Override
+        public String[] getRecentExceptions() {
+            List<FlightRecord> records = snapshot();
+            String[] lines = new String[records.size()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = records.get(i).toString();
+            }
+            return lines;
+        }
+
+        @Override
+        public int dump(String file) {
+            try {
+                return FlightRecorder.dump(Paths.get(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void clear() {
+            FlightRecorder.clear();
+        }
+    }
+}
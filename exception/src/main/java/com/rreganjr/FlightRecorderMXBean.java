@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * JMX view of the {@link FlightRecorder}, registered under {@link FlightRecorder#OBJECT_NAME}.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface FlightRecorderMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of exceptions the recorder keeps
+     */
+    int getCapacity();
+
+    /**
+     * @return the number of exceptions recorded since the recorder was enabled
+     */
+    long getRecordedCount();
+
+    /**
+     * @return the number of exceptions not recorded because their slot was still being written
+     */
+    long getDroppedCount();
+
+    /**
+     * @return the kept exceptions, oldest first, one per entry
+     */
+    String[] getRecentExceptions();
+
+    /**
+     * @param file - the file to write the kept exceptions to
+     * @return the number of exceptions written
+     */
+    int dump(String file);
+
+    void clear();
+}
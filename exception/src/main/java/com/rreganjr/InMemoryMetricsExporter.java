@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent exported snapshots in memory, for tests and simple diagnostics.
+ *
+ * @author reemar.app@gmail.com
+ */
+public class InMemoryMetricsExporter implements MetricsExporter {
+    private final int capacity;
+    private final Deque<MetricsSnapshot> snapshots = new ArrayDeque<MetricsSnapshot>();
+
+    /**
+     * @param capacity - the number of snapshots to keep
+     */
+    public InMemoryMetricsExporter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void export(MetricsSnapshot snapshot) {
+        if (snapshots.size() == capacity) {
+            snapshots.removeFirst();
+        }
+        snapshots.addLast(snapshot);
+    }
+
+    /**
+     * @return the kept snapshots, oldest first
+     */
+    public synchronized List<MetricsSnapshot> getSnapshots() {
+        return new ArrayList<MetricsSnapshot>(snapshots);
+    }
+
+    /**
+     * @return the newest snapshot or null if nothing was exported yet
+     */
+    public synchronized MetricsSnapshot getLatest() {
+        return snapshots.peekLast();
+    }
+}
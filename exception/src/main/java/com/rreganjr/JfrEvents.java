@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Locale;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for ApplicationExceptions:
+ * <ul>
+ * <li>{@value #CREATED} for every exception constructed from a MessageKey, and every shared
+ *     instance handed out, with its key, class and stack trace mode</li>
+ * <li>{@value #FORMATTED} for every message rendered, with its duration, key, bundle, locale
+ *     and whether the compiled template was already cached</li>
+ * </ul>
+ * Both are disabled by default, enable them in a .jfc file or on a Recording, for example
+ * recording.enable("com.rreganjr.ApplicationExceptionCreated"). A disabled event costs a
+ * check of its enabled flag. On runtimes without jdk.jfr, like Java 8 before update 262, the
+ * event classes are never loaded and nothing is emitted.
+ *
+ * @author reemar.app@gmail.com
+ */
+final class JfrEvents {
+    static final String CREATED = "com.rreganjr.ApplicationExceptionCreated";
+    static final String FORMATTED = "com.rreganjr.MessageFormatted";
+
+    static final boolean AVAILABLE = available();
+
+    private JfrEvents() {
+    }
+
+    static void exceptionCreated(ApplicationException exception, StackTraceMode stackTraceMode, boolean shared) {
+        if (AVAILABLE) {
+            Jfr.exceptionCreated(exception, stackTraceMode, shared);
+        }
+    }
+
+    /**
+     * @return the started event to pass to {@link #endFormatting}, null if it's disabled
+     */
+    static Object beginFormatting() {
+        return AVAILABLE ? Jfr.beginFormatting() : null;
+    }
+
+    /**
+     * @param event - from {@link #beginFormatting()}
+     * @param bundleName - the bundle the template came from, null for compiled keys
+     * @param cached - true if the template didn't have to be looked up and compiled
+     */
+    static void endFormatting(Object event, ApplicationException.MessageKey msgKey, String bundleName, Locale locale, boolean cached) {
+        if (event != null) {
+            Jfr.endFormatting(event, msgKey, bundleName, locale, cached);
+        }
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * The only class referring to the event classes, loaded when jdk.jfr is available.
+     */
+    private static final class Jfr {
+
+        static void exceptionCreated(ApplicationException exception, StackTraceMode stackTraceMode, boolean shared) {
+            ExceptionCreated event = new ExceptionCreated();
+            if (event.isEnabled()) {
+                ApplicationException.MessageKey msgKey = exception.getMessageKey();
+                event.messageKey = msgKey == null ? null : msgKey.name();
+                event.exceptionClass = exception.getClass().getName();
+                event.stackTraceMode = stackTraceMode.name();
+                event.stackTraceCaptured = stackTraceMode != StackTraceMode.NONE;
+                event.shared = shared;
+                event.commit();
+            }
+        }
+
+        static Object beginFormatting() {
+            MessageFormatted event = new MessageFormatted();
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.begin();
+            return event;
+        }
+
+        static void endFormatting(Object started, ApplicationException.MessageKey msgKey, String bundleName, Locale locale, boolean cached) {
+            MessageFormatted event = (MessageFormatted) started;
+            event.end();
+            if (event.shouldCommit()) {
+                event.messageKey = msgKey.name();
+                event.bundle = bundleName;
+                event.locale = locale.toString();
+                event.cached = cached;
+                event.commit();
+            }
+        }
+    }
+
+    @Name(CREATED)
+    @Label("Application Exception Created")
+    @Category({"Reemar", "Exceptions"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ExceptionCreated extends Event {
+        @Label("Message Key")
+        String messageKey;
+
+        @Label("Exception Class")
+        String exceptionClass;
+
+        @Label("Stack Trace Mode")
+        String stackTraceMode;
+
+        @Label("Stack Trace Captured")
+        boolean stackTraceCaptured;
+
+        @Label("Shared")
+        @Description("A shared instance handed out again instead of a new exception")
+        boolean shared;
+    }
+
+    @Name(FORMATTED)
+    @Label("Message Formatted")
+    @Category({"Reemar", "Exceptions"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MessageFormatted extends Event {
+        @Label("Message Key")
+        String messageKey;
+
+        @Label("Bundle")
+        @Description("The bundle of the template, null for compiled message keys")
+        String bundle;
+
+        @Label("Locale")
+        String locale;
+
+        @Label("Cached")
+        @Description("The compiled template was cached, no bundle lookup was needed")
+        boolean cached;
+    }
+}
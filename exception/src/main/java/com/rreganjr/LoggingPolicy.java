@@ -0,0 +1,406 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which constructed ApplicationExceptions are written to the debug log and writes them.
+ *
+ * A burst of bad input can construct thousands of exceptions a second, logging each one
+ * makes the appender the bottleneck. Per MessageKey this applies, in order:
+ * <ul>
+ * <li>1-in-N sampling, see {@link #setSampleRate(String, int)}</li>
+ * <li>a token bucket rate limit, see {@link #setRateLimit(String, double, int)}</li>
+ * </ul>
+ * Exceptions that are not logged are counted and a "suppressed N similar exceptions" line
+ * is logged per key every summary interval.
+ *
+ * By default exceptions are handed to a bounded queue and logged by a daemon thread so the
+ * throwing thread never waits on appender I/O. When the queue is full the exception is
+ * counted as suppressed instead. The message of an exception with a lazy message is
+ * rendered on the logging thread.
+ *
+ * Everything can be changed at runtime, by default nothing is sampled or rate limited.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class LoggingPolicy {
+    /**
+     * System property for the capacity of the asynchronous logging queue.
+     */
+    public static final String QUEUE_CAPACITY_PROPERTY = LoggingPolicy.class.getName() + ".queueCapacity";
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final long DEFAULT_SUMMARY_INTERVAL_MILLIS = 10000;
+
+    private static final Limits UNLIMITED = new Limits(0, 0, 1);
+
+    private static final ConcurrentMap<String, KeyState> keyStates = new ConcurrentHashMap<String, KeyState>();
+    private static final BlockingQueue<ApplicationException> queue =
+            new ArrayBlockingQueue<ApplicationException>(Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+
+    private static volatile Limits defaultLimits = UNLIMITED;
+    private static volatile boolean asynchronous = true;
+    private static volatile int compactTraceChars;
+    private static volatile long summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SUMMARY_INTERVAL_MILLIS);
+
+    private static final AtomicLong pending = new AtomicLong();
+    private static volatile Thread worker;
+    private static volatile boolean rescheduled;
+
+    /**
+     * Put on the queue to wake the logging thread, never logged.
+     */
+    private static final ApplicationException WAKE_UP = new ApplicationException("wake up");
+
+    private LoggingPolicy() {
+    }
+
+    /**
+     * Logs the exception if the policy for its key allows it, called by the ApplicationException
+     * constructors when debug logging is enabled.
+     *
+     * @param exception - the newly constructed exception
+     * @param keyName - the name of the exception's MessageKey
+     */
+    static void debug(ApplicationException exception, String keyName) {
+        KeyState state = keyState(keyName);
+        if (!state.allow()) {
+            state.suppressed.increment();
+            ensureWorker();
+            return;
+        }
+        if (!asynchronous) {
+            write(exception);
+            return;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(exception)) {
+            pending.decrementAndGet();
+            state.suppressed.increment();
+        }
+        ensureWorker();
+    }
+
+    /**
+     * Limits how many exceptions with the named key are logged, exceptions over the
+     * limit are counted in the summary.
+     *
+     * @param keyName - the name of the MessageKey
+     * @param perSecond - the sustained number of exceptions logged per second, 0 for no limit
+     * @param burst - how many exceptions can be logged at once before the limit applies
+     */
+    public static void setRateLimit(String keyName, double perSecond, int burst) {
+        KeyState state = keyState(keyName);
+        Limits limits = state.limits != null ? state.limits : defaultLimits;
+        state.setLimits(new Limits(perSecond, burst, limits.sampleRate));
+    }
+
+    /**
+     * Logs only one in every sampleRate exceptions with the named key.
+     *
+     * @param keyName - the name of the MessageKey
+     * @param sampleRate - 1 to log every exception
+     */
+    public static void setSampleRate(String keyName, int sampleRate) {
+        KeyState state = keyState(keyName);
+        Limits limits = state.limits != null ? state.limits : defaultLimits;
+        state.setLimits(new Limits(limits.perSecond, limits.burst, sampleRate));
+    }
+
+    /**
+     * The rate limit for keys without their own limits, see {@link #setRateLimit(String, double, int)}.
+     */
+    public static void setDefaultRateLimit(double perSecond, int burst) {
+        Limits limits = defaultLimits;
+        defaultLimits = new Limits(perSecond, burst, limits.sampleRate);
+    }
+
+    /**
+     * The sample rate for keys without their own limits, see {@link #setSampleRate(String, int)}.
+     */
+    public static void setDefaultSampleRate(int sampleRate) {
+        Limits limits = defaultLimits;
+        defaultLimits = new Limits(limits.perSecond, limits.burst, sampleRate);
+    }
+
+    /**
+     * Makes the named key use the default limits again.
+     *
+     * @param keyName - the name of the MessageKey
+     */
+    public static void clearLimits(String keyName) {
+        KeyState state = keyStates.get(keyName);
+        if (state != null) {
+            state.setLimits(null);
+        }
+    }
+
+    /**
+     * @param interval - how often the suppressed exception counts are logged
+     * @param unit - the unit of interval
+     */
+    public static void setSummaryInterval(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval");
+        }
+        summaryIntervalNanos = unit.toNanos(interval);
+        rescheduleSummary();
+    }
+
+    /**
+     * @param async - true to log on a background thread, false to log on the thread that
+     *                constructs the exception.
+     */
+    public static void setAsynchronous(boolean async) {
+        asynchronous = async;
+    }
+
+    public static boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Logs causes as a {@link CompactStackTrace} in the message instead of handing them to the
+     * logger, which prints the whole chain.
+     *
+     * @param maxChars - the most characters of the compacted causes, 0 to hand causes to the logger
+     */
+    public static void setCompactTraces(int maxChars) {
+        if (maxChars < 0) {
+            throw new IllegalArgumentException("maxChars");
+        }
+        compactTraceChars = maxChars;
+    }
+
+    public static int getCompactTraces() {
+        return compactTraceChars;
+    }
+
+    /**
+     * @param keyName - the name of the MessageKey
+     * @return the number of exceptions with the key not logged since the last summary
+     */
+    public static long getSuppressedCount(String keyName) {
+        KeyState state = keyStates.get(keyName);
+        return state == null ? 0 : state.suppressed.sum();
+    }
+
+    /**
+     * Waits for the queued exceptions to be logged, for example before shutting down.
+     *
+     * @param timeout - the maximum time to wait
+     * @param unit - the unit of timeout
+     * @return true if the queue was drained before the timeout
+     */
+    public static boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.get() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Logs the suppressed counts now rather than waiting for the summary interval.
+     */
+    public static void logSummary() {
+        long intervalMillis = TimeUnit.NANOSECONDS.toMillis(summaryIntervalNanos);
+        for (Map.Entry<String, KeyState> entry : keyStates.entrySet()) {
+            long suppressed = entry.getValue().suppressed.sumThenReset();
+            if (suppressed > 0) {
+                ApplicationException.log.debug("Suppressed " + suppressed + " similar exceptions with "
+                        + entry.getKey() + " in the last " + intervalMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Back to the defaults: no limits, no sampling, asynchronous logging, causes handed to the logger.
+     */
+    public static void reset() {
+        keyStates.clear();
+        defaultLimits = UNLIMITED;
+        asynchronous = true;
+        compactTraceChars = 0;
+        summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SUMMARY_INTERVAL_MILLIS);
+        rescheduleSummary();
+    }
+
+    /**
+     * Wakes the logging thread so the next summary is due one interval from now. Not with an
+     * interrupt, which could abort an appender's I/O and lose log lines.
+     */
+    private static void rescheduleSummary() {
+        if (worker != null) {
+            rescheduled = true;
+            // when the queue is full the thread is awake anyway
+            queue.offer(WAKE_UP);
+        }
+    }
+
+    private static KeyState keyState(String keyName) {
+        KeyState state = keyStates.get(keyName);
+        if (state == null) {
+            state = new KeyState();
+            KeyState existing = keyStates.putIfAbsent(keyName, state);
+            if (existing != null) {
+                state = existing;
+            }
+        }
+        return state;
+    }
+
+    private static void write(ApplicationException exception) {
+        Throwable cause = exception.getCause();
+        int maxChars = compactTraceChars;
+        if (cause == null) {
+            ApplicationException.log.debug(exception.getMessage());
+        } else if (maxChars > 0) {
+            StringBuilder sb = new StringBuilder(exception.getMessage()).append(System.getProperty("line.separator"));
+            CompactStackTrace.append(cause, sb, maxChars, CompactStackTrace.DEFAULT_MAX_FRAMES);
+            ApplicationException.log.debug(sb.toString());
+        } else {
+            ApplicationException.log.debug(exception.getMessage(), cause);
+        }
+    }
+
+    private static void ensureWorker() {
+        if (worker == null) {
+            synchronized (LoggingPolicy.class) {
+                if (worker == null) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    }, "ApplicationException-logger");
+                    thread.setDaemon(true);
+                    thread.start();
+                    worker = thread;
+                }
+            }
+        }
+    }
+
+    private static void drain() {
+        long nextSummary = System.nanoTime() + summaryIntervalNanos;
+        while (true) {
+            try {
+                ApplicationException exception = queue.poll(Math.max(0, nextSummary - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (rescheduled) {
+                    rescheduled = false;
+                    nextSummary = System.nanoTime() + summaryIntervalNanos;
+                }
+                if (exception != null && exception != WAKE_UP) {
+                    try {
+                        write(exception);
+                    } catch (RuntimeException e) {
+                        // a failing appender or toString() must not stop the logging thread
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // not interrupted by LoggingPolicy, keep logging
+                continue;
+            }
+            if (System.nanoTime() - nextSummary >= 0) {
+                logSummary();
+                nextSummary = System.nanoTime() + summaryIntervalNanos;
+            }
+        }
+    }
+
+    /**
+     * Immutable limits for a key.
+     */
+    private static final class Limits {
+        final double perSecond;
+        final int burst;
+        final int sampleRate;
+        final long intervalNanos;
+
+        Limits(double perSecond, int burst, int sampleRate) {
+            if (perSecond < 0 || burst < 0 || sampleRate < 1) {
+                throw new IllegalArgumentException("perSecond, burst and sampleRate must be positive");
+            }
+            this.perSecond = perSecond;
+            this.burst = Math.max(1, burst);
+            this.sampleRate = sampleRate;
+            this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+        }
+    }
+
+    /**
+     * Sampling and rate limit state for a key, updated without locks.
+     */
+    private static final class KeyState {
+        volatile Limits limits;
+        final AtomicLong seen = new AtomicLong();
+
+        /**
+         * The theoretical arrival time of the next log line (GCRA form of a token bucket).
+         */
+        final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+        final LongAdder suppressed = new LongAdder();
+
+        void setLimits(Limits limits) {
+            this.limits = limits;
+            theoreticalArrival.set(Long.MIN_VALUE);
+        }
+
+        boolean allow() {
+            Limits limits = this.limits;
+            if (limits == null) {
+                limits = defaultLimits;
+            }
+            if (limits.sampleRate > 1 && (seen.getAndIncrement() % limits.sampleRate) != 0) {
+                return false;
+            }
+            if (limits.intervalNanos == 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            long tolerance = limits.intervalNanos * limits.burst;
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long next = (arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival) + limits.intervalNanos;
+                if (next - now > tolerance) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Loads message bundles on first use and caches their compiled {@link MessageTemplate}s per
+ * bundle, locale and class loader, so an exception can be rendered in any locale on demand.
+ *
+ * Readers never lock: the whole cache is one immutable reference to concurrent maps, and
+ * {@link #reload()} replaces it with an empty one after clearing the ResourceBundle cache, so
+ * the next lookup reads the bundles again. {@link #watch(String)} reloads automatically when
+ * a properties file of the bundle changes on disk. Only bundles loaded from a directory on the
+ * class path can be watched, not ones inside a jar.
+ *
+ * Bundles are loaded through the class loader of the exception that renders them, so the
+ * bundle of an exception class in a child class loader is found next to the class. Each loader
+ * gets its own entry, held weakly so the cache doesn't keep an undeployed application's loader.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class MessageSource {
+    /**
+     * The bundle of the ApplicationException messages.
+     */
+    public static final String DEFAULT_BUNDLE = ApplicationException.class.getName();
+
+    /**
+     * Bundle name, then locale, to the bundle and its templates for each class loader. The
+     * arrays are copied on write and rarely hold more than one entry.
+     */
+    private static volatile ConcurrentMap<String, ConcurrentMap<Locale, Messages[]>> cache = newCache();
+
+    private static final Set<Path> watchedDirectories = new HashSet<Path>();
+    private static WatchService watchService;
+    private static Thread watcher;
+
+    private MessageSource() {
+    }
+
+    /**
+     * @param bundleName - the base name of the bundle
+     * @param locale - the locale to look the bundle up for
+     * @return the bundle, loaded on first use
+     * @throws java.util.MissingResourceException if there is no bundle
+     */
+    public static ResourceBundle getBundle(String bundleName, Locale locale) {
+        return getBundle(bundleName, locale, MessageSource.class.getClassLoader());
+    }
+
+    /**
+     * @param bundleName - the base name of the bundle
+     * @param locale - the locale to look the bundle up for
+     * @param loader - the class loader to load the bundle with
+     * @return the bundle, loaded on first use
+     * @throws java.util.MissingResourceException if there is no bundle
+     */
+    public static ResourceBundle getBundle(String bundleName, Locale locale, ClassLoader loader) {
+        return messages(bundleName, locale, loader).bundle;
+    }
+
+    /**
+     * @return true if the bundle found for the locale is the base bundle, without a translation
+     *         for the locale or its parents, or if there is no bundle at all
+     */
+    static boolean isBaseBundle(String bundleName, Locale locale, ClassLoader loader) {
+        try {
+            return Locale.ROOT.equals(messages(bundleName, locale, loader).bundle.getLocale());
+        } catch (MissingResourceException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the template of the key is compiled and cached for the locale, without loading anything
+     */
+    static boolean isCached(String bundleName, Locale locale, ClassLoader loader, ApplicationException.MessageKey msgKey) {
+        ConcurrentMap<Locale, Messages[]> bundles = cache.get(bundleName);
+        Messages messages = bundles == null ? null : find(bundles.get(locale), loader);
+        return messages != null && messages.templates.containsKey(msgKey.name());
+    }
+
+    /**
+     * @return the compiled template from a bundle loaded with the class loader of MessageSource
+     */
+    static MessageTemplate getTemplate(String bundleName, Locale locale, ApplicationException.MessageKey msgKey) {
+        return getTemplate(bundleName, locale, MessageSource.class.getClassLoader(), msgKey);
+    }
+
+    /**
+     * @param bundleName - the base name of the bundle
+     * @param locale - the locale to look the bundle up for
+     * @param loader - the class loader to load the bundle with
+     * @param msgKey - the key of the pattern in the bundle
+     * @return the compiled template, compiled on first use
+     * @throws java.util.MissingResourceException if the bundle or key does not exist
+     */
+    static MessageTemplate getTemplate(String bundleName, Locale locale, ClassLoader loader,
+                                       ApplicationException.MessageKey msgKey) {
+        Messages messages = messages(bundleName, locale, loader);
+        String name = msgKey.name();
+        MessageTemplate template = messages.templates.get(name);
+        if (template == null) {
+            template = MessageTemplate.compile(messages.bundle.getString(name), locale);
+            MessageTemplate existing = messages.templates.putIfAbsent(name, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Forgets all loaded bundles and templates, they are loaded again from the class path on next use.
+     */
+    public static void reload() {
+        Set<ClassLoader> loaders = new HashSet<ClassLoader>();
+        loaders.add(MessageSource.class.getClassLoader());
+        for (ConcurrentMap<Locale, Messages[]> bundles : cache.values()) {
+            for (Messages[] loaded : bundles.values()) {
+                for (Messages messages : loaded) {
+                    ClassLoader loader = messages.loader.get();
+                    if (loader != null) {
+                        loaders.add(loader);
+                    }
+                }
+            }
+        }
+        for (ClassLoader loader : loaders) {
+            ResourceBundle.clearCache(loader);
+        }
+        cache = newCache();
+        ApplicationException.clearSharedInstances();
+    }
+
+    /**
+     * Reloads when a properties file in the directory of the bundle changes.
+     *
+     * @param bundleName - the base name of a bundle loaded from a directory on the class path
+     * @return false if the bundle is not in a directory on the class path and can't be watched
+     */
+    public static boolean watch(String bundleName) {
+        return watch(bundleName, MessageSource.class.getClassLoader());
+    }
+
+    /**
+     * Reloads when a properties file in the directory of the bundle changes.
+     *
+     * @param bundleName - the base name of a bundle loaded from a directory on the class path
+     * @param loader - the class loader the bundle is loaded with
+     * @return false if the bundle is not in a directory on the class path and can't be watched
+     */
+    public static synchronized boolean watch(String bundleName, ClassLoader loader) {
+        Path directory = directoryOf(bundleName, loader);
+        if (directory == null) {
+            return false;
+        }
+        if (watchedDirectories.contains(directory)) {
+            return true;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                watcher = new Thread(new Watcher(watchService), "ApplicationException-messages-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw ApplicationException.failedToInitializeComponent(MessageSource.class, e);
+        }
+        watchedDirectories.add(directory);
+        return true;
+    }
+
+    /**
+     * Stops watching all bundles.
+     */
+    public static synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                ApplicationException.log.warn("Failed to close the message bundle watch service", e);
+            }
+            watchService = null;
+            watcher = null;
+        }
+        watchedDirectories.clear();
+    }
+
+    private static Messages messages(String bundleName, Locale locale, ClassLoader loader) {
+        ConcurrentMap<String, ConcurrentMap<Locale, Messages[]>> current = cache;
+        ConcurrentMap<Locale, Messages[]> bundles = current.get(bundleName);
+        if (bundles == null) {
+            bundles = new ConcurrentHashMap<Locale, Messages[]>();
+            ConcurrentMap<Locale, Messages[]> existing = current.putIfAbsent(bundleName, bundles);
+            if (existing != null) {
+                bundles = existing;
+            }
+        }
+        Messages[] loaded = bundles.get(locale);
+        Messages messages = find(loaded, loader);
+        if (messages != null) {
+            return messages;
+        }
+        Messages added = new Messages(ResourceBundle.getBundle(bundleName, locale, loader), loader);
+        while (true) {
+            Messages[] updated = add(loaded, added);
+            if (loaded == null ? bundles.putIfAbsent(locale, updated) == null : bundles.replace(locale, loaded, updated)) {
+                return added;
+            }
+            loaded = bundles.get(locale);
+            messages = find(loaded, loader);
+            if (messages != null) {
+                return messages;
+            }
+        }
+    }
+
+    /**
+     * @return the messages loaded with the class loader, null if there are none
+     */
+    private static Messages find(Messages[] loaded, ClassLoader loader) {
+        if (loaded != null) {
+            for (Messages messages : loaded) {
+                if (messages.loader.get() == loader) {
+                    return messages;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a copy of the array with the messages added, less those of collected class loaders
+     */
+    private static Messages[] add(Messages[] loaded, Messages added) {
+        List<Messages> updated = new ArrayList<Messages>();
+        if (loaded != null) {
+            for (Messages messages : loaded) {
+                if (messages.loader.get() != null) {
+                    updated.add(messages);
+                }
+            }
+        }
+        updated.add(added);
+        return updated.toArray(new Messages[updated.size()]);
+    }
+
+    /**
+     * @return the directory holding the properties file of the bundle for the default locale
+     *         or one of its parents, null if there is none or it is not a directory
+     */
+    private static Path directoryOf(String bundleName, ClassLoader loader) {
+        ResourceBundle.Control control = ResourceBundle.Control.getControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+        URL url = null;
+        for (Locale candidate : control.getCandidateLocales(bundleName, Locale.getDefault())) {
+            url = loader.getResource(control.toResourceName(control.toBundleName(bundleName, candidate), "properties"));
+            if (url != null) {
+                break;
+            }
+        }
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI()).getParent();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static ConcurrentMap<String, ConcurrentMap<Locale, Messages[]>> newCache() {
+        return new ConcurrentHashMap<String, ConcurrentMap<Locale, Messages[]>>();
+    }
+
+    /**
+     * A loaded bundle and the templates compiled from it.
+     */
+    private static final class Messages {
+        final ResourceBundle bundle;
+        final WeakReference<ClassLoader> loader;
+        final ConcurrentMap<String, MessageTemplate> templates = new ConcurrentHashMap<String, MessageTemplate>();
+
+        Messages(ResourceBundle bundle, ClassLoader loader) {
+            this.bundle = bundle;
+            this.loader = new WeakReference<ClassLoader>(loader);
+        }
+    }
+
+    /**
+     * Reloads when a properties file changes in a watched directory.
+     */
+    private static final class Watcher implements Runnable {
+        private final WatchService watchService;
+
+        Watcher(WatchService watchService) {
+            this.watchService = watchService;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || (context != null && context.toString().endsWith(".properties"))) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        reload();
+                        ApplicationException.log.info("Reloaded the message bundles");
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            } catch (ClosedWatchServiceException e) {
+                // stopped
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+/**
+ * A message pattern from the ApplicationException*.properties files parsed once into
+ * literal segments and argument slots.
+ *
+ * Patterns that only use %s, %% and %n are rendered by appending the segments and
+ * arguments into a single pre-sized StringBuilder, which produces the same output as
+ * java.util.Formatter without reparsing the pattern on every call. Patterns using any
+ * other conversion, flags, widths or explicit argument indexes fall back to Formatter.
+ * Templates are cached per bundle and locale by {@link MessageSource}.
+ *
+ * @author reemar.app@gmail.com
+ */
+final class MessageTemplate {
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final String pattern;
+
+    /**
+     * The locale Formatter formats with, null for the default format locale.
+     */
+    private final Locale locale;
+
+    /**
+     * The literal text between argument slots, there is always one more literal than slots,
+     * null when the pattern has to be rendered with Formatter.
+     */
+    private final String[] literals;
+    private final int literalLength;
+
+    private MessageTemplate(String pattern, Locale locale, String[] literals) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.literals = literals;
+        int length = 0;
+        if (literals != null) {
+            for (String literal : literals) {
+                length += literal.length();
+            }
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param pattern - a format string appropriate for java.util.Formatter
+     * @return the compiled pattern
+     */
+    static MessageTemplate compile(String pattern) {
+        return compile(pattern, null);
+    }
+
+    /**
+     * @param pattern - a format string appropriate for java.util.Formatter
+     * @param locale - the locale conversions falling back to Formatter use, null for the default
+     * @return the compiled pattern
+     */
+    static MessageTemplate compile(String pattern, Locale locale) {
+        List<String> literals = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            char conversion = i + 1 < pattern.length() ? pattern.charAt(i + 1) : 0;
+            if (conversion == 's') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+            } else if (conversion == '%') {
+                literal.append('%');
+            } else if (conversion == 'n') {
+                literal.append(LINE_SEPARATOR);
+            } else {
+                return new MessageTemplate(pattern, locale, null);
+            }
+            i += 2;
+        }
+        literals.add(literal.toString());
+        return new MessageTemplate(pattern, locale, literals.toArray(new String[literals.size()]));
+    }
+
+    /**
+     * @return true if the pattern is rendered without java.util.Formatter
+     */
+    boolean isCompiled() {
+        return literals != null;
+    }
+
+    /**
+     * Fills the raw arguments of an exception into the pattern, each argument is rendered
+     * once with ApplicationException.appendPretty. Compiled templates render into a reused
+     * per thread buffer so the only garbage is the returned String.
+     *
+     * @param args - the raw arguments of the exception
+     * @return the message
+     */
+    String render(Object[] args) {
+        if (literals == null) {
+            Formatter formatter = locale == null ? new Formatter() : new Formatter(locale);
+            try {
+                return formatter.format(pattern, ApplicationException.prettyArray(args)).toString();
+            } finally {
+                formatter.close();
+            }
+        }
+        int slots = literals.length - 1;
+        if (slots == 0) {
+            return literals[0];
+        }
+        if (args == null || args.length < slots) {
+            throw new MissingFormatArgumentException("%s");
+        }
+        RenderBuffer buffer = RenderBuffer.acquire();
+        try {
+            StringBuilder sb = buffer.sb;
+            sb.ensureCapacity(literalLength + 16 * slots);
+            for (int i = 0; i < slots; i++) {
+                sb.append(literals[i]);
+                ApplicationException.appendPretty(sb, args[i]);
+            }
+            sb.append(literals[slots]);
+            return sb.toString();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * A StringBuilder reused by one thread. An argument's toString() can format another
+     * message, so a buffer that is already in use is never handed out twice.
+     */
+    private static final class RenderBuffer {
+        private static final int INITIAL_CAPACITY = 256;
+        private static final int MAX_RETAINED_CAPACITY = 8192;
+
+        private static final ThreadLocal<RenderBuffer> buffers = new ThreadLocal<RenderBuffer>() {
+            @Override
+            protected RenderBuffer initialValue() {
+                return new RenderBuffer();
+            }
+        };
+
+        private StringBuilder sb = new StringBuilder(INITIAL_CAPACITY);
+        private boolean inUse;
+
+        static RenderBuffer acquire() {
+            RenderBuffer buffer = buffers.get();
+            if (buffer.inUse) {
+                buffer = new RenderBuffer();
+            }
+            buffer.inUse = true;
+            return buffer;
+        }
+
+        void release() {
+            if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+                sb = new StringBuilder(INITIAL_CAPACITY);
+            } else {
+                sb.setLength(0);
+            }
+            inUse = false;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Receives a snapshot of the {@link ExceptionMetrics} every export interval, for example to
+ * push them to a monitoring system. Called on the metrics thread, so a slow exporter delays
+ * sampling but never the code constructing exceptions.
+ *
+ * @author reemar.app@gmail.com
+ */
+public interface MetricsExporter {
+
+    /**
+     * @param snapshot - the counts and rates at the time of the export
+     */
+    void export(MetricsSnapshot snapshot);
+}
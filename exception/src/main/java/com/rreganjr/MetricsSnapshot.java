@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The {@link ExceptionMetrics} at a point in time.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class MetricsSnapshot {
+    private final long timestamp;
+    private final Map<String, Long> countsByKey;
+    private final Map<String, Long> countsByClass;
+    private final Map<Integer, Map<String, Double>> ratesByKey;
+
+    MetricsSnapshot(long timestamp, Map<String, Long> countsByKey, Map<String, Long> countsByClass,
+                    Map<Integer, Map<String, Double>> ratesByKey) {
+        this.timestamp = timestamp;
+        this.countsByKey = countsByKey;
+        this.countsByClass = countsByClass;
+        this.ratesByKey = Collections.unmodifiableMap(ratesByKey);
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of exceptions constructed per MessageKey name
+     */
+    public Map<String, Long> getCountsByKey() {
+        return countsByKey;
+    }
+
+    /**
+     * @return the number of exceptions constructed per exception class name
+     */
+    public Map<String, Long> getCountsByClass() {
+        return countsByClass;
+    }
+
+    /**
+     * @param windowSeconds - one of {@link ExceptionMetrics#RATE_WINDOWS}
+     * @return exceptions per second per MessageKey name over the window
+     */
+    public Map<String, Double> getRatesByKey(int windowSeconds) {
+        Map<String, Double> rates = ratesByKey.get(windowSeconds);
+        if (rates == null) {
+            throw new IllegalArgumentException("windowSeconds");
+        }
+        return rates;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{timestamp=" + timestamp + ", countsByKey=" + countsByKey
+                + ", countsByClass=" + countsByClass + ", ratesByKey=" + ratesByKey + "}";
+    }
+}
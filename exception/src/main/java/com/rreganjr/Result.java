@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.function.Function;
+
+/**
+ * The value of a computation or the {@link ApplicationError} it failed with, for code that
+ * returns errors instead of throwing them and throws only at the boundary with {@link #get()}.
+ *
+ * A failure passes through map and flatMap as itself, and a success that maps to the same
+ * value is returned as is, so chains allocate only for new values.
+ *
+ * Results are immutable as long as their value is.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class Result<T> {
+    private static final Result<Object> NULL = new Result<Object>(null, null);
+
+    private final T value;
+    private final ApplicationError error;
+
+    private Result(T value, ApplicationError error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * @param value - the value, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Result<T> success(T value) {
+        if (value == null) {
+            return (Result<T>) NULL;
+        }
+        return new Result<T>(value, null);
+    }
+
+    public static <T> Result<T> failure(ApplicationError error) {
+        if (error == null) {
+            throw new IllegalArgumentException("error");
+        }
+        return new Result<T>(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the error, null for a success
+     */
+    public ApplicationError getError() {
+        return error;
+    }
+
+    /**
+     * @return the value
+     * @throws ApplicationException the exception of the error
+     */
+    public T get() {
+        if (error != null) {
+            throw error.toException();
+        }
+        return value;
+    }
+
+    /**
+     * @return the value, or other for a failure
+     */
+    public T orElse(T other) {
+        return error == null ? value : other;
+    }
+
+    /**
+     * @param mapper - called with the value of a success
+     * @return a success with the mapped value, or this failure
+     */
+    @SuppressWarnings("unchecked")
+    public <U> Result<U> map(Function<? super T, ? extends U> mapper) {
+        if (error != null) {
+            return (Result<U>) this;
+        }
+        U mapped = mapper.apply(value);
+        if (mapped == value) {
+            return (Result<U>) this;
+        }
+        return success(mapped);
+    }
+
+    /**
+     * @param mapper - called with the value of a success
+     * @return the result of the mapper, or this failure
+     */
+    @SuppressWarnings("unchecked")
+    public <U> Result<U> flatMap(Function<? super T, Result<U>> mapper) {
+        if (error != null) {
+            return (Result<U>) this;
+        }
+        return mapper.apply(value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Result)) {
+            return false;
+        }
+        Result<?> other = (Result<?>) obj;
+        if (error != null) {
+            return error.equals(other.error);
+        }
+        return other.error == null && (value == null ? other.value == null : value.equals(other.value));
+    }
+
+    @Override
+    public int hashCode() {
+        if (error != null) {
+            return error.hashCode();
+        }
+        return value == null ? 0 : value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? "success[" + value + "]" : "failure[" + error + "]";
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * Whether the factories of argument-free ApplicationExceptions, such as
+ * {@link ApplicationException#notImplemented()}, construct a new exception on every call.
+ *
+ * Shared instances are preallocated on first use, have their message rendered once and never
+ * record a stack trace. They are immutable: addSuppressed and setStackTrace have no effect and
+ * initCause throws IllegalStateException, so no caller can change what another caller sees.
+ * Listeners are still told about every instance handed out.
+ *
+ * Identity: with SHARED every call with the same key returns the same object on all threads,
+ * with PER_THREAD the same object on one thread only. Code must not rely on either, compare
+ * exceptions with equals or by {@link ApplicationException#getMessageKey()} instead.
+ *
+ * @author reemar.app@gmail.com
+ */
+public enum SharingMode {
+    /**
+     * Construct a new exception, with the configured stack trace mode, on every call.
+     */
+    NONE,
+
+    /**
+     * Return one immutable stackless instance per key, shared by all threads.
+     */
+    SHARED,
+
+    /**
+     * Return one immutable stackless instance per key and thread, for tight loops on threads
+     * that shouldn't see each other's instances. Each thread allocates its instances on first use.
+     */
+    PER_THREAD
+}
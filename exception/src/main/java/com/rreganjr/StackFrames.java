@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Captures the top frames of the current stack for {@link StackTraceMode#SHALLOW}.
+ *
+ * On Java 9 and later this uses java.lang.StackWalker so only the requested frames are
+ * materialized. The module is built for Java 8, so StackWalker is reached through
+ * reflection and on a Java 8 runtime the full stack is captured and then truncated.
+ *
+ * Frames belonging to the construction of the exception (the constructors of Throwable
+ * subclasses and this class) are skipped, the same frames fillInStackTrace() skips.
+ *
+ * @author reemar.app@gmail.com
+ */
+final class StackFrames {
+    static final StackTraceElement[] EMPTY = new StackTraceElement[0];
+
+    private static final Walker walker = Walker.create();
+
+    private StackFrames() {
+    }
+
+    /**
+     * @param depth - the maximum number of frames to return
+     * @return at most depth frames of the caller's stack, starting at the code that
+     *         constructed the exception.
+     */
+    static StackTraceElement[] capture(int depth) {
+        if (depth <= 0) {
+            return EMPTY;
+        }
+        if (walker != null) {
+            return walker.walk(depth);
+        }
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        int first = 0;
+        while (first < stack.length && isConstructionFrame(stack[first].getClassName(), stack[first].getMethodName())) {
+            first++;
+        }
+        int length = Math.min(depth, stack.length - first);
+        StackTraceElement[] top = new StackTraceElement[length];
+        System.arraycopy(stack, first, top, 0, length);
+        return top;
+    }
+
+    static boolean isConstructionFrame(String className, String methodName) {
+        if (className.equals(StackFrames.class.getName())) {
+            return true;
+        }
+        if (!"<init>".equals(methodName)) {
+            return className.equals(ApplicationException.class.getName()) && "resolveStackTrace".equals(methodName);
+        }
+        try {
+            return Throwable.class.isAssignableFrom(Class.forName(className, false, StackFrames.class.getClassLoader()));
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reflective access to java.lang.StackWalker, the handles are constants so the JIT can inline them.
+     */
+    private static final class Walker {
+        private static final MethodType GENERIC = MethodType.methodType(Object.class, Object.class);
+        private static final MethodHandle WALK;
+        private static final MethodHandle GET_DECLARING_CLASS;
+        private static final MethodHandle GET_METHOD_NAME;
+        private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+        static {
+            MethodHandle walk = null;
+            MethodHandle getDeclaringClass = null;
+            MethodHandle getMethodName = null;
+            MethodHandle toStackTraceElement = null;
+            try {
+                Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+                Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                Object option = Enum.valueOf((Class<? extends Enum>) Class.forName("java.lang.StackWalker$Option"), "RETAIN_CLASS_REFERENCE");
+                Object stackWalker = walkerClass.getMethod("getInstance", Set.class).invoke(null, Collections.singleton(option));
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                        .bindTo(stackWalker).asType(MethodType.methodType(Object.class, Function.class));
+                getDeclaringClass = lookup.findVirtual(frameClass, "getDeclaringClass", MethodType.methodType(Class.class)).asType(GENERIC);
+                getMethodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class)).asType(GENERIC);
+                toStackTraceElement = lookup.findVirtual(frameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class)).asType(GENERIC);
+            } catch (Exception e) {
+                walk = null;
+            } catch (LinkageError e) {
+                walk = null;
+            }
+            WALK = walk;
+            GET_DECLARING_CLASS = getDeclaringClass;
+            GET_METHOD_NAME = getMethodName;
+            TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+        }
+
+        private Walker() {
+        }
+
+        /**
+         * @return a Walker or null if the runtime doesn't have StackWalker.
+         */
+        static Walker create() {
+            return WALK != null ? new Walker() : null;
+        }
+
+        StackTraceElement[] walk(final int depth) {
+            try {
+                return (StackTraceElement[]) (Object) WALK.invokeExact((Function<?, ?>) new Top(depth));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                return EMPTY;
+            }
+        }
+
+        /**
+         * Collects the first depth frames after the construction frames.
+         */
+        private static final class Top implements Function<Stream<Object>, StackTraceElement[]> {
+            private final int depth;
+
+            Top(int depth) {
+                this.depth = depth;
+            }
+
+            @Override
+            public StackTraceElement[] apply(Stream<Object> frames) {
+                StackTraceElement[] top = new StackTraceElement[depth];
+                int count = 0;
+                boolean skipping = true;
+                Iterator<Object> i = frames.iterator();
+                try {
+                    while (count < depth && i.hasNext()) {
+                        Object frame = i.next();
+                        if (skipping) {
+                            Class<?> type = (Class<?>) (Object) GET_DECLARING_CLASS.invokeExact(frame);
+                            String methodName = (String) (Object) GET_METHOD_NAME.invokeExact(frame);
+                            skipping = type == StackFrames.class || type.getEnclosingClass() == StackFrames.class
+                                    || type == Top.class
+                                    || (type == ApplicationException.class && "resolveStackTrace".equals(methodName))
+                                    || ("<init>".equals(methodName) && Throwable.class.isAssignableFrom(type));
+                        }
+                        if (!skipping) {
+                            top[count++] = (StackTraceElement) (Object) TO_STACK_TRACE_ELEMENT.invokeExact(frame);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+                if (count < depth) {
+                    StackTraceElement[] trimmed = new StackTraceElement[count];
+                    System.arraycopy(top, 0, trimmed, 0, count);
+                    return trimmed;
+                }
+                return top;
+            }
+        }
+    }
+}
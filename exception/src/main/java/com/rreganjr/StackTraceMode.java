@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+/**
+ * How much of the stack an ApplicationException records when it is constructed.
+ *
+ * Filling in the stack trace is usually the most expensive part of creating an exception,
+ * exceptions used for control flow on hot validation paths rarely need it.
+ *
+ * @author reemar.app@gmail.com
+ */
+public enum StackTraceMode {
+    /**
+     * Record the whole stack, the same as any other Throwable.
+     */
+    FULL,
+
+    /**
+     * Record only the top frames, see {@link ApplicationException#setShallowStackDepth(int)}.
+     * Uses StackWalker where the runtime has it so the rest of the stack is never walked.
+     * This keeps logged and serialized traces small, but the frames are materialized eagerly
+     * so it is not cheaper than FULL on shallow stacks, use NONE when throughput matters.
+     */
+    SHALLOW,
+
+    /**
+     * Record no stack, getStackTrace() returns an empty array.
+     */
+    NONE
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initializes components in dependency order, running those whose dependencies are all
+ * initialized in parallel, instead of one at a time.
+ *
+ * At most {@link #setParallelism(int) parallelism} components initialize at once, on virtual
+ * threads where the JVM has them and on a pool of as many daemon threads otherwise. A
+ * component that takes longer than its timeout is interrupted and fails. Every failure is
+ * reported as a {@link ApplicationException#failedToInitializeComponent} exception: the
+ * exception thrown by the component, its timeout, or the failure of a dependency, which
+ * skips the component. Startup never stops at the first failure, the {@link StartupReport}
+ * holds all failures and the time each component took.
+ *
+ * Components are added before {@link #start()}, an orchestrator is not thread safe.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class StartupOrchestrator {
+    /**
+     * Initializes one component.
+     */
+    public static interface Component {
+        /**
+         * @throws Exception when the component can't be initialized
+         */
+        void initialize() throws Exception;
+    }
+
+    /**
+     * The time a component may take when not given.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Map<Class<?>, Node> nodes = new LinkedHashMap<Class<?>, Node>();
+    private int parallelism = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+    /**
+     * @param parallelism - the most components initializing at once
+     */
+    public StartupOrchestrator setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param timeout - the time a component added after this call may take
+     */
+    public StartupOrchestrator setTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout");
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * @param type - identifies the component in dependencies and failures
+     * @param component - initializes it
+     * @param dependencies - the types of the components initialized before it, added before or after it
+     */
+    public StartupOrchestrator add(Class<?> type, Component component, Class<?>... dependencies) {
+        if (type == null || component == null) {
+            throw new IllegalArgumentException(type == null ? "type" : "component");
+        }
+        if (nodes.containsKey(type)) {
+            throw new IllegalArgumentException(type.getName() + " was already added");
+        }
+        nodes.put(type, new Node(type, component, dependencies.clone(), timeoutNanos));
+        return this;
+    }
+
+    /**
+     * Initializes the components on an executor of its own, shut down when they are done.
+     *
+     * @throws IllegalArgumentException when a dependency wasn't added or dependencies form a cycle
+     */
+    public StartupReport start() throws InterruptedException {
+        ExecutorService executor = newExecutor(Math.min(parallelism, Math.max(1, nodes.size())));
+        try {
+            return start(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Initializes the components on the executor, which is left running. A component's timeout
+     * starts when it starts initializing, not while it waits for an executor thread. Timed out
+     * components are interrupted with Future.cancel.
+     *
+     * @throws InterruptedException when interrupted while waiting, after interrupting the
+     *                              running components
+     */
+    public StartupReport start(ExecutorService executor) throws InterruptedException {
+        List<Run> runs = plan();
+        // each run is added when it starts and again when it finishes
+        final LinkedBlockingQueue<Run> events = new LinkedBlockingQueue<Run>();
+        ArrayDeque<Run> ready = new ArrayDeque<Run>();
+        for (Run run : runs) {
+            if (run.waitingFor == 0) {
+                ready.add(run);
+            }
+        }
+        List<Run> running = new ArrayList<Run>();
+        int pending = runs.size();
+        long begin = System.nanoTime();
+        try {
+            while (pending > 0) {
+                while (running.size() < parallelism && !ready.isEmpty()) {
+                    final Run run = ready.poll();
+                    run.submitNanos = System.nanoTime();
+                    running.add(run);
+                    run.future = executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            run.startNanos = System.nanoTime();
+                            events.add(run);
+                            try {
+                                run.node.component.initialize();
+                            } catch (Throwable e) {
+                                run.thrown = e;
+                            }
+                            run.finishNanos = System.nanoTime();
+                            events.add(run);
+                        }
+                    });
+                }
+                long wait = Long.MAX_VALUE;
+                for (Run run : running) {
+                    if (run.started) {
+                        wait = Math.min(wait, run.deadline - System.nanoTime());
+                    }
+                }
+                Run event = events.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                Run done = null;
+                if (event != null && running.contains(event)) {
+                    if (!event.started) {
+                        event.started = true;
+                        event.deadline = event.startNanos + event.node.timeoutNanos;
+                    }
+                    if (event.finishNanos != 0) {
+                        done = event;
+                        running.remove(done);
+                    }
+                }
+                if (done != null) {
+                    pending--;
+                    done.endNanos = done.finishNanos;
+                    if (done.thrown == null) {
+                        for (Run dependent : done.dependents) {
+                            if (--dependent.waitingFor == 0 && dependent.failure == null) {
+                                ready.add(dependent);
+                            }
+                        }
+                    } else {
+                        done.failure = ApplicationException.failedToInitializeComponent(done.node.type, done.thrown);
+                        pending -= skipDependents(done);
+                    }
+                }
+                long now = System.nanoTime();
+                for (int i = running.size() - 1; i >= 0; i--) {
+                    Run run = running.get(i);
+                    if (run.started && now - run.deadline >= 0) {
+                        running.remove(i);
+                        run.future.cancel(true);
+                        run.endNanos = now;
+                        run.failure = ApplicationException.failedToInitializeComponent(run.node.type,
+                                "timed out after " + TimeUnit.NANOSECONDS.toMillis(run.node.timeoutNanos) + " ms");
+                        pending--;
+                        pending -= skipDependents(run);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Run run : running) {
+                run.future.cancel(true);
+            }
+            throw e;
+        }
+        return new StartupReport(runs, begin, System.nanoTime());
+    }
+
+    /**
+     * Skips the components depending on a failed one, and those depending on them.
+     *
+     * @return the number of components skipped
+     */
+    private static int skipDependents(Run failed) {
+        int skipped = 0;
+        ArrayDeque<Run> failures = new ArrayDeque<Run>();
+        failures.add(failed);
+        while (!failures.isEmpty()) {
+            Run run = failures.poll();
+            for (Run dependent : run.dependents) {
+                if (dependent.failure == null) {
+                    dependent.failure = ApplicationException.failedToInitializeComponent(dependent.node.type,
+                            "dependency " + run.node.type.getName() + " failed");
+                    skipped++;
+                    failures.add(dependent);
+                }
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * @return a run of each component in the order added, linked to its dependents
+     */
+    private List<Run> plan() {
+        Map<Class<?>, Run> runs = new LinkedHashMap<Class<?>, Run>();
+        for (Node node : nodes.values()) {
+            runs.put(node.type, new Run(node));
+        }
+        for (Run run : runs.values()) {
+            for (Class<?> dependency : run.node.dependencies) {
+                Run required = runs.get(dependency);
+                if (required == null) {
+                    throw new IllegalArgumentException(run.node.type.getName() + " depends on "
+                            + (dependency == null ? null : dependency.getName()) + ", which wasn't added");
+                }
+                required.dependents.add(run);
+                run.waitingFor++;
+            }
+        }
+        checkForCycles(runs);
+        return new ArrayList<Run>(runs.values());
+    }
+
+    private static void checkForCycles(Map<Class<?>, Run> runs) {
+        Map<Run, Integer> waiting = new LinkedHashMap<Run, Integer>();
+        ArrayDeque<Run> ready = new ArrayDeque<Run>();
+        for (Run run : runs.values()) {
+            waiting.put(run, run.waitingFor);
+            if (run.waitingFor == 0) {
+                ready.add(run);
+            }
+        }
+        int ordered = 0;
+        while (!ready.isEmpty()) {
+            Run run = ready.poll();
+            ordered++;
+            for (Run dependent : run.dependents) {
+                int left = waiting.get(dependent) - 1;
+                waiting.put(dependent, left);
+                if (left == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (ordered < runs.size()) {
+            List<String> cycle = new ArrayList<String>();
+            for (Map.Entry<Run, Integer> entry : waiting.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cycle.add(entry.getKey().node.type.getName());
+                }
+            }
+            throw new IllegalArgumentException("dependencies form a cycle through " + cycle);
+        }
+    }
+
+    /**
+     * @return a virtual thread per task executor when the JVM has one, a fixed pool otherwise
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            // before Java 21
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ApplicationException-startup-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    static final class Node {
+        final Class<?> type;
+        final Component component;
+        final Class<?>[] dependencies;
+        final long timeoutNanos;
+
+        Node(Class<?> type, Component component, Class<?>[] dependencies, long timeoutNanos) {
+            this.type = type;
+            this.component = component;
+            this.dependencies = dependencies;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+
+    /**
+     * The state of a component during one start. The initializing thread writes startNanos,
+     * finishNanos and thrown, which are read after taking the run from the event queue, or
+     * are volatile for a run that timed out. The other fields are the starting thread's,
+     * deadline is set once the run is seen to have started.
+     */
+    static final class Run {
+        final Node node;
+        final List<Run> dependents = new ArrayList<Run>();
+        int waitingFor;
+        long submitNanos;
+        boolean started;
+        long deadline;
+        Future<?> future;
+        volatile long startNanos;
+        volatile long finishNanos;
+        Throwable thrown;
+        long endNanos;
+        ApplicationException failure;
+
+        Run(Node node) {
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What happened during a {@link StartupOrchestrator#start()}: when each component started
+ * initializing, how long it took and how it failed.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class StartupReport {
+
+    /**
+     * The initialization of one component.
+     */
+    public static final class ComponentTiming {
+        private final Class<?> type;
+        private final long startNanos;
+        private final long durationNanos;
+        private final ApplicationException failure;
+
+        ComponentTiming(Class<?> type, long startNanos, long durationNanos, ApplicationException failure) {
+            this.type = type;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.failure = failure;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * @return when it started after the start of startup, -1 if it was skipped
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * @return how long it took, up to its timeout
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return its failedToInitializeComponent exception, null if it was initialized
+         */
+        public ApplicationException getFailure() {
+            return failure;
+        }
+
+        public boolean isSkipped() {
+            return startNanos < 0;
+        }
+    }
+
+    private final List<ComponentTiming> timings;
+    private final List<ApplicationException> failures;
+    private final long totalNanos;
+
+    StartupReport(List<StartupOrchestrator.Run> runs, long beginNanos, long endNanos) {
+        List<ComponentTiming> timings = new ArrayList<ComponentTiming>(runs.size());
+        List<ApplicationException> failures = new ArrayList<ApplicationException>();
+        for (StartupOrchestrator.Run run : runs) {
+            if (run.submitNanos == 0) {
+                timings.add(new ComponentTiming(run.node.type, -1, 0, run.failure));
+            } else {
+                long start = run.startNanos != 0 ? run.startNanos : run.submitNanos;
+                timings.add(new ComponentTiming(run.node.type, start - beginNanos, Math.max(0, run.endNanos - start), run.failure));
+            }
+            if (run.failure != null) {
+                failures.add(run.failure);
+            }
+        }
+        Collections.sort(timings, new Comparator<ComponentTiming>() {
+            @Override
+            public int compare(ComponentTiming left, ComponentTiming right) {
+                if (left.isSkipped() != right.isSkipped()) {
+                    return left.isSkipped() ? 1 : -1;
+                }
+                return Long.compare(left.startNanos, right.startNanos);
+            }
+        });
+        for (int i = 1; i < failures.size(); i++) {
+            failures.get(0).addSuppressed(failures.get(i));
+        }
+        this.timings = Collections.unmodifiableList(timings);
+        this.failures = Collections.unmodifiableList(failures);
+        this.totalNanos = endNanos - beginNanos;
+    }
+
+    /**
+     * @return the components in the order they started, the skipped ones last
+     */
+    public List<ComponentTiming> getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the timing of the component, null if it wasn't added
+     */
+    public ComponentTiming getTiming(Class<?> type) {
+        for (ComponentTiming timing : timings) {
+            if (timing.type == type) {
+                return timing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the failedToInitializeComponent exception of each failed or skipped component,
+     *         in the order they were added
+     */
+    public List<ApplicationException> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the time startup took
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @throws ApplicationException the first failure, with the others suppressed
+     */
+    public void throwIfFailed() {
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
+    /**
+     * @return the total time and a line per component with when it started, how long it took
+     *         and how it failed
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(64 + 96 * timings.size());
+        sb.append("startup took ").append(millis(totalNanos)).append(" ms, ")
+                .append(failures.size()).append(" of ").append(timings.size()).append(" components failed");
+        for (ComponentTiming timing : timings) {
+            sb.append('\n');
+            if (timing.isSkipped()) {
+                sb.append("  skipped");
+            } else {
+                sb.append("  +").append(millis(timing.startNanos)).append(" ms ")
+                        .append(millis(timing.durationNanos)).append(" ms");
+            }
+            sb.append(' ').append(timing.type.getName());
+            if (timing.failure != null) {
+                sb.append(": ").append(timing.failure.getMessage());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collects the invalid and missing values found while validating and turns them into one
+ * ApplicationException at the end, instead of throwing on the first failure.
+ *
+ * Failures are kept as names and raw values in growing arrays, no exception or message is
+ * created per failure. Large collections are validated in parallel with
+ * {@link #validate(List, Validator)}, which splits the list over a fork-join pool, collects
+ * each part separately and merges the collectors in list order.
+ *
+ * A collector is not thread safe, each thread or fork-join task uses its own.
+ *
+ * @author reemar.app@gmail.com
+ */
+public final class ValidationCollector {
+    /**
+     * The number of failures of each kind named in the message when not given.
+     */
+    public static final int DEFAULT_MAX_REPORTED = 100;
+
+    static final int PARALLEL_THRESHOLD = 1024;
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
+
+    /**
+     * Validates one item of a list.
+     */
+    public static interface Validator<T> {
+        /**
+         * @param item - the item to validate
+         * @param index - the position of the item in the list, for naming its fields
+         * @param collector - where to add the failures
+         */
+        void validate(T item, int index, ValidationCollector collector);
+    }
+
+    private final int maxReported;
+    private String[] invalidNames = NO_NAMES;
+    private Object[] invalidValues = NO_VALUES;
+    private int invalidCount;
+    private String[] missingNames = NO_NAMES;
+    private int missingCount;
+
+    public ValidationCollector() {
+        this(DEFAULT_MAX_REPORTED);
+    }
+
+    /**
+     * @param maxReported - the number of invalid and of missing values named in the message,
+     *                    the rest are only counted
+     */
+    public ValidationCollector(int maxReported) {
+        if (maxReported <= 0) {
+            throw new IllegalArgumentException("maxReported");
+        }
+        this.maxReported = maxReported;
+    }
+
+    /**
+     * @param paramName - the name of the parameter with an invalid value
+     * @param paramValue - the invalid value
+     * @return this collector
+     */
+    public ValidationCollector invalid(String paramName, Object paramValue) {
+        if (invalidCount == invalidNames.length) {
+            int length = grow(invalidCount, 1);
+            invalidNames = Arrays.copyOf(invalidNames, length);
+            invalidValues = Arrays.copyOf(invalidValues, length);
+        }
+        invalidNames[invalidCount] = paramName;
+        invalidValues[invalidCount] = paramValue;
+        invalidCount++;
+        return this;
+    }
+
+    /**
+     * @param paramName - the name of the parameter that had no value
+     * @return this collector
+     */
+    public ValidationCollector missing(String paramName) {
+        if (missingCount == missingNames.length) {
+            missingNames = Arrays.copyOf(missingNames, grow(missingCount, 1));
+        }
+        missingNames[missingCount++] = paramName;
+        return this;
+    }
+
+    /**
+     * Adds paramName as missing when value is null or an empty String.
+     *
+     * @return true if the value is present
+     */
+    public boolean require(String paramName, Object paramValue) {
+        if (paramValue == null || (paramValue instanceof String && ((String) paramValue).isEmpty())) {
+            missing(paramName);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the failures of another collector after the ones already collected.
+     *
+     * @param other - the collector to add, it is not changed
+     * @return this collector
+     */
+    public ValidationCollector merge(ValidationCollector other) {
+        if (other.invalidCount > 0) {
+            int count = invalidCount + other.invalidCount;
+            if (count > invalidNames.length) {
+                int length = grow(invalidCount, other.invalidCount);
+                invalidNames = Arrays.copyOf(invalidNames, length);
+                invalidValues = Arrays.copyOf(invalidValues, length);
+            }
+            System.arraycopy(other.invalidNames, 0, invalidNames, invalidCount, other.invalidCount);
+            System.arraycopy(other.invalidValues, 0, invalidValues, invalidCount, other.invalidCount);
+            invalidCount = count;
+        }
+        if (other.missingCount > 0) {
+            int count = missingCount + other.missingCount;
+            if (count > missingNames.length) {
+                missingNames = Arrays.copyOf(missingNames, grow(missingCount, other.missingCount));
+            }
+            System.arraycopy(other.missingNames, 0, missingNames, missingCount, other.missingCount);
+            missingCount = count;
+        }
+        return this;
+    }
+
+    public boolean hasFailures() {
+        return invalidCount > 0 || missingCount > 0;
+    }
+
+    public int getInvalidCount() {
+        return invalidCount;
+    }
+
+    public int getMissingCount() {
+        return missingCount;
+    }
+
+    /**
+     * @return the names of the parameters with invalid values, in the order they were added
+     */
+    public String[] getInvalidNames() {
+        return Arrays.copyOf(invalidNames, invalidCount);
+    }
+
+    /**
+     * @return the invalid values, in the same order as {@link #getInvalidNames()}
+     */
+    public Object[] getInvalidValues() {
+        return Arrays.copyOf(invalidValues, invalidCount);
+    }
+
+    /**
+     * @return the names of the parameters that had no value, in the order they were added
+     */
+    public String[] getMissingNames() {
+        return Arrays.copyOf(missingNames, missingCount);
+    }
+
+    /**
+     * Creates the exception describing all the failures: the invalid or missing value
+     * exception when there is one failure, the invalid or missing values exception when
+     * there are several of one kind, and the invalid and missing values exception for both.
+     * Only the first maxReported failures of each kind are named, followed by how many more
+     * there were.
+     *
+     * @return the exception or null when nothing failed
+     */
+    public ApplicationException toException() {
+        if (invalidCount > 0 && missingCount > 0) {
+            return ApplicationException.invalidAndMissingParameterValues(list(invalidNames, invalidCount),
+                    list(invalidValues, invalidCount), list(missingNames, missingCount));
+        } else if (invalidCount == 1) {
+            Object value = invalidValues[0];
+            return ApplicationException.invalidParameterValue(invalidNames[0], value == null ? null : String.valueOf(value));
+        } else if (invalidCount > 1) {
+            return ApplicationException.invalidParameterValues(list(invalidNames, invalidCount), list(invalidValues, invalidCount));
+        } else if (missingCount == 1) {
+            return ApplicationException.missingParameterValue(missingNames[0]);
+        } else if (missingCount > 1) {
+            return ApplicationException.missingParameterValues(list(missingNames, missingCount));
+        }
+        return null;
+    }
+
+    /**
+     * @throws ApplicationException - see {@link #toException()}, when anything failed
+     */
+    public void throwIfFailed() throws ApplicationException {
+        ApplicationException exception = toException();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Validates the items in parallel on the common fork-join pool.
+     *
+     * @return a collector with the failures of all items in list order
+     */
+    public static <T> ValidationCollector validate(List<T> items, Validator<? super T> validator) {
+        return validate(items, validator, ForkJoinPool.commonPool(), DEFAULT_MAX_REPORTED);
+    }
+
+    /**
+     * @param items - the items to validate, a RandomAccess list
+     * @param validator - called once per item, from several threads at once
+     * @param pool - where to run the validation
+     * @param maxReported - see {@link #ValidationCollector(int)}
+     * @return a collector with the failures of all items in list order
+     */
+    public static <T> ValidationCollector validate(List<T> items, Validator<? super T> validator, ForkJoinPool pool,
+                                                   int maxReported) {
+        if (items.size() <= PARALLEL_THRESHOLD) {
+            return new ValidateTask<T>(items, validator, 0, items.size(), maxReported).compute();
+        }
+        return pool.invoke(new ValidateTask<T>(items, validator, 0, items.size(), maxReported));
+    }
+
+    private String list(Object[] values, int count) {
+        return DelimitedList.of(values, count, maxReported).toString();
+    }
+
+    private static int grow(int count, int needed) {
+        return Math.max(count + needed, Math.max(8, count + (count >> 1)));
+    }
+
+    /**
+     * Validates a range of the list, splitting it in half until it is small enough.
+     */
+    private static final class ValidateTask<T> extends RecursiveTask<ValidationCollector> {
+        static final long serialVersionUID = 0;
+
+        private final List<T> items;
+        private final Validator<? super T> validator;
+        private final int from;
+        private final int to;
+        private final int maxReported;
+
+        ValidateTask(List<T> items, Validator<? super T> validator, int from, int to, int maxReported) {
+            this.items = items;
+            this.validator = validator;
+            this.from = from;
+            this.to = to;
+            this.maxReported = maxReported;
+        }
+
+        @Override
+        protected ValidationCollector compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                ValidationCollector collector = new ValidationCollector(maxReported);
+                for (int i = from; i < to; i++) {
+                    validator.validate(items.get(i), i, collector);
+                }
+                return collector;
+            }
+            int middle = (from + to) >>> 1;
+            ValidateTask<T> right = new ValidateTask<T>(items, validator, middle, to, maxReported);
+            right.fork();
+            ValidationCollector left = new ValidateTask<T>(items, validator, from, middle, maxReported).compute();
+            return left.merge(right.join());
+        }
+    }
+}
@@ -4,6 +4,13 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
 import static org.junit.Assert.*;
 
 /**
@@ -13,7 +20,7 @@ public class ApplicationExceptionTests {
 
     @Test
     public void formatNoArgs() throws Exception {
-        assertEquals(ApplicationException.messages.getString(ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED.name()),
+        assertEquals(ApplicationException.messages().getString(ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED.name()),
                 ApplicationException.format(ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED));
     }
 
@@ -303,4 +310,289 @@ public class ApplicationExceptionTests {
         assertFalse("hashCode will not be zero.", hashCode1.equals(new Integer(0)));
     }
 
+    @Test
+    public void equalsComparesKeyAndArgumentsWithoutRendering() throws Exception {
+        boolean originalLazy = ApplicationException.isLazyMessages();
+        final int[] rendered = new int[1];
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                rendered[0]++;
+                return "argument";
+            }
+        };
+        // debug logging renders the message, an earlier test may have left it on
+        Logger log = Logger.getLogger(ApplicationException.class);
+        Level originalLevel = log.getLevel();
+        try {
+            log.setLevel(Level.INFO);
+            ApplicationException.setLazyMessages(true);
+            ApplicationException exception1 = new ApplicationException(ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", argument);
+            ApplicationException exception2 = new ApplicationException(ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", argument);
+            assertEquals(exception1, exception2);
+            assertEquals(exception1.hashCode(), exception2.hashCode());
+            assertFalse(exception1.equals(ApplicationException.invalidParameterValue("name", "other")));
+            assertFalse(exception1.equals(new ApplicationException(ApplicationException.MessageKeys.MSG_INVALID_VALUES, "name", argument)));
+            assertEquals("Neither equals nor hashCode render the message", 0, rendered[0]);
+        } finally {
+            ApplicationException.setLazyMessages(originalLazy);
+            log.setLevel(originalLevel);
+        }
+    }
+
+    @Test
+    public void equalsNormalizesArguments() throws Exception {
+        ApplicationException.MessageKey key = ApplicationException.MessageKeys.MSG_INVALID_VALUE;
+        ApplicationException ints = new ApplicationException(key, 1, new int[] {1, 2}, 1.5f);
+        ApplicationException longs = new ApplicationException(key, 1L, Arrays.asList(1L, 2L), 1.5d);
+        assertEquals(ints, longs);
+        assertEquals(ints.hashCode(), longs.hashCode());
+        ApplicationException string = new ApplicationException(key, "name", "value");
+        ApplicationException chars = new ApplicationException(key, "name", new StringBuilder("value"));
+        assertFalse("A String renders quoted, other CharSequences don't", string.equals(chars));
+        assertFalse(chars.equals(string));
+        assertEquals(chars, new ApplicationException(key, "name", new StringBuilder("value")));
+        assertFalse("An exception from a plain message is never equal to one from a key",
+                new ApplicationException(string.getMessage()).equals(string));
+    }
+
+
+    @Test
+    public void lazyMessageMatchesEagerMessage() throws Exception {
+        boolean originalLazy = ApplicationException.isLazyMessages();
+        try {
+            ApplicationException.setLazyMessages(false);
+            ApplicationException eager = ApplicationException.invalidParameterValue("name", "value");
+            ApplicationException.setLazyMessages(true);
+            ApplicationException lazy = ApplicationException.invalidParameterValue("name", "value");
+            assertEquals("A lazy message is the same as an eager message", eager.getMessage(), lazy.getMessage());
+            assertEquals("A lazy exception is equal to an eager exception", eager, lazy);
+            assertEquals("A lazy exception has the same hashCode as an eager exception", eager.hashCode(), lazy.hashCode());
+            assertSame("A lazy message is rendered once and cached", lazy.getMessage(), lazy.getMessage());
+        } finally {
+            ApplicationException.setLazyMessages(originalLazy);
+        }
+    }
+
+    @Test
+    public void lazyMessageRenderedOnceAcrossThreads() throws Exception {
+        boolean originalLazy = ApplicationException.isLazyMessages();
+        try {
+            ApplicationException.setLazyMessages(true);
+            final ApplicationException exception = ApplicationException.missingParameterValue("name");
+            final String[] seen = new String[8];
+            Thread[] threads = new Thread[seen.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread(new Runnable() {
+                    public void run() {
+                        seen[index] = exception.getMessage();
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (String message : seen) {
+                assertEquals("Every thread sees the same message", exception.getMessage(), message);
+            }
+        } finally {
+            ApplicationException.setLazyMessages(originalLazy);
+        }
+    }
+
+    @Test
+    public void lazyMessageSurvivesSerialization() throws Exception {
+        boolean originalLazy = ApplicationException.isLazyMessages();
+        try {
+            ApplicationException.setLazyMessages(true);
+            ApplicationException exception = ApplicationException.notSupported("testObject");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(exception);
+            out.close();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            ApplicationException copy = (ApplicationException) in.readObject();
+            assertEquals("A deserialized lazy exception keeps its message", exception.getMessage(), copy.getMessage());
+        } finally {
+            ApplicationException.setLazyMessages(originalLazy);
+        }
+    }
+
+
+    @Test
+    public void fullStackTraceStartsAtCaller() throws Exception {
+        ApplicationException exception = new ApplicationException(ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED);
+        StackTraceElement top = exception.getStackTrace()[0];
+        assertEquals("The stack trace starts in the method that created the exception", "fullStackTraceStartsAtCaller", top.getMethodName());
+    }
+
+    @Test
+    public void stackTraceModeNone() throws Exception {
+        StackTraceMode originalMode = ApplicationException.getStackTraceMode();
+        try {
+            ApplicationException.setStackTraceMode(StackTraceMode.NONE);
+            ApplicationException exception = ApplicationException.invalidParameterValue("name", "value");
+            assertEquals("A stackless exception has no frames", 0, exception.getStackTrace().length);
+            assertEquals("A stackless exception has the same message", new ApplicationException(ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value"), exception);
+            exception.fillInStackTrace();
+            assertTrue("fillInStackTrace() still records the stack when called explicitly", exception.getStackTrace().length > 0);
+        } finally {
+            ApplicationException.setStackTraceMode(originalMode);
+        }
+    }
+
+    @Test
+    public void stackTraceModeShallow() throws Exception {
+        int originalDepth = ApplicationException.getShallowStackDepth();
+        try {
+            ApplicationException.setShallowStackDepth(2);
+            ApplicationException exception = new ApplicationException(StackTraceMode.SHALLOW, null, ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED);
+            StackTraceElement[] stackTrace = exception.getStackTrace();
+            assertEquals("A shallow stack trace keeps only the configured number of frames", 2, stackTrace.length);
+            assertEquals("A shallow stack trace starts in the method that created the exception", "stackTraceModeShallow", stackTrace[0].getMethodName());
+        } finally {
+            ApplicationException.setShallowStackDepth(originalDepth);
+        }
+    }
+
+    @Test
+    public void stackTraceModePerMessageKey() throws Exception {
+        String keyName = ApplicationException.MessageKeys.MSG_MISSING_VALUE.name();
+        try {
+            ApplicationException.setStackTraceMode(keyName, StackTraceMode.NONE);
+            assertEquals(StackTraceMode.NONE, ApplicationException.getStackTraceMode(keyName));
+            assertEquals("The key's mode is used", 0, ApplicationException.missingParameterValue("name").getStackTrace().length);
+            assertTrue("Other keys use the default mode", ApplicationException.missingParameterValues("name").getStackTrace().length > 0);
+        } finally {
+            ApplicationException.setStackTraceMode(keyName, null);
+        }
+        assertEquals(ApplicationException.getStackTraceMode(), ApplicationException.getStackTraceMode(keyName));
+    }
+
+    @Test
+    public void stacklessExceptionWithoutCauseCanBeGivenACause() throws Exception {
+        StackTraceMode originalMode = ApplicationException.getStackTraceMode();
+        try {
+            ApplicationException.setStackTraceMode(StackTraceMode.NONE);
+            Exception cause = new Exception();
+            ApplicationException exception = ApplicationException.notImplemented();
+            exception.initCause(cause);
+            assertSame(cause, exception.getCause());
+        } finally {
+            ApplicationException.setStackTraceMode(originalMode);
+        }
+    }
+
+
+    @Test
+    public void argumentsArePrettifiedOnce() throws Exception {
+        String message = ApplicationException.invalidParameterValue("name", "value").getMessage();
+        assertTrue("String arguments are quoted", message.contains("\"name\""));
+        assertFalse("String arguments are quoted only once", message.contains("\"\"name\"\""));
+    }
+
+    @Test
+    public void prettyArrayWithPrimitiveArraysAndCollections() throws Exception {
+        Object[] args = new Object[]{new int[]{1, 2}, new boolean[]{true}, Arrays.asList("a", 1), new LinkedHashSet<Object>(Arrays.asList(null, 'c'))};
+        Object[] expected = new Object[]{"1, 2", "true", "\"a\", 1", ApplicationException.NULL_ARG + ", c"};
+        assertArrayEquals("prettyArray flattens primitive arrays and collections", expected, ApplicationException.prettyArray(args));
+    }
+
+    @Test
+    public void appendPrettyMatchesPretty() throws Exception {
+        Object[] args = new Object[]{null, "string", 1, 2L, 1.5d, 2.5f, (short) 3, (byte) 4, true, 'c', new StringBuilder("builder"),
+                new Object[]{"inner", new long[]{5L, 6L}}, Arrays.asList(1.25d, "x")};
+        for (Object arg : args) {
+            StringBuilder sb = new StringBuilder();
+            ApplicationException.appendPretty(sb, arg);
+            assertEquals("appendPretty renders the same as pretty", ApplicationException.pretty(arg), sb.toString());
+        }
+    }
+
+    @Test
+    public void argumentThatFormatsAnotherMessage() throws Exception {
+        Object nested = new Object() {
+            @Override
+            public String toString() {
+                return ApplicationException.missingParameterValue("inner").getMessage();
+            }
+        };
+        String message = ApplicationException.notSupported(nested).getMessage();
+        assertTrue("A message can be formatted while another is being formatted",
+                message.contains(ApplicationException.missingParameterValue("inner").getMessage()));
+    }
+
+    @Test
+    public void sharedInstancesAreImmutableAndStackless() throws Exception {
+        ApplicationException.setSharingMode(SharingMode.SHARED);
+        try {
+            ApplicationException shared = ApplicationException.notImplemented();
+            assertSame(shared, ApplicationException.notImplemented());
+            assertSame(ApplicationException.missingResourceBundle(), ApplicationException.missingResourceBundle());
+            assertEquals(new ApplicationException(ApplicationException.MessageKeys.MSG_NOT_IMPLEMENTED), shared);
+            assertEquals(0, shared.getStackTrace().length);
+            shared.addSuppressed(new IllegalStateException());
+            assertEquals("addSuppressed has no effect", 0, shared.getSuppressed().length);
+            shared.setStackTrace(new Throwable().getStackTrace());
+            assertEquals("setStackTrace has no effect", 0, shared.getStackTrace().length);
+            shared.fillInStackTrace();
+            assertEquals(0, shared.getStackTrace().length);
+            try {
+                shared.initCause(new IllegalStateException());
+                fail("The cause of a shared instance can't be set");
+            } catch (IllegalStateException e) {
+                assertNull(shared.getCause());
+            }
+        } finally {
+            ApplicationException.setSharingMode(SharingMode.NONE);
+        }
+        assertNotSame(ApplicationException.notImplemented(), ApplicationException.notImplemented());
+    }
+
+    @Test
+    public void perThreadInstances() throws Exception {
+        ApplicationException.setSharingMode(SharingMode.PER_THREAD);
+        try {
+            final ApplicationException mine = ApplicationException.notImplemented();
+            assertSame(mine, ApplicationException.notImplemented());
+            final ApplicationException[] theirs = new ApplicationException[2];
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    theirs[0] = ApplicationException.notImplemented();
+                    theirs[1] = ApplicationException.notImplemented();
+                }
+            });
+            thread.start();
+            thread.join();
+            assertSame(theirs[0], theirs[1]);
+            assertNotSame("Each thread has its own instance", mine, theirs[0]);
+            assertEquals(mine, theirs[0]);
+            assertEquals(0, mine.getStackTrace().length);
+        } finally {
+            ApplicationException.setSharingMode(SharingMode.NONE);
+        }
+    }
+
+    @Test
+    public void listenersAreToldAboutSharedInstances() throws Exception {
+        final int[] created = new int[1];
+        ApplicationExceptionListener listener = new ApplicationExceptionListener() {
+            public void exceptionCreated(ApplicationException exception) {
+                created[0]++;
+            }
+        };
+        ApplicationException.setSharingMode(SharingMode.SHARED);
+        ApplicationException.addListener(listener);
+        try {
+            ApplicationException.notImplemented();
+            ApplicationException.notImplemented();
+        } finally {
+            ApplicationException.removeListener(listener);
+            ApplicationException.setSharingMode(SharingMode.NONE);
+        }
+        assertEquals(2, created[0]);
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class CompactStackTraceTests {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    private static ApplicationException wrapped(int depth) {
+        ApplicationException e = ApplicationException.missingResourceBundle("root", new IllegalStateException("root cause"));
+        for (int i = 0; i < depth; i++) {
+            e = ApplicationException.failedToInitializeComponent(CompactStackTraceTests.class, e);
+        }
+        return e;
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + part.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String printStackTrace(Throwable throwable) {
+        StringWriter out = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(out));
+        return out.toString();
+    }
+
+    private static Throwable recurse(int depth) {
+        return depth == 0 ? new IllegalStateException("deep") : recurse(depth - 1);
+    }
+
+    @Test
+    public void matchesPrintStackTraceForShortChains() throws Exception {
+        ApplicationException e = ApplicationException.missingResourceBundle("bundle", new IllegalStateException("cause"));
+        StringBuilder sb = new StringBuilder();
+        CompactStackTrace.append(e, sb, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(printStackTrace(e).replace("\r\n", "\n"), sb.toString().replace("\r\n", "\n"));
+    }
+
+    @Test
+    public void collapsesRepeatedWrappingLayers() throws Exception {
+        ApplicationException e = wrapped(12);
+        String compact = CompactStackTrace.toString(e);
+        assertTrue(compact.startsWith(ApplicationException.class.getName() + ": "));
+        assertEquals("The first and last wrapped layer are rendered",
+                2, count(compact, NL + "Caused by: " + ApplicationException.class.getName() + ": \"Failed to initialize"));
+        assertTrue(compact, compact.contains("\t... 9 similar wrapping layers of " + ApplicationException.class.getName() + NL));
+        assertTrue(compact.contains("Caused by: java.lang.IllegalStateException: root cause" + NL));
+        assertTrue(compact.length() * 2 < printStackTrace(e).length());
+    }
+
+    @Test
+    public void collapsesRecursion() throws Exception {
+        String compact = CompactStackTrace.toString(recurse(100));
+        assertTrue(compact, compact.contains("\t... above 1 frames repeated "));
+        assertEquals(1, count(compact, "CompactStackTraceTests.recurse("));
+    }
+
+    @Test
+    public void limitsFramesPerThrowable() throws Exception {
+        Throwable deep = recurse(0);
+        StringBuilder sb = new StringBuilder();
+        CompactStackTrace.append(deep, sb, Integer.MAX_VALUE, 1);
+        assertEquals(1, count(sb.toString(), "\tat "));
+        assertTrue(sb.toString().contains(" frames omitted" + NL));
+    }
+
+    @Test
+    public void collapsesSimilarSuppressed() throws Exception {
+        IllegalStateException e = new IllegalStateException("closing");
+        for (int i = 0; i < 5; i++) {
+            e.addSuppressed(new IllegalArgumentException("close failed"));
+        }
+        e.addSuppressed(new UnsupportedOperationException("other"));
+        String compact = CompactStackTrace.toString(e);
+        assertEquals(2, count(compact, "Suppressed: "));
+        assertTrue(compact.contains("\t\t... 4 similar suppressed" + NL));
+    }
+
+    @Test
+    public void stopsAtCircularReferences() throws Exception {
+        IllegalStateException a = new IllegalStateException("a");
+        IllegalStateException b = new IllegalStateException("b", a);
+        a.initCause(b);
+        String compact = CompactStackTrace.toString(a);
+        assertTrue(compact.contains("Caused by: [CIRCULAR REFERENCE: java.lang.IllegalStateException: a]"));
+    }
+
+    @Test
+    public void capsTheRenderedSize() throws Exception {
+        StringBuilder sb = new StringBuilder("prefix ");
+        CompactStackTrace.append(wrapped(50), sb, 300, CompactStackTrace.DEFAULT_MAX_FRAMES);
+        assertEquals(7 + 300 + CompactStackTrace.TRUNCATED.length() + NL.length(), sb.length());
+        assertTrue(sb.toString().endsWith(CompactStackTrace.TRUNCATED + NL));
+    }
+}
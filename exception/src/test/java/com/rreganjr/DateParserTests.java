@@ -0,0 +1,106 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class DateParserTests {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 7, 0, 0);
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 3, 7, 10, 11, 12);
+
+    @Test
+    public void parsesEveryDefaultFormat() throws Exception {
+        DateParser parser = new DateParser();
+        assertEquals(DAY, parser.parse("2024-03-07"));
+        assertEquals(TIME, parser.parse("2024-03-07T10:11:12"));
+        assertEquals(TIME, parser.parse("2024-03-07 10:11:12"));
+        assertEquals(TIME.withNano(123000000), parser.parse("2024-03-07T10:11:12.123"));
+        assertEquals(DAY, parser.parse("20240307"));
+        assertEquals(DAY, parser.parse("03/07/2024"));
+        assertEquals(DAY, parser.parse("07.03.2024"));
+        assertEquals(DAY, parser.parse("07 Mar 2024"));
+        assertEquals(DAY, parser.parse("Mar 7, 2024"));
+    }
+
+    @Test
+    public void throwsOnlyWhenNoFormatMatches() throws Exception {
+        DateParser parser = new DateParser();
+        assertNull(parser.tryParse(null, "yesterday"));
+        assertNull(parser.tryParse(null, null));
+        assertNull("A matching shape that isn't a date", parser.tryParse(null, "2024-13-07"));
+        try {
+            parser.parse("src", "yesterday");
+            fail("expected unsupportedDateString");
+        } catch (ApplicationException e) {
+            assertSame(ApplicationException.MessageKeys.MSG_UNSUPPORTED_DATE, e.getMessageKey());
+        }
+    }
+
+    @Test
+    public void rejectsDaysPastTheEndOfTheMonth() throws Exception {
+        DateParser parser = new DateParser();
+        for (String text : new String[]{"2023-02-30", "2023-04-31", "04/31/2023", "2023-02-29T10:11:12"}) {
+            assertNull(text, parser.tryParse(null, text));
+            try {
+                parser.parse("src", text);
+                fail("expected unsupportedDateString for " + text);
+            } catch (ApplicationException e) {
+                assertSame(ApplicationException.MessageKeys.MSG_UNSUPPORTED_DATE, e.getMessageKey());
+            }
+        }
+        assertEquals(LocalDateTime.of(2024, 2, 29, 0, 0), parser.parse("2024-02-29"));
+        assertEquals("A year of era pattern", LocalDateTime.of(2024, 1, 2, 0, 0),
+                new DateParser(Locale.ENGLISH, "MM/dd/yyyy").parse("01/02/2024"));
+        assertNull(new DateParser(Locale.ENGLISH, "MM/dd/yyyy").tryParse(null, "04/31/2023"));
+    }
+
+    @Test
+    public void remembersTheFormatOfEachSource() throws Exception {
+        DateParser parser = new DateParser(Locale.ENGLISH, "MM/dd/yyyy", "dd/MM/yyyy");
+        assertEquals("Formats are tried in order", LocalDateTime.of(2024, 1, 2, 0, 0), parser.parse("us", "01/02/2024"));
+        assertEquals(LocalDateTime.of(2024, 2, 13, 0, 0), parser.parse("eu", "13/02/2024"));
+        assertEquals("dd/MM/yyyy", parser.getPattern("eu"));
+        assertEquals("The source's format wins over the order", LocalDateTime.of(2024, 2, 1, 0, 0), parser.parse("eu", "01/02/2024"));
+        assertEquals(LocalDateTime.of(2024, 1, 2, 0, 0), parser.parse("us", "01/02/2024"));
+        assertEquals("MM/dd/yyyy", parser.getPattern("us"));
+        assertNull(parser.getPattern("unknown"));
+    }
+
+    @Test
+    public void shapeIgnoresDigitsAndLetters() throws Exception {
+        assertEquals(DateParser.shape("2024-03-07"), DateParser.shape("1999-12-31"));
+        assertEquals(DateParser.shape("07 Mar 2024"), DateParser.shape("31 Dec 1999"));
+        assertNotEquals(DateParser.shape("2024-03-07"), DateParser.shape("07.03.2024"));
+    }
+
+    @Test
+    public void parsesFromManyThreads() throws Exception {
+        final DateParser parser = new DateParser();
+        final String[] texts = {"2024-03-07", "03/07/2024", "07.03.2024", "07 Mar 2024", "20240307"};
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String source = "feed" + (t % 2);
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            assertEquals(DAY, parser.parse(source, texts[i % texts.length]));
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure[0]);
+    }
+}
@@ -0,0 +1,99 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class DelimitedListTests {
+
+    private static String[] names(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "field" + i;
+        }
+        return names;
+    }
+
+    private static String expected(String[] names, Object[] values, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]);
+            if (values != null) {
+                sb.append(": ").append(values[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void rendersEveryItemUpToTheLimit() throws Exception {
+        assertEquals("", DelimitedList.of(null).toString());
+        assertEquals("", DelimitedList.of(new String[0]).toString());
+        assertEquals("a, null, 3", DelimitedList.of(new Object[]{"a", null, 3}).toString());
+        assertEquals("a: 1, b: null", DelimitedList.of(new String[]{"a", "b"}, new Object[]{1, null}, 10).toString());
+    }
+
+    @Test
+    public void countsTheItemsLeftOut() throws Exception {
+        DelimitedList list = DelimitedList.of(names(5), 2);
+        assertEquals("field0, field1 and 3 more", list.toString());
+        assertEquals(3, list.getOmitted());
+        assertEquals(" and 5 more", DelimitedList.of(names(5), 0).toString());
+        assertEquals("field0: 0 and 1 more", DelimitedList.of(names(2), new Object[]{0, 1}, 1).toString());
+        DelimitedList defaulted = DelimitedList.of(names(DelimitedList.DEFAULT_MAX_ITEMS + 1));
+        assertEquals("A default limit applies", 1, defaulted.getOmitted());
+        assertTrue(defaulted.toString().endsWith(", field" + (DelimitedList.DEFAULT_MAX_ITEMS - 1) + " and 1 more"));
+    }
+
+    @Test
+    public void isACharSequenceRenderedOnce() throws Exception {
+        final int[] rendered = new int[1];
+        Object item = new Object() {
+            @Override
+            public String toString() {
+                rendered[0]++;
+                return "item";
+            }
+        };
+        DelimitedList list = DelimitedList.of(new Object[]{item, item}, 10);
+        assertEquals("The items are not rendered until used", 0, rendered[0]);
+        assertEquals("item, item".length(), list.length());
+        assertEquals('i', list.charAt(6));
+        assertEquals("item", list.subSequence(0, 4).toString());
+        assertEquals("item, item", list.toString());
+        assertEquals(2, rendered[0]);
+    }
+
+    @Test
+    public void appendsToAnAppendable() throws Exception {
+        StringWriter out = DelimitedList.of(names(3), 2).appendTo(new StringWriter());
+        assertEquals("field0, field1 and 1 more", out.toString());
+        StringBuilder sb = DelimitedList.of(names(2), new Object[]{1, 2}, 5).appendTo(new StringBuilder("["));
+        assertEquals("[field0: 1, field1: 2", sb.toString());
+    }
+
+    @Test
+    public void rendersLargeListsInParallelInOrder() throws Exception {
+        int count = DelimitedList.PARALLEL_THRESHOLD * 5 + 17;
+        String[] names = names(count);
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i;
+        }
+        assertEquals(expected(names, null, count), DelimitedList.of(names, Integer.MAX_VALUE).toString());
+        assertEquals(expected(names, values, count), DelimitedList.of(names, values, Integer.MAX_VALUE).toString());
+        int limit = DelimitedList.PARALLEL_THRESHOLD * 2 + 1;
+        assertEquals(expected(names, null, limit) + " and " + (count - limit) + " more",
+                DelimitedList.of(names, limit).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresAValueForEveryKey() throws Exception {
+        DelimitedList.of(names(3), new Object[2], 10);
+    }
+}
@@ -0,0 +1,126 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ErrorCatalogTests {
+
+    private static ApplicationException invalid(String value) {
+        return ApplicationException.invalidParameterValue("name", value);
+    }
+
+    private static ApplicationException oneOff(int i) {
+        ApplicationException exception = ApplicationException.invalidParameterValue("name", "value");
+        exception.setStackTrace(new StackTraceElement[] {new StackTraceElement("OneOff", "m" + i, null, -1)});
+        return exception;
+    }
+
+    @Test
+    public void groupsByFingerprint() throws Exception {
+        ErrorCatalog catalog = new ErrorCatalog(10);
+        ErrorCatalog.Group first = catalog.record(invalid("a"), 1000);
+        for (int i = 0; i < 4; i++) {
+            assertSame(first, catalog.record(invalid("b" + i), 2000 + i));
+        }
+        catalog.record(ApplicationException.missingParameterValue("name"), 3000);
+        assertEquals(2, catalog.size());
+        assertEquals(5, first.getCount());
+        assertEquals(1000, first.getFirstSeen());
+        assertEquals(2003, first.getLastSeen());
+        assertEquals(ApplicationException.MessageKeys.MSG_INVALID_VALUE.name(), first.getMessageKey());
+        assertEquals(ApplicationException.class.getName(), first.getExceptionClass());
+        assertEquals(invalid("a").getMessage(), first.getFirstMessage());
+        List<ErrorCatalog.Group> groups = catalog.getGroups();
+        assertSame("Most exceptions first", first, groups.get(0));
+        assertSame(first, catalog.get(first.getFingerprint()));
+    }
+
+    @Test
+    public void separateGroupsPerArgumentWhenIncluded() throws Exception {
+        ErrorCatalog catalog = new ErrorCatalog(10, ExceptionFingerprint.DEFAULT_FRAMES, true);
+        catalog.record(invalid("a"));
+        catalog.record(invalid("b"));
+        catalog.record(invalid("a"));
+        assertEquals(2, catalog.size());
+    }
+
+    @Test
+    public void boundedAndKeepsFrequentGroups() throws Exception {
+        ErrorCatalog catalog = new ErrorCatalog(8);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 == 0) {
+                for (int j = 0; j < 8; j++) {
+                    catalog.record(oneOff(j), i);
+                }
+            }
+            catalog.record(oneOff(100 + i), i);
+        }
+        assertEquals(8, catalog.size());
+        for (int j = 0; j < 8; j++) {
+            assertNotNull("A flood of one-off groups doesn't push out the recurring ones",
+                    catalog.get(ExceptionFingerprint.of(oneOff(j))));
+        }
+        assertTrue(catalog.getRejectionCount() > 900);
+    }
+
+    @Test
+    public void admitsGroupsThatKeepRecurring() throws Exception {
+        ErrorCatalog catalog = new ErrorCatalog(8);
+        for (int i = 0; i < 8; i++) {
+            catalog.record(oneOff(i), i);
+            catalog.record(oneOff(i), i);
+        }
+        assertNull(catalog.record(oneOff(100), 100));
+        assertNull(catalog.record(oneOff(100), 101));
+        assertNotNull(catalog.record(oneOff(100), 102));
+        assertEquals(8, catalog.size());
+        assertEquals(1, catalog.getEvictionCount());
+        assertEquals(2, catalog.getRejectionCount());
+    }
+
+    @Test
+    public void asListener() throws Exception {
+        ErrorCatalog catalog = new ErrorCatalog(10);
+        ApplicationException.addListener(catalog);
+        try {
+            for (int i = 0; i < 3; i++) {
+                invalid("value" + i);
+            }
+        } finally {
+            ApplicationException.removeListener(catalog);
+        }
+        assertEquals(1, catalog.size());
+        assertEquals(3, catalog.getGroups().get(0).getCount());
+        catalog.clear();
+        assertEquals(0, catalog.size());
+    }
+
+    @Test
+    public void sketchCountersSaturateUnderContention() throws Exception {
+        final ErrorCatalog.FrequencySketch sketch = new ErrorCatalog.FrequencySketch(16);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        sketch.increment(i & 7);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (long fingerprint = 0; fingerprint < 8; fingerprint++) {
+            assertEquals(15, sketch.frequency(fingerprint));
+        }
+        for (long fingerprint = 100; fingerprint < 200; fingerprint++) {
+            assertTrue("A full counter doesn't carry into its neighbour", sketch.frequency(fingerprint) < 15);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.rreganjr;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ErrorJournalTests {
+
+    private static final String KEY = ApplicationException.MessageKeys.MSG_INVALID_VALUE.name();
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long T0 = 1425204000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath().resolve("journal");
+    }
+
+    private static int segments(Path directory) throws Exception {
+        return ErrorJournalReader.segments(directory).size();
+    }
+
+    private static int indexes(Path directory) throws Exception {
+        int count = 0;
+        for (Path path : ErrorJournalReader.segments(directory)) {
+            if (Files.exists(ErrorJournal.indexPath(path))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void writesRecordsThatCanBeReadBack() throws Exception {
+        ErrorJournal journal = new ErrorJournal(directory);
+        try {
+            journal.attach();
+            ApplicationException exception = ApplicationException.invalidParameterValue("name", "value");
+            ApplicationException.missingParameterValue("other");
+            journal.detach();
+            ApplicationException.invalidParameterValue("name", "after detach");
+            journal.flush();
+            assertEquals(2, journal.getWrittenCount());
+            final List<String> records = new ArrayList<String>();
+            final long[] fingerprint = new long[1];
+            int visited = new ErrorJournalReader(directory).forEach(KEY, 0, Long.MAX_VALUE / 2, new ErrorJournalReader.RecordVisitor() {
+                public void visit(long timestamp, long print, String key, String thread, String[] args) {
+                    records.add(key + " " + thread + " " + args[0] + "=" + args[1]);
+                    fingerprint[0] = print;
+                }
+            });
+            assertEquals("The open segment is scanned", 1, visited);
+            assertEquals(KEY + " " + Thread.currentThread().getName() + " name=value", records.get(0));
+            assertEquals(ExceptionFingerprint.of(exception), fingerprint[0]);
+        } finally {
+            journal.close();
+        }
+        assertEquals("The last segment is indexed on close", 1, indexes(directory));
+    }
+
+    @Test
+    public void countsPerMinuteByKeyAndArgument() throws Exception {
+        ErrorJournal journal = new ErrorJournal(directory, ErrorJournal.MIN_SEGMENT_SIZE, 10 * MINUTE, 24 * 60 * MINUTE);
+        try {
+            for (int minute = 0; minute < 30; minute++) {
+                for (int i = 0; i <= minute % 3; i++) {
+                    journal.record(ApplicationException.invalidParameterValue(i == 0 ? "x" : "y", "v"), T0 + minute * MINUTE + i);
+                }
+                journal.record(ApplicationException.missingParameterValue("x"), T0 + minute * MINUTE);
+            }
+            journal.flush();
+            ErrorJournalReader reader = new ErrorJournalReader(directory);
+            assertEquals("The first two segments are rotated and indexed", 2, indexes(directory));
+            SortedMap<Long, Long> all = reader.countPerMinute(KEY, T0, T0 + 30 * MINUTE);
+            assertEquals(30, all.size());
+            assertEquals(Long.valueOf(1), all.get(T0));
+            assertEquals(Long.valueOf(3), all.get(T0 + 2 * MINUTE));
+            assertEquals(Long.valueOf(3), all.get(T0 + 29 * MINUTE));
+            SortedMap<Long, Long> y = reader.countPerMinute(KEY, 0, "y", T0 + 5 * MINUTE, T0 + 25 * MINUTE);
+            assertEquals(Long.valueOf(2), y.get(T0 + 5 * MINUTE));
+            assertEquals(Long.valueOf(1), y.get(T0 + 13 * MINUTE));
+            assertNull(y.get(T0 + 12 * MINUTE));
+            assertNull("The range ends before to", y.get(T0 + 25 * MINUTE));
+            long total = 0;
+            for (long count : reader.countPerMinute(KEY, 0, "x", T0, T0 + 30 * MINUTE).values()) {
+                total += count;
+            }
+            assertEquals(30, total);
+            assertTrue(reader.countPerMinute("MSG_UNKNOWN", T0, T0 + 30 * MINUTE).isEmpty());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void rotatesFullSegmentsAndDeletesExpiredOnes() throws Exception {
+        ErrorJournal journal = new ErrorJournal(directory, ErrorJournal.MIN_SEGMENT_SIZE, 60 * MINUTE, 30 * MINUTE);
+        int full;
+        try {
+            ApplicationException exception = ApplicationException.invalidParameterValue("name", "value");
+            for (int i = 0; i < 3000; i++) {
+                journal.record(exception, T0);
+                if (i % 500 == 0) {
+                    journal.flush();
+                }
+            }
+            journal.flush();
+            full = segments(directory);
+            assertTrue("Full segments are rotated: " + full, full > 1);
+            assertEquals(Long.valueOf(3000), new ErrorJournalReader(directory).countPerMinute(KEY, T0, T0 + MINUTE).get(T0));
+            journal.record(exception, T0 + 40 * MINUTE);
+            journal.record(exception, T0 + 61 * MINUTE);
+            journal.flush();
+        } finally {
+            journal.close();
+        }
+        assertEquals("Segments that ended before the retention are deleted", 2, segments(directory));
+        SortedMap<Long, Long> counts = new ErrorJournalReader(directory).countPerMinute(KEY, T0, T0 + 120 * MINUTE);
+        assertTrue("Only the last segment written at T0 is kept", counts.get(T0) < 3000 / full);
+        assertEquals(Long.valueOf(1), counts.get(T0 + 40 * MINUTE));
+        assertEquals(Long.valueOf(1), counts.get(T0 + 61 * MINUTE));
+    }
+
+    @Test
+    public void dropsWhenTheWriterIsBehind() throws Exception {
+        ErrorJournal journal = new ErrorJournal(directory, ErrorJournal.MIN_SEGMENT_SIZE, MINUTE, MINUTE, 2);
+        journal.close();
+        assertFalse("A closed journal drops", journal.record(ApplicationException.invalidParameterValue("name", "value")));
+        assertEquals(1, journal.getDroppedCount());
+    }
+
+    @Test
+    public void recordsFromManyThreads() throws Exception {
+        final ErrorJournal journal = new ErrorJournal(directory);
+        try {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(new Runnable() {
+                    public void run() {
+                        for (int i = 0; i < 5000; i++) {
+                            while (!journal.record(ApplicationException.invalidParameterValue("name", "value"), T0)) {
+                                Thread.yield();
+                            }
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            journal.flush();
+            assertEquals(Long.valueOf(20000), new ErrorJournalReader(directory).countPerMinute(KEY, T0, T0 + MINUTE).get(T0));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void recordsRacingCloseAreWrittenOrDropped() throws Exception {
+        final ErrorJournal journal = new ErrorJournal(directory);
+        final ApplicationException exception = ApplicationException.invalidParameterValue("name", "value");
+        final long[] accepted = new long[4];
+        Thread[] threads = new Thread[accepted.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        if (journal.record(exception, T0)) {
+                            accepted[index]++;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        Thread.sleep(5);
+        journal.close();
+        long total = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            total += accepted[t];
+        }
+        assertEquals("Every accepted exception is written", total, journal.getWrittenCount());
+        assertEquals(threads.length * 20000L, total + journal.getDroppedCount());
+    }
+
+    @Test
+    public void commandLine() throws Exception {
+        ErrorJournal journal = new ErrorJournal(directory);
+        try {
+            journal.record(ApplicationException.invalidParameterValue("x", "1"), T0);
+            journal.record(ApplicationException.invalidParameterValue("x", "2"), T0 + 1);
+            journal.record(ApplicationException.invalidParameterValue("y", "3"), T0 + MINUTE);
+        } finally {
+            journal.close();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(0, ErrorJournalReader.run(new String[]{directory.toString(), KEY, "0=x"}, new PrintStream(out, true), new PrintStream(err, true)));
+        assertEquals("2015-03-01T10:00:00Z 2" + System.lineSeparator(), out.toString());
+        out.reset();
+        ErrorJournalReader.run(new String[]{directory.toString(), KEY, "2015-03-01T10:01:00Z"}, new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals("2015-03-01T10:01:00Z 1" + System.lineSeparator(), out.toString());
+        assertEquals(2, ErrorJournalReader.run(new String[0], new PrintStream(out, true), new PrintStream(err, true)));
+        assertTrue(err.toString().startsWith("usage"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ErrorJsonWriterTests {
+
+    static class JsonException extends ApplicationException {
+        static final long serialVersionUID = 0;
+
+        JsonException(Throwable cause, Object... args) {
+            super(cause, MessageKeys.MSG_INVALID_VALUE, args);
+        }
+    }
+
+    private static String quoted(String message) {
+        return message.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    @Test
+    public void writesCodeMessageAndArguments() throws Exception {
+        ApplicationException e = ApplicationException.invalidParameterValue("name", "value");
+        assertEquals("{\"code\":\"MSG_INVALID_VALUE\",\"message\":\"" + quoted(e.getMessage())
+                + "\",\"args\":[\"name\",\"value\"]}", ErrorJsonWriter.toJson(e));
+    }
+
+    @Test
+    public void writesTypedArguments() throws Exception {
+        ApplicationException e = new JsonException(null, null, -12, Long.MIN_VALUE, 1.5d, Double.NaN, true, 'c',
+                new int[] {1, 2}, Arrays.asList("a", null), new StringBuilder("sb"));
+        String json = ErrorJsonWriter.toJson(e);
+        assertTrue(json, json.endsWith("\"args\":[null,-12,-9223372036854775808,1.5,\"NaN\",true,\"c\",[1,2],[\"a\",null],\"sb\"]}"));
+    }
+
+    @Test
+    public void escapesStrings() throws Exception {
+        ApplicationException e = new JsonException(null, "name", "quote\" back\\ tab\t bell\u0007 é 😀");
+        String json = ErrorJsonWriter.toJson(e);
+        assertTrue(json, json.contains("[\"name\",\"quote\\\" back\\\\ tab\\t bell\\u0007 é 😀\"]"));
+    }
+
+    @Test
+    public void writesTheCauseChain() throws Exception {
+        ApplicationException missing = ApplicationException.missingParameterValue("other");
+        missing.initCause(new IllegalStateException("root \"cause\""));
+        ApplicationException e = new JsonException(missing, "name", "value");
+        String json = ErrorJsonWriter.toJson(e);
+        assertTrue(json, json.contains(",\"cause\":{\"code\":\"MSG_MISSING_VALUE\""));
+        assertTrue(json, json.endsWith(",\"cause\":{\"type\":\"java.lang.IllegalStateException\",\"message\":\"root \\\"cause\\\"\"}}}"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ErrorJsonWriter.write(e, out, 0);
+        assertFalse("No causes are written", new String(out.toByteArray(), StandardCharsets.UTF_8).contains("cause"));
+    }
+
+    @Test
+    public void writesExceptionsWithoutKeys() throws Exception {
+        assertEquals("{\"message\":\"plain\"}", ErrorJsonWriter.toJson(new ApplicationException("plain")));
+    }
+
+    @Test
+    public void writesToByteBuffers() throws Exception {
+        ApplicationException e = ApplicationException.invalidParameterValue("name", "välue");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        ErrorJsonWriter.write(e, buffer);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals(ErrorJsonWriter.toJson(e), new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writesBodiesLargerThanTheBuffer() throws Exception {
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        String json = ErrorJsonWriter.toJson(ApplicationException.invalidParameterValue("name", value));
+        assertTrue(json.endsWith("\"args\":[\"name\",\"" + value + "\"]}"));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void overflowsSmallBuffers() throws Exception {
+        ErrorJsonWriter.write(ApplicationException.invalidParameterValue("name", "value"), ByteBuffer.allocate(16));
+    }
+}
@@ -0,0 +1,214 @@
+package com.rreganjr;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ErrorStormControllerTests {
+
+    private static final String KEY = ApplicationException.MessageKeys.MSG_INVALID_VALUE.name();
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final ErrorStormListener listener = new ErrorStormListener() {
+        public void stormStarted(String keyName, double rate) {
+            events.add("started " + keyName + " " + Math.round(rate));
+        }
+
+        public void stormEnded(String keyName, double rate) {
+            events.add("ended " + keyName + " " + Math.round(rate));
+        }
+    };
+
+    @After
+    public void tearDown() {
+        ErrorStormController.removeListener(listener);
+        ErrorStormController.disable();
+        ErrorStormController.setWindow(ErrorStormController.DEFAULT_WINDOW_MILLIS);
+        ErrorStormController.setQuietWindows(ErrorStormController.DEFAULT_QUIET_WINDOWS);
+        ErrorStormController.setDegradations(EnumSet.allOf(ErrorStormController.Degradation.class));
+    }
+
+    /**
+     * Records rate exceptions of the key spread over the second starting at start.
+     */
+    private static int second(long start, int rate) {
+        int degradations = 0;
+        for (int i = 0; i < rate; i++) {
+            degradations = ErrorStormController.record(KEY, start + i * (SECOND / rate));
+        }
+        return degradations;
+    }
+
+    /**
+     * @return a time far enough ahead of the clock that reads and the sweep don't end the windows of the recorded times
+     */
+    private static long future() {
+        return System.nanoTime() + 1000 * SECOND;
+    }
+
+    /**
+     * Constructs exceptions of the key until it storms.
+     */
+    private static void storm() {
+        Logger log = Logger.getLogger(ApplicationException.class);
+        Level originalLevel = log.getLevel();
+        try {
+            log.setLevel(Level.INFO);
+            while (!ErrorStormController.isStorming(KEY)) {
+                ApplicationException.invalidParameterValue("name", "value");
+            }
+        } finally {
+            log.setLevel(originalLevel);
+        }
+    }
+
+    @Test
+    public void stormsWithHysteresis() throws Exception {
+        ErrorStormController.enable(1000, 100);
+        ErrorStormController.setQuietWindows(3);
+        ErrorStormController.addListener(listener);
+        long start = future();
+        assertEquals(0, second(start, 500));
+        assertEquals("Below the enter rate", 0, second(start + SECOND, 999));
+        assertFalse(ErrorStormController.isStorming(KEY));
+        second(start + 2 * SECOND, 2000);
+        assertEquals("The window ends with the next exception", 7, ErrorStormController.record(KEY, start + 3 * SECOND));
+        assertTrue(ErrorStormController.isStorming(KEY));
+        assertEquals(Collections.singleton(KEY), ErrorStormController.getStormingKeys());
+        assertEquals(Arrays.asList("started " + KEY + " 2000"), events);
+        second(start + 3 * SECOND, 500);
+        assertTrue("Between the thresholds the storm goes on", ErrorStormController.isStorming(KEY));
+        second(start + 4 * SECOND, 50);
+        second(start + 5 * SECOND, 50);
+        assertEquals("The rate of the last complete window", 50, ErrorStormController.getRate(KEY), 1);
+        second(start + 6 * SECOND, 500);
+        second(start + 7 * SECOND, 50);
+        second(start + 8 * SECOND, 50);
+        assertTrue("A window above the exit rate starts the count again", ErrorStormController.isStorming(KEY));
+        second(start + 9 * SECOND, 50);
+        ErrorStormController.record(KEY, start + 10 * SECOND);
+        assertFalse(ErrorStormController.isStorming(KEY));
+        assertEquals(2, events.size());
+        assertEquals("ended " + KEY + " 50", events.get(1));
+    }
+
+    @Test
+    public void aLongPauseEndsTheStorm() throws Exception {
+        ErrorStormController.enable(1000, 100);
+        long start = future();
+        second(start, 2000);
+        ErrorStormController.record(KEY, start + SECOND);
+        assertTrue(ErrorStormController.isStorming(KEY));
+        assertEquals(0, ErrorStormController.record(KEY, start + 60 * SECOND));
+    }
+
+    @Test
+    public void aStormEndsWhenReadAfterTheExceptionsStop() throws Exception {
+        ErrorStormController.enable(1000, 100);
+        ErrorStormController.setWindow(10);
+        ErrorStormController.setQuietWindows(2);
+        storm();
+        Thread.sleep(50);
+        assertFalse(ErrorStormController.isStorming(KEY));
+        assertTrue(ErrorStormController.getStormingKeys().isEmpty());
+        Thread.sleep(20);
+        assertEquals("An empty window", 0, ErrorStormController.getRate(KEY), 0);
+    }
+
+    @Test
+    public void theSweepEndsAStormWithoutReads() throws Exception {
+        ErrorStormController.enable(1000, 100);
+        ErrorStormController.setWindow(10);
+        ErrorStormController.setQuietWindows(2);
+        ErrorStormController.addListener(listener);
+        storm();
+        long deadline = System.currentTimeMillis() + 30000;
+        while (events.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("ended " + KEY, events.get(events.size() - 1).substring(0, ("ended " + KEY).length()));
+    }
+
+    @Test
+    public void degradesTheExceptionsOfAStormingKey() throws Exception {
+        Logger log = Logger.getLogger(ApplicationException.class);
+        Level originalLevel = log.getLevel();
+        try {
+            log.setLevel(Level.INFO);
+            ErrorStormController.enable(1000, 100);
+            ErrorStormController.setWindow(1);
+            ErrorStormController.addListener(listener);
+            while (!ErrorStormController.isStorming(KEY)) {
+                ApplicationException.invalidParameterValue("name", "value");
+            }
+            ApplicationException degraded = ApplicationException.invalidParameterValue("name", "value");
+            assertEquals("Stackless", 0, degraded.getStackTrace().length);
+            assertEquals("The message is formatted when read", ApplicationException.invalidParameterValue("name", "value").getMessage()
+                    .length(), degraded.getMessage().length());
+            assertTrue("Other keys are untouched", ApplicationException.missingParameterValue("name").getStackTrace().length > 0);
+            assertTrue("An explicit mode wins", new ApplicationException(StackTraceMode.FULL, null,
+                    ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value").getStackTrace().length > 0);
+            ErrorStormController.setDegradations(EnumSet.noneOf(ErrorStormController.Degradation.class));
+            assertTrue(ApplicationException.invalidParameterValue("name", "value").getStackTrace().length > 0);
+            ErrorStormController.disable();
+            assertFalse(ErrorStormController.isStorming(KEY));
+            assertEquals("Disabling ends the storm", "ended " + KEY, events.get(events.size() - 1).substring(0, ("ended " + KEY).length()));
+        } finally {
+            log.setLevel(originalLevel);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void exitRateIsBelowEnterRate() throws Exception {
+        ErrorStormController.enable(100, 100);
+    }
+
+    private static ApplicationException construct(int depth) {
+        if (depth > 0) {
+            return construct(depth - 1);
+        }
+        return ApplicationException.invalidParameterValue("name", "value");
+    }
+
+    private static boolean rendered(ApplicationException exception) throws Exception {
+        Field message = ApplicationException.class.getDeclaredField("message");
+        message.setAccessible(true);
+        return message.get(exception) != null;
+    }
+
+    /**
+     * What makes a storm's exceptions cheaper, the latency is measured by ErrorStormBenchmark.
+     */
+    @Test
+    public void stormingExceptionsSkipTheStackTraceAndTheMessage() throws Exception {
+        Logger log = Logger.getLogger(ApplicationException.class);
+        Level originalLevel = log.getLevel();
+        try {
+            log.setLevel(Level.INFO);
+            ApplicationException normal = construct(64);
+            assertTrue(normal.getStackTrace().length > 64);
+            assertTrue(rendered(normal));
+            ErrorStormController.enable(1000, 100);
+            ErrorStormController.setWindow(10);
+            storm();
+            ApplicationException degraded = construct(64);
+            assertEquals(0, degraded.getStackTrace().length);
+            assertFalse(rendered(degraded));
+            assertEquals(normal.getMessage(), degraded.getMessage());
+        } finally {
+            log.setLevel(originalLevel);
+        }
+    }
+}
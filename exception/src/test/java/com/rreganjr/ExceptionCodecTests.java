@@ -0,0 +1,231 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ExceptionCodecTests {
+
+    static class RemoteException extends ApplicationException {
+        static final long serialVersionUID = 0;
+
+        RemoteException(Throwable cause, MessageKey msgKey, Object... args) {
+            super(cause, msgKey, args);
+        }
+    }
+
+    private static ApplicationException roundTrip(ApplicationException e) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        ExceptionCodec.encode(e, buffer);
+        buffer.flip();
+        ApplicationException decoded = ExceptionCodec.decode(buffer);
+        assertFalse("The whole message is read", buffer.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    public void roundTripsKeyAndArguments() throws Exception {
+        ApplicationException e = ApplicationException.invalidParameterValue("name", "välue €");
+        ApplicationException decoded = roundTrip(e);
+        assertSame(ApplicationException.class, decoded.getClass());
+        assertSame(e.getMessageKey(), decoded.getMessageKey());
+        assertArrayEquals(e.getArguments(), decoded.getArguments());
+        assertEquals(e.getMessage(), decoded.getMessage());
+        assertEquals(e, decoded);
+    }
+
+    @Test
+    public void roundTripsTypedArguments() throws Exception {
+        Object[] args = {null, -1, Long.MIN_VALUE, 1.5d, 2.5f, true, 'x', (short) -7, (byte) 3, "😀"};
+        ApplicationException e = new RemoteException(null, ApplicationException.MessageKeys.MSG_INVALID_VALUE, args);
+        ApplicationException decoded = roundTrip(e);
+        assertSame("Subclasses are rebuilt as their own class", RemoteException.class, decoded.getClass());
+        assertArrayEquals(args, decoded.getArguments());
+    }
+
+    @Test
+    public void rendersOtherArgumentsAsSent() throws Exception {
+        Object[] args = {new int[] {1, 2}, Arrays.asList("a", 1), Locale.FRANCE};
+        ApplicationException e = new RemoteException(null, ApplicationException.MessageKeys.MSG_INVALID_VALUE, args);
+        ApplicationException decoded = roundTrip(e);
+        assertEquals(e.getMessage(), decoded.getMessage());
+        assertEquals(Arrays.asList("a", 1), decoded.getArguments()[1]);
+    }
+
+    static class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + x + ", " + y + ")";
+        }
+    }
+
+    @Test
+    public void decodedExceptionsEqualTheirOriginals() throws Exception {
+        IllegalStateException cause = new IllegalStateException("broken");
+        ApplicationException[] exceptions = {
+                ApplicationException.failedToInitializeComponent(ExceptionCodec.class, cause),
+                ApplicationException.missingResourceBundle("messages", cause),
+                ApplicationException.notSupported(new Date(0)),
+                ApplicationException.notSupported(new Point(1, 2)),
+                ApplicationException.notSupported(Arrays.asList(new Point(1, 2), "a"))
+        };
+        for (ApplicationException e : exceptions) {
+            ApplicationException decoded = roundTrip(e);
+            assertEquals(e.getMessage(), decoded.getMessage());
+            assertEquals(e, decoded);
+            assertEquals(decoded, e);
+            assertEquals(e.hashCode(), decoded.hashCode());
+        }
+        assertFalse(roundTrip(ApplicationException.notSupported(new Point(1, 2))).equals(ApplicationException.notSupported(new Point(2, 1))));
+    }
+
+    @Test
+    public void equalDecodedExceptionsHashAlike() throws Exception {
+        Object[] args = {5, 7L, 1.5d, Arrays.asList(1, "a", new Point(1, 2)), new int[] {3, 4}, new Date(0)};
+        ApplicationException e = new RemoteException(null, ApplicationException.MessageKeys.MSG_INVALID_VALUE, args);
+        ApplicationException decoded = roundTrip(e);
+        assertTrue(e.equals(decoded) && decoded.equals(e));
+        assertEquals(e.hashCode(), decoded.hashCode());
+        ApplicationException five = ApplicationException.notSupported(5);
+        ApplicationException renderedFive = ApplicationException.notSupported(new ExceptionCodec.RenderedArgument("5"));
+        assertFalse("A rendering never stands in for a hashed type", five.equals(renderedFive) || renderedFive.equals(five));
+    }
+
+    @Test
+    public void keepsTruncatedFramesAndCauses() throws Exception {
+        IllegalStateException root = new IllegalStateException("root");
+        ApplicationException middle = new RemoteException(root, ApplicationException.MessageKeys.MSG_MISSING_VALUE, "name");
+        ApplicationException e = new RemoteException(middle, ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        ExceptionCodec.encode(e, buffer, 3, 1);
+        buffer.flip();
+        ApplicationException decoded = ExceptionCodec.decode(buffer);
+        assertEquals(3, decoded.getStackTrace().length);
+        assertEquals(e.getStackTrace()[0].toString(), decoded.getStackTrace()[0].toString());
+        assertEquals(middle, decoded.getCause());
+        assertNull("Only one cause is sent", decoded.getCause().getCause());
+
+        buffer.clear();
+        ExceptionCodec.encode(e, buffer, 0, 2);
+        buffer.flip();
+        decoded = ExceptionCodec.decode(buffer);
+        assertEquals(0, decoded.getStackTrace().length);
+        Throwable remoteRoot = decoded.getCause().getCause();
+        assertTrue(remoteRoot instanceof ExceptionCodec.RemoteCause);
+        assertEquals(IllegalStateException.class.getName(), ((ExceptionCodec.RemoteCause) remoteRoot).getClassName());
+        assertEquals("java.lang.IllegalStateException: root", remoteRoot.toString());
+    }
+
+    @Test
+    public void decodesManyFromOneBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        ExceptionCodec.encode(ApplicationException.missingParameterValue("a"), buffer);
+        ExceptionCodec.encode(ApplicationException.missingParameterValue("b"), buffer);
+        buffer.flip();
+        assertEquals(ApplicationException.missingParameterValue("a"), ExceptionCodec.decode(buffer));
+        assertEquals(ApplicationException.missingParameterValue("b"), ExceptionCodec.decode(buffer));
+    }
+
+    @Test
+    public void isSmallerThanJavaSerialization() throws Exception {
+        ApplicationException e = ApplicationException.invalidParameterValue("name", "value");
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        ExceptionCodec.encode(e, buffer);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(e);
+        out.close();
+        assertTrue(buffer.position() + " < " + bytes.size(), buffer.position() * 2 < bytes.size());
+    }
+
+    @Test
+    public void isSmallerThanJavaSerializationWithACauseAndFrames() throws Exception {
+        // the exception of SerializationBenchmark
+        ApplicationException e = new ApplicationException(StackTraceMode.FULL, ApplicationException.missingParameterValue("other"),
+                ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(e);
+        out.close();
+        for (int maxFrames : new int[] {0, 16}) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            ExceptionCodec.encode(e, buffer, maxFrames, ExceptionCodec.DEFAULT_MAX_CAUSES);
+            assertTrue(maxFrames + " frames: " + buffer.position() + " < " + bytes.size(), buffer.position() * 2 < bytes.size());
+        }
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void overflowsSmallBuffers() throws Exception {
+        ExceptionCodec.encode(ApplicationException.invalidParameterValue("name", "value"), ByteBuffer.allocate(16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherData() throws Exception {
+        ExceptionCodec.decode(ByteBuffer.wrap(new byte[] {'A', 1, 0}));
+    }
+
+    @Test
+    public void rejectsMalformedCounts() throws Exception {
+        byte[][] counts = {
+                {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f},
+                {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01},
+                {100, 0},
+        };
+        for (byte[] count : counts) {
+            // a KEY_NAME exception "X" with the key "K" and the count of its arguments
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            buffer.put(ExceptionCodec.MAGIC).put(ExceptionCodec.VERSION).put((byte) 2)
+                    .put(new byte[] {1, 1, 'X', 1, 1, 'K'}).put(count);
+            buffer.flip();
+            try {
+                ExceptionCodec.decode(buffer);
+                fail("expected a malformed count to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed ApplicationException"));
+            }
+        }
+    }
+
+    @Test
+    public void decodingDoesNotNotifyListeners() throws Exception {
+        final int[] created = new int[1];
+        ApplicationExceptionListener listener = new ApplicationExceptionListener() {
+            public void exceptionCreated(ApplicationException exception) {
+                created[0]++;
+            }
+        };
+        ApplicationException e = new RemoteException(ApplicationException.notImplemented(),
+                ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value");
+        ApplicationException.addListener(listener);
+        ApplicationException decoded;
+        try {
+            decoded = roundTrip(e);
+        } finally {
+            ApplicationException.removeListener(listener);
+        }
+        assertEquals("The exceptions were counted where they were created", 0, created[0]);
+        assertSame(RemoteException.class, decoded.getClass());
+        assertEquals(e.getMessage(), decoded.getMessage());
+        assertEquals("The sent frames are kept", e.getStackTrace()[0].getMethodName(), decoded.getStackTrace()[0].getMethodName());
+        assertEquals(e.getStackTrace()[0].getLineNumber(), decoded.getStackTrace()[0].getLineNumber());
+        assertSame(ExceptionContext.EMPTY, decoded.getContext());
+        assertEquals(0, decoded.getCause().getSuppressed().length);
+    }
+}
@@ -0,0 +1,176 @@
+package com.rreganjr;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExceptionContextTests {
+
+    @After
+    public void tearDown() {
+        ApplicationException.setContextProvider(ExceptionContext.BOUND);
+    }
+
+    @Test
+    public void isEmptyWithoutABoundContext() throws Exception {
+        assertSame(ExceptionContext.EMPTY, ExceptionContext.current());
+        assertSame(ExceptionContext.EMPTY, ApplicationException.notImplemented().getContext());
+    }
+
+    @Test
+    public void isImmutable() throws Exception {
+        ExceptionContext context = ExceptionContext.of("requestId", "r1");
+        ExceptionContext traced = context.with("traceId", "t1");
+        assertNull(context.get("traceId"));
+        assertEquals("{requestId=r1, traceId=t1}", traced.toString());
+        assertEquals(ExceptionContext.of("traceId", "t1"), traced.with("requestId", null));
+        assertEquals("r2", traced.with("requestId", "r2").get("requestId"));
+        assertEquals("r1", traced.get("requestId"));
+    }
+
+    @Test
+    public void capturesTheBoundContext() throws Exception {
+        final ExceptionContext outer = ExceptionContext.of("requestId", "outer");
+        final ExceptionContext inner = outer.with("step", "inner");
+        final List<ApplicationException> created = new ArrayList<ApplicationException>();
+        ExceptionContext.run(outer, new Runnable() {
+            public void run() {
+                created.add(ApplicationException.missingParameterValue("name"));
+                ExceptionContext.run(inner, new Runnable() {
+                    public void run() {
+                        created.add(ApplicationException.missingParameterValue("name"));
+                    }
+                });
+                created.add(ApplicationException.missingParameterValue("name"));
+            }
+        });
+        assertEquals(outer, created.get(0).getContext());
+        assertEquals(inner, created.get(1).getContext());
+        assertEquals("The outer context is restored", outer, created.get(2).getContext());
+        assertSame(ExceptionContext.EMPTY, ExceptionContext.current());
+    }
+
+    @Test
+    public void callsAndRethrows() throws Exception {
+        ExceptionContext context = ExceptionContext.of("requestId", "r1");
+        ApplicationException e = ExceptionContext.call(context, new Callable<ApplicationException>() {
+            public ApplicationException call() {
+                return ApplicationException.missingParameterValue("name");
+            }
+        });
+        assertEquals("r1", e.getContext().get("requestId"));
+        try {
+            ExceptionContext.call(context, new Callable<Object>() {
+                public Object call() {
+                    throw ApplicationException.missingParameterValue("name");
+                }
+            });
+            fail();
+        } catch (ApplicationException thrown) {
+            assertEquals(context, thrown.getContext());
+        }
+    }
+
+    @Test
+    public void wrappedTasksCarryTheContextToPooledThreads() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final ExceptionContext context = ExceptionContext.of("requestId", "r1");
+            final Future<?>[] future = new Future<?>[1];
+            final ApplicationException[] created = new ApplicationException[1];
+            ExceptionContext.run(context, new Runnable() {
+                public void run() {
+                    future[0] = executor.submit(ExceptionContext.wrap(new Runnable() {
+                        public void run() {
+                            created[0] = ApplicationException.missingParameterValue("name");
+                        }
+                    }));
+                }
+            });
+            future[0].get();
+            assertEquals(context, created[0].getContext());
+            assertSame("The pooled thread doesn't keep the context", ExceptionContext.EMPTY,
+                    executor.submit(new Callable<ExceptionContext>() {
+                        public ExceptionContext call() {
+                            return ExceptionContext.current();
+                        }
+                    }).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void usesTheInstalledProvider() throws Exception {
+        ApplicationException.setContextProvider(new ExceptionContextProvider() {
+            public ExceptionContext capture() {
+                return ExceptionContext.of("source", "provider");
+            }
+        });
+        assertEquals("provider", ApplicationException.missingParameterValue("name").getContext().get("source"));
+        ApplicationException.setContextProvider(null);
+        ExceptionContext.run(ExceptionContext.of("requestId", "r1"), new Runnable() {
+            public void run() {
+                assertTrue(ApplicationException.missingParameterValue("name").getContext().isEmpty());
+            }
+        });
+    }
+
+    @Test
+    public void sharedInstancesHaveNoContext() throws Exception {
+        ApplicationException.setSharingMode(SharingMode.SHARED);
+        try {
+            ExceptionContext.run(ExceptionContext.of("requestId", "r1"), new Runnable() {
+                public void run() {
+                    assertTrue(ApplicationException.notImplemented().getContext().isEmpty());
+                }
+            });
+        } finally {
+            ApplicationException.setSharingMode(SharingMode.NONE);
+        }
+    }
+
+    @Test
+    public void isolatesThousandsOfVirtualThreads() throws Exception {
+        ExecutorService executor;
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            Assume.assumeNoException("Virtual threads need JDK 21", e);
+            return;
+        }
+        int tasks = 10000;
+        List<Future<String>> futures = new ArrayList<Future<String>>(tasks);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                final ExceptionContext context = ExceptionContext.of("requestId", "r" + i);
+                futures.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return ExceptionContext.call(context, new Callable<String>() {
+                            public String call() throws Exception {
+                                // unmounts the virtual thread so the tasks interleave on the carriers
+                                Thread.sleep(1);
+                                return ApplicationException.missingParameterValue("name").getContext().get("requestId");
+                            }
+                        });
+                    }
+                }));
+            }
+            for (int i = 0; i < tasks; i++) {
+                assertEquals("r" + i, futures.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExceptionFingerprintTests {
+
+    static class CustomException extends ApplicationException {
+        static final long serialVersionUID = 0;
+
+        CustomException(String value) {
+            super(MessageKeys.MSG_INVALID_VALUE, "name", value);
+        }
+    }
+
+    private static ApplicationException fromHere(String value) {
+        return ApplicationException.invalidParameterValue("name", value);
+    }
+
+    private static ApplicationException fromThere(String value) {
+        return ApplicationException.invalidParameterValue("name", value);
+    }
+
+    @Test
+    public void sameKeyAndPlaceSameFingerprint() throws Exception {
+        assertEquals(ExceptionFingerprint.of(fromHere("a")), ExceptionFingerprint.of(fromHere("b")));
+    }
+
+    @Test
+    public void argumentsCanBeIncluded() throws Exception {
+        ApplicationException a = fromHere("a");
+        ApplicationException b = fromHere("b");
+        assertNotEquals(ExceptionFingerprint.of(a, 5, true), ExceptionFingerprint.of(b, 5, true));
+        assertEquals(ExceptionFingerprint.of(a, 5, true), ExceptionFingerprint.of(fromHere("a"), 5, true));
+    }
+
+    @Test
+    public void placeKeyAndClassDistinguish() throws Exception {
+        long here = ExceptionFingerprint.of(fromHere("a"));
+        assertNotEquals(here, ExceptionFingerprint.of(fromThere("a")));
+        assertNotEquals(here, ExceptionFingerprint.of(ApplicationException.missingParameterValue("name")));
+        assertNotEquals(ExceptionFingerprint.of(new CustomException("a"), 0, false),
+                ExceptionFingerprint.of(fromHere("a"), 0, false));
+        assertEquals("Without frames the place doesn't matter",
+                ExceptionFingerprint.of(fromHere("a"), 0, false), ExceptionFingerprint.of(fromThere("b"), 0, false));
+    }
+
+    @Test
+    public void stableAcrossRuns() throws Exception {
+        ApplicationException exception = new ApplicationException("plain message");
+        exception.setStackTrace(new StackTraceElement[] {new StackTraceElement("a.B", "c", "B.java", 1)});
+        assertEquals(0xad64a77cd6b9925dL, ExceptionFingerprint.of(exception));
+        exception.setStackTrace(new StackTraceElement[] {new StackTraceElement("a.B", "c", "B.java", 2)});
+        assertEquals("Line numbers are ignored", 0xad64a77cd6b9925dL, ExceptionFingerprint.of(exception));
+    }
+
+    @Test
+    public void shallowStacksAreReadWithoutACopy() throws Exception {
+        StackTraceMode originalMode = ApplicationException.getStackTraceMode();
+        try {
+            ApplicationException.setStackTraceMode(StackTraceMode.SHALLOW);
+            ApplicationException exception = fromHere("a");
+            assertSame(exception.frames(), exception.frames());
+            long fingerprint = ExceptionFingerprint.of(exception);
+            assertEquals(fingerprint, ExceptionFingerprint.of(exception));
+            exception.setStackTrace(exception.getStackTrace());
+            assertEquals("The same frames as getStackTrace()", fingerprint, ExceptionFingerprint.of(exception));
+            exception.setStackTrace(new StackTraceElement[] {new StackTraceElement("a.B", "c", "B.java", 1)});
+            assertNotEquals("setStackTrace forgets the cached fingerprint", fingerprint, ExceptionFingerprint.of(exception));
+        } finally {
+            ApplicationException.setStackTraceMode(originalMode);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.rreganjr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class ExceptionMetricsTests {
+
+    private static final String KEY = ApplicationException.MessageKeys.MSG_INVALID_VALUE.name();
+
+    static class CustomException extends ApplicationException {
+        static final long serialVersionUID = 0;
+
+        CustomException() {
+            super(MessageKeys.MSG_INVALID_VALUE, "name", "value");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        ExceptionMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ExceptionMetrics.disable();
+        ExceptionMetrics.reset();
+    }
+
+    @Test
+    public void countsNothingWhenDisabled() throws Exception {
+        ApplicationException.invalidParameterValue("name", "value");
+        assertEquals(0, ExceptionMetrics.getCount(KEY));
+    }
+
+    @Test
+    public void countsPerMessageKeyAndClass() throws Exception {
+        ExceptionMetrics.enable();
+        assertTrue(ExceptionMetrics.isEnabled());
+        ApplicationException.invalidParameterValue("name", "value");
+        ApplicationException.invalidParameterValue("name", "other");
+        new CustomException();
+        ApplicationException.missingParameterValue("name");
+        MetricsSnapshot snapshot = ExceptionMetrics.snapshot();
+        assertEquals(Long.valueOf(3), snapshot.getCountsByKey().get(KEY));
+        assertEquals(Long.valueOf(1), snapshot.getCountsByKey().get(ApplicationException.MessageKeys.MSG_MISSING_VALUE.name()));
+        assertEquals(Long.valueOf(3), snapshot.getCountsByClass().get(ApplicationException.class.getName()));
+        assertEquals(Long.valueOf(1), snapshot.getCountsByClass().get(CustomException.class.getName()));
+    }
+
+    @Test
+    public void countsFromManyThreads() throws Exception {
+        ExceptionMetrics.enable();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        ApplicationException.invalidParameterValue("name", "value");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, ExceptionMetrics.getCount(KEY));
+    }
+
+    @Test
+    public void ratesOverWindows() throws Exception {
+        ExceptionMetrics.tick();
+        for (int second = 0; second < 20; second++) {
+            for (int i = 0; i < 5; i++) {
+                ExceptionMetrics.record(ApplicationException.invalidParameterValue("name", "value"));
+            }
+            ExceptionMetrics.tick();
+        }
+        assertEquals("5 exceptions were recorded every second", 5.0, ExceptionMetrics.getRate(KEY, 10), 0.0001);
+        assertEquals("The window is limited to the available history", 5.0, ExceptionMetrics.getRate(KEY, 60), 0.0001);
+        assertEquals(5.0, ExceptionMetrics.snapshot().getRatesByKey(60).get(KEY), 0.0001);
+        for (int second = 0; second < 10; second++) {
+            ExceptionMetrics.tick();
+        }
+        assertEquals("Nothing was recorded in the last 10 seconds", 0.0, ExceptionMetrics.getRate(KEY, 10), 0.0001);
+    }
+
+    @Test
+    public void exporter() throws Exception {
+        InMemoryMetricsExporter exporter = new InMemoryMetricsExporter(2);
+        ExceptionMetrics.addExporter(exporter);
+        try {
+            assertNull(exporter.getLatest());
+            ExceptionMetrics.record(ApplicationException.invalidParameterValue("name", "value"));
+            ExceptionMetrics.export();
+            ExceptionMetrics.export();
+            ExceptionMetrics.export();
+            assertEquals("The exporter keeps only its capacity", 2, exporter.getSnapshots().size());
+            assertEquals(Long.valueOf(1), exporter.getLatest().getCountsByKey().get(KEY));
+        } finally {
+            ExceptionMetrics.removeExporter(exporter);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mbean() throws Exception {
+        ExceptionMetrics.registerMBean();
+        try {
+            ExceptionMetrics.record(ApplicationException.invalidParameterValue("name", "value"));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ExceptionMetrics.OBJECT_NAME);
+            assertTrue(server.isRegistered(name));
+            Object counts = server.getAttribute(name, "CountsByMessageKey");
+            assertNotNull("The counts are readable over JMX", counts);
+            assertEquals(Boolean.FALSE, server.getAttribute(name, "Enabled"));
+        } finally {
+            ExceptionMetrics.unregisterMBean();
+        }
+    }
+}
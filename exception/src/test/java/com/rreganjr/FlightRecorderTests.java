@@ -0,0 +1,173 @@
+package com.rreganjr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTests {
+
+    private static final String KEY = ApplicationException.MessageKeys.MSG_INVALID_VALUE.name();
+
+    @Before
+    public void setUp() {
+        FlightRecorder.clear();
+    }
+
+    @After
+    public void tearDown() {
+        FlightRecorder.disable();
+        FlightRecorder.clearDumpTrigger();
+        FlightRecorder.setMaxArgumentsLength(FlightRecorder.DEFAULT_MAX_ARGUMENTS_LENGTH);
+        FlightRecorder.setDumpCoolDown(FlightRecorder.DEFAULT_DUMP_COOL_DOWN_MILLIS);
+        FlightRecorder.clear();
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled() throws Exception {
+        FlightRecorder.enable(16);
+        FlightRecorder.disable();
+        assertFalse(FlightRecorder.isEnabled());
+        ApplicationException.invalidParameterValue("name", "value");
+        assertTrue(FlightRecorder.snapshot().isEmpty());
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() throws Exception {
+        FlightRecorder.enable(5);
+        assertEquals(8, FlightRecorder.getCapacity());
+    }
+
+    @Test
+    public void keepsTheMostRecentExceptionsInOrder() throws Exception {
+        FlightRecorder.enable(4);
+        assertTrue(FlightRecorder.isEnabled());
+        for (int i = 0; i < 10; i++) {
+            ApplicationException.invalidParameterValue("name", "value" + i);
+        }
+        List<FlightRecord> records = FlightRecorder.snapshot();
+        assertEquals(4, records.size());
+        assertEquals(10, FlightRecorder.getRecordedCount());
+        for (int i = 0; i < 4; i++) {
+            FlightRecord record = records.get(i);
+            assertEquals(6 + i, record.getSequence());
+            assertEquals("value" + (6 + i), record.getArguments()[1]);
+            assertEquals(KEY, record.getMessageKey());
+            assertEquals(ApplicationException.class.getName(), record.getExceptionClass());
+            assertEquals(Thread.currentThread().getName(), record.getThreadName());
+            assertEquals(Thread.currentThread().getId(), record.getThreadId());
+            assertTrue(record.getTimestamp() > 0);
+        }
+        StackTraceElement[] frames = records.get(0).getTopFrames();
+        assertTrue(frames.length > 0 && frames.length <= FlightRecorder.getTopFrames());
+    }
+
+    @Test
+    public void stacklessExceptionsHaveNoFrames() throws Exception {
+        FlightRecorder.enable(4);
+        ApplicationException.setStackTraceMode(KEY, StackTraceMode.NONE);
+        try {
+            ApplicationException.invalidParameterValue("name", "value");
+        } finally {
+            ApplicationException.setStackTraceMode(KEY, null);
+        }
+        assertEquals(0, FlightRecorder.snapshot().get(0).getTopFrames().length);
+    }
+
+    @Test
+    public void recordsFromManyThreads() throws Exception {
+        FlightRecorder.enable(1024);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        ApplicationException.invalidParameterValue("name", Thread.currentThread().getName());
+                    }
+                }
+            }, "recorder-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800, FlightRecorder.getRecordedCount() + FlightRecorder.getDroppedCount());
+        List<FlightRecord> records = FlightRecorder.snapshot();
+        assertEquals(FlightRecorder.getRecordedCount(), records.size());
+        for (FlightRecord record : records) {
+            assertEquals("A record is never torn between two exceptions", record.getThreadName(), record.getArguments()[1]);
+        }
+    }
+
+    @Test
+    public void dumpsToAFile() throws Exception {
+        FlightRecorder.enable(8);
+        FlightRecorder.setMaxArgumentsLength(12);
+        ApplicationException.invalidParameterValue("name", "a long value that gets cut");
+        File file = File.createTempFile("flight-recorder", ".txt");
+        try {
+            assertEquals(1, FlightRecorder.dump(file.toPath()));
+            String dump = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertTrue(dump, dump.contains(KEY + "(\"name\", \"...)"));
+            assertTrue(dump, dump.contains("\tat "));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void dumpsOnErrorRateSpike() throws Exception {
+        FlightRecorder.enable(64);
+        Path directory = Files.createTempDirectory("flight-recorder");
+        try {
+            FlightRecorder.setDumpTrigger(5, directory);
+            ApplicationException.invalidParameterValue("name", "value");
+            FlightRecorder.checkTrigger(System.currentTimeMillis());
+            assertEquals("Below the threshold", 0, directory.toFile().list().length);
+            for (int i = 0; i < 5; i++) {
+                ApplicationException.invalidParameterValue("name", "value");
+            }
+            FlightRecorder.checkTrigger(System.currentTimeMillis());
+            assertEquals(1, directory.toFile().list().length);
+            for (int i = 0; i < 5; i++) {
+                ApplicationException.invalidParameterValue("name", "value");
+            }
+            FlightRecorder.checkTrigger(System.currentTimeMillis());
+            assertEquals("Within the cool down", 1, directory.toFile().list().length);
+        } finally {
+            FlightRecorder.clearDumpTrigger();
+            for (File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        FlightRecorder.registerMBean();
+        try {
+            FlightRecorder.enable(8);
+            ApplicationException.invalidParameterValue("name", "value");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(FlightRecorder.OBJECT_NAME);
+            assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+            String[] recent = (String[]) server.getAttribute(name, "RecentExceptions");
+            assertEquals(1, recent.length);
+            assertTrue(recent[0], recent[0].contains(KEY));
+        } finally {
+            FlightRecorder.unregisterMBean();
+        }
+    }
+}
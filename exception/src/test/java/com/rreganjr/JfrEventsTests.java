@@ -0,0 +1,104 @@
+package com.rreganjr;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.Assert.*;
+
+public class JfrEventsTests {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("jdk.jfr is not available", JfrEvents.AVAILABLE);
+        file = File.createTempFile("JfrEventsTests", ".jfr");
+    }
+
+    @After
+    public void tearDown() {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private List<RecordedEvent> record(boolean enable, Runnable task) throws Exception {
+        Recording recording = new Recording();
+        try {
+            if (enable) {
+                recording.enable(JfrEvents.CREATED);
+                recording.enable(JfrEvents.FORMATTED);
+            }
+            recording.start();
+            task.run();
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            recording.close();
+        }
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals(JfrEvents.CREATED) || name.equals(JfrEvents.FORMATTED)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name, String messageKey) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name) && messageKey.equals(event.getString("messageKey"))) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void recordsCreationAndFormatting() throws Exception {
+        final StackTraceMode originalMode = ApplicationException.getStackTraceMode();
+        List<RecordedEvent> events = record(true, new Runnable() {
+            public void run() {
+                ApplicationException.setStackTraceMode(StackTraceMode.NONE);
+                try {
+                    ApplicationException.invalidParameterValue("name", "value").getMessage(Locale.FRENCH);
+                } finally {
+                    ApplicationException.setStackTraceMode(originalMode);
+                }
+            }
+        });
+        RecordedEvent created = find(events, JfrEvents.CREATED, "MSG_INVALID_VALUE");
+        assertNotNull(events.toString(), created);
+        assertEquals(ApplicationException.class.getName(), created.getString("exceptionClass"));
+        assertEquals("NONE", created.getString("stackTraceMode"));
+        assertFalse(created.getBoolean("stackTraceCaptured"));
+        assertFalse(created.getBoolean("shared"));
+
+        RecordedEvent formatted = find(events, JfrEvents.FORMATTED, "MSG_INVALID_VALUE");
+        assertNotNull(events.toString(), formatted);
+        assertEquals(MessageSource.DEFAULT_BUNDLE, formatted.getString("bundle"));
+        assertFalse(formatted.getDuration().isNegative());
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        List<RecordedEvent> events = record(false, new Runnable() {
+            public void run() {
+                ApplicationException.invalidParameterValue("name", "value");
+            }
+        });
+        assertTrue(events.toString(), events.isEmpty());
+    }
+}
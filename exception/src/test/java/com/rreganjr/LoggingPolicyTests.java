@@ -0,0 +1,228 @@
+package com.rreganjr;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LoggingPolicyTests {
+
+    private static final String KEY = ApplicationException.MessageKeys.MSG_INVALID_VALUE.name();
+
+    private final CapturingAppender appender = new CapturingAppender();
+    private Logger log;
+    private Level originalLevel;
+
+    @Before
+    public void setUp() {
+        LoggingPolicy.reset();
+        log = Logger.getLogger(ApplicationException.class);
+        originalLevel = log.getLevel();
+        log.setLevel(Level.DEBUG);
+        log.addAppender(appender);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        LoggingPolicy.flush(5, TimeUnit.SECONDS);
+        log.removeAppender(appender);
+        log.setLevel(originalLevel);
+        LoggingPolicy.reset();
+    }
+
+    @Test
+    public void logsEveryExceptionByDefault() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            ApplicationException.invalidParameterValue("name", "value" + i);
+        }
+        assertTrue(LoggingPolicy.flush(5, TimeUnit.SECONDS));
+        assertEquals("Every exception is logged", 10, appender.messagesContaining("value").size());
+    }
+
+    @Test
+    public void logsOnBackgroundThread() throws Exception {
+        ApplicationException.invalidParameterValue("name", "value");
+        assertTrue(LoggingPolicy.flush(5, TimeUnit.SECONDS));
+        assertEquals("ApplicationException-logger", appender.events.get(0).getThreadName());
+    }
+
+    @Test
+    public void logsOnThrowingThreadWhenSynchronous() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        ApplicationException.invalidParameterValue("name", "value");
+        assertEquals("The exception is logged before the constructor returns", 1, appender.events.size());
+        assertEquals(Thread.currentThread().getName(), appender.events.get(0).getThreadName());
+    }
+
+    @Test
+    public void logsCause() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        Exception cause = new Exception();
+        ApplicationException.missingResourceBundle("bundle", cause);
+        assertSame(cause, appender.events.get(0).getThrowableInformation().getThrowable());
+    }
+
+    @Test
+    public void sampling() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setSampleRate(KEY, 5);
+        for (int i = 0; i < 20; i++) {
+            ApplicationException.invalidParameterValue("name", "value");
+        }
+        assertEquals("One in five exceptions is logged", 4, appender.events.size());
+        assertEquals(16, LoggingPolicy.getSuppressedCount(KEY));
+        ApplicationException.missingParameterValue("name");
+        assertEquals("Other keys are not sampled", 5, appender.events.size());
+    }
+
+    @Test
+    public void rateLimit() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setRateLimit(KEY, 0.01, 3);
+        for (int i = 0; i < 100; i++) {
+            ApplicationException.invalidParameterValue("name", "value");
+        }
+        assertEquals("Only the burst is logged", 3, appender.events.size());
+        assertEquals(97, LoggingPolicy.getSuppressedCount(KEY));
+        LoggingPolicy.clearLimits(KEY);
+        ApplicationException.invalidParameterValue("name", "value");
+        assertEquals("Clearing the limits uses the defaults", 4, appender.events.size());
+    }
+
+    @Test
+    public void defaultRateLimit() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setDefaultRateLimit(0.01, 1);
+        for (int i = 0; i < 10; i++) {
+            ApplicationException.missingParameterValue("name");
+            ApplicationException.missingParameterValues("name");
+        }
+        assertEquals("Each key has its own bucket", 2, appender.events.size());
+    }
+
+    @Test
+    public void summaryOfSuppressedExceptions() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setSampleRate(KEY, 10);
+        for (int i = 0; i < 10; i++) {
+            ApplicationException.invalidParameterValue("name", "value");
+        }
+        LoggingPolicy.logSummary();
+        assertEquals(1, appender.messagesContaining("Suppressed 9 similar exceptions with " + KEY).size());
+        assertEquals("The count is reset after the summary", 0, LoggingPolicy.getSuppressedCount(KEY));
+    }
+
+    @Test
+    public void periodicSummary() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setSampleRate(KEY, 2);
+        LoggingPolicy.setSummaryInterval(10, TimeUnit.MILLISECONDS);
+        ApplicationException.invalidParameterValue("name", "value");
+        ApplicationException.invalidParameterValue("name", "value");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (appender.messagesContaining("Suppressed 1 similar").isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, appender.messagesContaining("Suppressed 1 similar").size());
+    }
+
+    @Test
+    public void reschedulingDoesNotInterruptAnAppender() throws Exception {
+        final CountDownLatch appending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        AppenderSkeleton slow = new AppenderSkeleton() {
+            @Override
+            protected void append(LoggingEvent event) {
+                appending.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean requiresLayout() {
+                return false;
+            }
+        };
+        log.addAppender(slow);
+        try {
+            ApplicationException.invalidParameterValue("name", "value");
+            assertTrue(appending.await(5, TimeUnit.SECONDS));
+            LoggingPolicy.setSummaryInterval(10, TimeUnit.MILLISECONDS);
+            release.countDown();
+            assertTrue(LoggingPolicy.flush(5, TimeUnit.SECONDS));
+            assertFalse("The appender's I/O is not interrupted", interrupted.get());
+            assertEquals(1, appender.messagesContaining("value").size());
+        } finally {
+            release.countDown();
+            log.removeAppender(slow);
+        }
+    }
+
+    @Test
+    public void nothingLoggedWhenDebugIsOff() throws Exception {
+        log.setLevel(Level.ERROR);
+        ApplicationException.invalidParameterValue("name", "value");
+        assertTrue(LoggingPolicy.flush(5, TimeUnit.SECONDS));
+        assertTrue(appender.events.isEmpty());
+    }
+
+    @Test
+    public void logsCompactCauses() throws Exception {
+        LoggingPolicy.setAsynchronous(false);
+        LoggingPolicy.setCompactTraces(200);
+        ApplicationException.failedToInitializeComponent(String.class, new IllegalStateException("boom"));
+        List<String> messages = appender.messagesContaining("java.lang.IllegalStateException: boom");
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0).length() < 200 + 100 + CompactStackTrace.TRUNCATED.length());
+        assertNull("The cause is part of the message", appender.events.get(0).getThrowableInformation());
+    }
+
+    private static class CapturingAppender extends AppenderSkeleton {
+        final List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+
+        @Override
+        protected synchronized void append(LoggingEvent event) {
+            // log4j looks up the thread name lazily, capture it on the logging thread
+            event.getThreadName();
+            events.add(event);
+        }
+
+        synchronized List<String> messagesContaining(String text) {
+            List<String> messages = new ArrayList<String>();
+            for (LoggingEvent event : events) {
+                if (event.getRenderedMessage().contains(text)) {
+                    messages.add(event.getRenderedMessage());
+                }
+            }
+            return messages;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.rreganjr;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class MessageSourceTests {
+
+    private static final String BUNDLE = MessageSourceTests.class.getName();
+    private static final String RELOAD_BUNDLE = BUNDLE + "Reload";
+
+    enum Keys implements ApplicationException.MessageKey {
+        MSG_GREETING
+    }
+
+    static class GreetingException extends ApplicationException {
+        static final long serialVersionUID = 0;
+
+        GreetingException(String name) {
+            super(Keys.MSG_GREETING, name);
+        }
+
+        @Override
+        protected String getBundleName() {
+            return BUNDLE;
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        MessageSource.stopWatching();
+        Files.deleteIfExists(reloadFile());
+        MessageSource.reload();
+    }
+
+    private static Path reloadFile() throws Exception {
+        Path classes = Paths.get(MessageSourceTests.class.getResource("MessageSourceTests.class").toURI()).getParent();
+        return classes.resolve(MessageSourceTests.class.getSimpleName() + "Reload_en.properties");
+    }
+
+    private static void writeReloadFile(String greeting) throws Exception {
+        Files.write(reloadFile(), ("MSG_GREETING = " + greeting + " %s.\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void bundlesAndTemplatesAreCachedPerLocale() throws Exception {
+        assertSame(MessageSource.getBundle(BUNDLE, Locale.FRENCH), MessageSource.getBundle(BUNDLE, Locale.FRENCH));
+        assertNotSame(MessageSource.getBundle(BUNDLE, Locale.FRENCH), MessageSource.getBundle(BUNDLE, Locale.ENGLISH));
+        assertSame(MessageSource.getTemplate(BUNDLE, Locale.FRENCH, Keys.MSG_GREETING),
+                MessageSource.getTemplate(BUNDLE, Locale.FRENCH, Keys.MSG_GREETING));
+        assertSame(MessageSource.getTemplate(MessageSource.DEFAULT_BUNDLE, Locale.getDefault(), ApplicationException.MessageKeys.MSG_INVALID_VALUE),
+                MessageSource.getTemplate(MessageSource.DEFAULT_BUNDLE, Locale.getDefault(), ApplicationException.MessageKeys.MSG_INVALID_VALUE));
+    }
+
+    @Test
+    public void rendersInTheCallersLocale() throws Exception {
+        GreetingException exception = new GreetingException("Ron");
+        assertEquals("Bonjour \"Ron\".", exception.getMessage(Locale.FRENCH));
+        assertEquals("Hello \"Ron\".", exception.getMessage(Locale.ENGLISH));
+        assertSame(exception.getMessage(), exception.getMessage(Locale.getDefault()));
+        ApplicationException plain = new ApplicationException("plain");
+        assertEquals("plain", plain.getMessage(Locale.FRENCH));
+    }
+
+    @Test
+    public void reloadReadsTheBundlesAgain() throws Exception {
+        writeReloadFile("Hello");
+        assertEquals("Hello \"Ron\".", MessageSource.getTemplate(RELOAD_BUNDLE, Locale.ENGLISH, Keys.MSG_GREETING).render(new Object[] {"Ron"}));
+        writeReloadFile("Hi");
+        assertEquals("Cached until reloaded", "Hello \"Ron\".",
+                MessageSource.getTemplate(RELOAD_BUNDLE, Locale.ENGLISH, Keys.MSG_GREETING).render(new Object[] {"Ron"}));
+        MessageSource.reload();
+        assertEquals("Hi \"Ron\".", MessageSource.getTemplate(RELOAD_BUNDLE, Locale.ENGLISH, Keys.MSG_GREETING).render(new Object[] {"Ron"}));
+    }
+
+    @Test
+    public void watchReloadsChangedFiles() throws Exception {
+        writeReloadFile("Hello");
+        assertTrue(MessageSource.watch(RELOAD_BUNDLE));
+        assertEquals("Hello \"Ron\".", MessageSource.getTemplate(RELOAD_BUNDLE, Locale.ENGLISH, Keys.MSG_GREETING).render(new Object[] {"Ron"}));
+        writeReloadFile("Hi");
+        long deadline = System.currentTimeMillis() + 30000;
+        String message;
+        do {
+            Thread.sleep(50);
+            message = MessageSource.getTemplate(RELOAD_BUNDLE, Locale.ENGLISH, Keys.MSG_GREETING).render(new Object[] {"Ron"});
+        } while (!message.startsWith("Hi") && System.currentTimeMillis() < deadline);
+        assertEquals("Hi \"Ron\".", message);
+    }
+
+    @Test
+    public void bundlesAreLoadedWithTheGivenClassLoader() throws Exception {
+        Path root = Files.createTempDirectory("bundles");
+        Path directory = Files.createDirectories(root.resolve("child"));
+        Files.write(directory.resolve("Messages.properties"), "MSG_GREETING = Howdy %s.\n".getBytes(StandardCharsets.ISO_8859_1));
+        URLClassLoader loader = new URLClassLoader(new URL[] {root.toUri().toURL()}, MessageSourceTests.class.getClassLoader());
+        try {
+            assertEquals("Howdy \"Ron\".", MessageSource.getTemplate("child.Messages", Locale.ENGLISH, loader, Keys.MSG_GREETING)
+                    .render(new Object[] {"Ron"}));
+            assertFalse(MessageSource.watch("child.Messages"));
+            assertTrue(MessageSource.watch("child.Messages", loader));
+        } finally {
+            loader.close();
+            Files.delete(directory.resolve("Messages.properties"));
+            Files.delete(directory);
+            Files.delete(root);
+        }
+    }
+
+    @Test
+    public void eachClassLoaderKeepsItsOwnEntry() throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[0], MessageSourceTests.class.getClassLoader());
+        try {
+            ClassLoader base = MessageSource.class.getClassLoader();
+            MessageTemplate template = MessageSource.getTemplate(BUNDLE, Locale.ENGLISH, base, Keys.MSG_GREETING);
+            MessageTemplate child = MessageSource.getTemplate(BUNDLE, Locale.ENGLISH, loader, Keys.MSG_GREETING);
+            assertNotSame(template, child);
+            assertSame("Asking with another loader doesn't replace the entry", template,
+                    MessageSource.getTemplate(BUNDLE, Locale.ENGLISH, base, Keys.MSG_GREETING));
+            assertSame(child, MessageSource.getTemplate(BUNDLE, Locale.ENGLISH, loader, Keys.MSG_GREETING));
+            assertTrue(MessageSource.isCached(BUNDLE, Locale.ENGLISH, base, Keys.MSG_GREETING));
+            assertTrue(MessageSource.isCached(BUNDLE, Locale.ENGLISH, loader, Keys.MSG_GREETING));
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    public void bundlesInJarsCantBeWatched() throws Exception {
+        assertFalse(MessageSource.watch("org.junit.Test"));
+    }
+}
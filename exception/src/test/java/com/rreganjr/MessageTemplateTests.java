@@ -0,0 +1,101 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.util.Enumeration;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.MissingFormatArgumentException;
+
+import static org.junit.Assert.*;
+
+public class MessageTemplateTests {
+
+    /**
+     * @return what Formatter makes of the pattern and the prettified arguments, which render has to match
+     */
+    private static String formatter(String pattern, Object... args) {
+        Formatter formatter = new Formatter();
+        args = ApplicationException.prettyArray(args);
+        try {
+            return formatter.format(pattern, args).toString();
+        } finally {
+            formatter.close();
+        }
+    }
+
+    @Test
+    public void everyBundlePatternMatchesFormatter() throws Exception {
+        Object[] args = new Object[]{"one", "two", "three"};
+        Enumeration<String> keys = ApplicationException.messages().getKeys();
+        while (keys.hasMoreElements()) {
+            String key = keys.nextElement();
+            String pattern = ApplicationException.messages().getString(key);
+            MessageTemplate template = MessageTemplate.compile(pattern);
+            assertTrue("The bundle pattern for " + key + " is compiled", template.isCompiled());
+            assertEquals("The compiled pattern for " + key + " renders the same as Formatter",
+                    formatter(pattern, args), template.render(args));
+        }
+    }
+
+    @Test
+    public void escapesAndLineSeparators() throws Exception {
+        String pattern = "100%% of %s%n";
+        MessageTemplate template = MessageTemplate.compile(pattern);
+        assertTrue(template.isCompiled());
+        assertEquals(formatter(pattern, "tests"), template.render(new Object[]{"tests"}));
+    }
+
+    @Test
+    public void nullAndNonStringArguments() throws Exception {
+        String pattern = "%s and %s";
+        assertEquals(formatter(pattern, null, 1.5d), MessageTemplate.compile(pattern).render(new Object[]{null, 1.5d}));
+    }
+
+    @Test
+    public void formattableArgument() throws Exception {
+        Formattable formattable = new Formattable() {
+            public void formatTo(Formatter formatter, int flags, int width, int precision) {
+                formatter.format("formatted");
+            }
+
+            @Override
+            public String toString() {
+                return "plain";
+            }
+        };
+        String pattern = "[%s]";
+        assertEquals("An argument is prettified with toString", "[plain]", MessageTemplate.compile(pattern).render(new Object[]{formattable}));
+        assertEquals(formatter(pattern, formattable), MessageTemplate.compile(pattern).render(new Object[]{formattable}));
+    }
+
+    @Test
+    public void otherConversionsFallBackToFormatter() throws Exception {
+        // render prettifies the arguments into strings, so only string conversions are used
+        String[] patterns = new String[]{"%-4s items", "%2$s %1$s", "%-10s|", "%S", "%.2s"};
+        Object[][] args = new Object[][]{{3}, {"a", "b"}, {"left"}, {"upper"}, {1.234}};
+        for (int i = 0; i < patterns.length; i++) {
+            MessageTemplate template = MessageTemplate.compile(patterns[i]);
+            assertFalse(patterns[i] + " is rendered by Formatter", template.isCompiled());
+            assertEquals(formatter(patterns[i], args[i]), template.render(args[i]));
+        }
+    }
+
+    @Test(expected = MissingFormatArgumentException.class)
+    public void missingArgument() throws Exception {
+        MessageTemplate.compile("%s and %s").render(new Object[]{"one"});
+    }
+
+    @Test
+    public void renderPrettifiesArgumentsOnce() throws Exception {
+        Object[] args = new Object[]{"name", new Object[]{1, "two"}, null};
+        MessageTemplate template = MessageTemplate.compile("%s had %s and %s");
+        assertEquals(formatter("%s had %s and %s", args), template.render(args));
+    }
+
+    @Test
+    public void renderFallsBackToFormatterWithPrettyArguments() throws Exception {
+        MessageTemplate template = MessageTemplate.compile("%2$s %1$s");
+        assertEquals("\"b\" \"a\"", template.render(new Object[]{"a", "b"}));
+    }
+}
@@ -0,0 +1,86 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class ResultTests {
+
+    private static final Function<String, Integer> LENGTH = new Function<String, Integer>() {
+        public Integer apply(String value) {
+            return value.length();
+        }
+    };
+
+    private static final Function<Integer, Result<Integer>> POSITIVE = new Function<Integer, Result<Integer>>() {
+        public Result<Integer> apply(Integer value) {
+            return value > 0 ? Result.success(value)
+                    : Result.<Integer>failure(ApplicationError.invalidParameterValue("length", String.valueOf(value)));
+        }
+    };
+
+    @Test
+    public void errorsCreateTheExceptionOfTheirFactory() throws Exception {
+        IllegalStateException cause = new IllegalStateException("cause");
+        assertEquals(ApplicationException.invalidParameterValue("name", "value"),
+                ApplicationError.invalidParameterValue("name", "value").toException());
+        assertEquals(ApplicationException.invalidParameterValues("names", "values"),
+                ApplicationError.invalidParameterValues("names", "values").toException());
+        assertEquals(ApplicationException.missingParameterValue("name"), ApplicationError.missingParameterValue("name").toException());
+        assertEquals(ApplicationException.missingParameterValues("names"), ApplicationError.missingParameterValues("names").toException());
+        assertEquals(ApplicationException.invalidAndMissingParameterValues("a", "1", "b"),
+                ApplicationError.invalidAndMissingParameterValues("a", "1", "b").toException());
+        assertEquals(ApplicationException.notSupported("x"), ApplicationError.notSupported("x").toException());
+        assertEquals(ApplicationException.unsupportedDateString("x"), ApplicationError.unsupportedDateString("x").toException());
+        assertEquals(ApplicationException.notImplemented(), ApplicationError.notImplemented().toException());
+        assertEquals(ApplicationException.missingResourceBundle(), ApplicationError.missingResourceBundle().toException());
+        ApplicationException failed = ApplicationError.failedToInitializeComponent(String.class, cause).toException();
+        assertEquals(ApplicationException.failedToInitializeComponent(String.class, cause), failed);
+        assertSame(cause, failed.getCause());
+        assertSame(cause, ApplicationError.missingResourceBundle("bundle", cause).toException().getCause());
+        assertEquals(ApplicationException.failedToInitializeComponent(String.class, "details"),
+                ApplicationError.failedToInitializeComponent(String.class, "details").toException());
+    }
+
+    @Test
+    public void errorsAreValues() throws Exception {
+        ApplicationError error = ApplicationError.invalidParameterValue("name", "value");
+        assertEquals(error, ApplicationError.of(ApplicationException.MessageKeys.MSG_INVALID_VALUE, "name", "value"));
+        assertEquals(error.hashCode(), ApplicationError.invalidParameterValue("name", "value").hashCode());
+        assertNotEquals(error, ApplicationError.invalidParameterValue("name", "other"));
+        assertEquals("MSG_INVALID_VALUE[name, value]", error.toString());
+        assertSame(ApplicationException.MessageKeys.MSG_INVALID_VALUE, error.getMessageKey());
+        error.getArguments()[0] = "changed";
+        assertEquals("name", error.getArguments()[0]);
+        assertNull(error.getCause());
+    }
+
+    @Test
+    public void successesMapAndFlatMap() throws Exception {
+        Result<String> result = Result.success("abc");
+        assertTrue(result.isSuccess());
+        assertEquals("abc", result.get());
+        assertEquals(Result.success(3), result.map(LENGTH));
+        assertEquals(Integer.valueOf(3), result.map(LENGTH).flatMap(POSITIVE).get());
+        assertSame("Mapping to the same value returns the result", result, result.map(Function.<String>identity()));
+        assertSame(Result.success(null), Result.success(null));
+        assertNull("A null value is a success", Result.<String>success(null).orElse("x"));
+    }
+
+    @Test
+    public void failuresPassThroughAndThrowAtTheEnd() throws Exception {
+        Result<Integer> failed = Result.success("").map(LENGTH).flatMap(POSITIVE);
+        assertFalse(failed.isSuccess());
+        assertEquals(ApplicationError.invalidParameterValue("length", "0"), failed.getError());
+        assertSame("A failure maps to itself", failed, failed.flatMap(POSITIVE));
+        assertEquals(Integer.valueOf(-1), failed.orElse(-1));
+        try {
+            failed.get();
+            fail("expected the exception of the error");
+        } catch (ApplicationException e) {
+            assertEquals(ApplicationException.invalidParameterValue("length", "0"), e);
+        }
+    }
+}
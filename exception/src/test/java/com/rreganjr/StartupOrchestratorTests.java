@@ -0,0 +1,207 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StartupOrchestratorTests {
+
+    static class Database {}
+    static class Cache {}
+    static class Queue {}
+    static class Web {}
+
+    private static StartupOrchestrator.Component record(final List<String> events, final String name) {
+        return new StartupOrchestrator.Component() {
+            public void initialize() throws Exception {
+                events.add("start " + name);
+                Thread.sleep(20);
+                events.add("end " + name);
+            }
+        };
+    }
+
+    private static StartupOrchestrator.Component await(final CountDownLatch latch) {
+        return new StartupOrchestrator.Component() {
+            public void initialize() throws Exception {
+                latch.countDown();
+                assertTrue("Every component initializes at once", latch.await(5, TimeUnit.SECONDS));
+            }
+        };
+    }
+
+    private static final StartupOrchestrator.Component NOTHING = new StartupOrchestrator.Component() {
+        public void initialize() {
+        }
+    };
+
+    @Test
+    public void initializesIndependentComponentsInParallel() throws Exception {
+        CountDownLatch latch = new CountDownLatch(4);
+        StartupReport report = new StartupOrchestrator().setParallelism(4)
+                .add(Database.class, await(latch))
+                .add(Cache.class, await(latch))
+                .add(Queue.class, await(latch))
+                .add(Web.class, await(latch))
+                .start();
+        assertTrue(report.toString(), report.isSuccessful());
+        assertEquals(4, report.getTimings().size());
+        report.throwIfFailed();
+    }
+
+    @Test
+    public void initializesDependenciesFirst() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        StartupReport report = new StartupOrchestrator()
+                .add(Web.class, record(events, "web"), Cache.class, Database.class)
+                .add(Cache.class, record(events, "cache"), Database.class)
+                .add(Database.class, record(events, "database"))
+                .start();
+        assertTrue(report.isSuccessful());
+        assertEquals(6, events.size());
+        assertTrue(events.indexOf("end database") < events.indexOf("start cache"));
+        assertTrue(events.indexOf("end cache") < events.indexOf("start web"));
+        assertSame("Timings are in start order", Database.class, report.getTimings().get(0).getType());
+        assertTrue(report.getTiming(Web.class).getStartNanos() >= report.getTiming(Cache.class).getStartNanos()
+                + report.getTiming(Cache.class).getDurationNanos());
+        assertTrue(report.getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertNull(report.getTiming(Queue.class));
+    }
+
+    @Test
+    public void reportsEveryFailure() throws Exception {
+        final IllegalStateException cause = new IllegalStateException("no connection");
+        final AtomicInteger initialized = new AtomicInteger();
+        StartupReport report = new StartupOrchestrator()
+                .add(Database.class, new StartupOrchestrator.Component() {
+                    public void initialize() {
+                        throw cause;
+                    }
+                })
+                .add(Cache.class, NOTHING, Database.class)
+                .add(Web.class, NOTHING, Cache.class)
+                .add(Queue.class, new StartupOrchestrator.Component() {
+                    public void initialize() {
+                        initialized.incrementAndGet();
+                    }
+                })
+                .start();
+        assertFalse(report.isSuccessful());
+        assertEquals("Startup goes on after a failure", 1, initialized.get());
+        assertEquals(3, report.getFailures().size());
+        ApplicationException failure = report.getFailures().get(0);
+        assertSame(ApplicationException.MessageKeys.MSG_FAILED_TO_INITIALIZE_COMPONENT, failure.getMessageKey());
+        assertSame(cause, failure.getCause());
+        assertTrue(report.getTiming(Cache.class).isSkipped());
+        assertTrue(report.getTiming(Web.class).isSkipped());
+        assertNull(report.getTiming(Queue.class).getFailure());
+        assertTrue(report.toString(), report.toString().contains("skipped " + Web.class.getName()));
+        try {
+            report.throwIfFailed();
+            fail("expected the first failure");
+        } catch (ApplicationException e) {
+            assertSame(failure, e);
+            assertEquals(2, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void interruptsComponentsThatTimeOut() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        StartupReport report = new StartupOrchestrator()
+                .setTimeout(100, TimeUnit.MILLISECONDS)
+                .add(Database.class, new StartupOrchestrator.Component() {
+                    public void initialize() throws Exception {
+                        try {
+                            Thread.sleep(10000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                        }
+                    }
+                })
+                .setTimeout(5, TimeUnit.SECONDS)
+                .add(Cache.class, NOTHING)
+                .start();
+        assertTrue(report.getTotalNanos() < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, report.getFailures().size());
+        assertTrue(report.getFailures().get(0).getMessage(), report.getFailures().get(0).getMessage().contains("timed out after 100 ms"));
+        assertNull(report.getTiming(Cache.class).getFailure());
+        assertTrue("The component was interrupted", interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void timesComponentsFromTheirStartNotWhileQueued() throws Exception {
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        StartupOrchestrator.Component slow = new StartupOrchestrator.Component() {
+            public void initialize() throws Exception {
+                Thread.sleep(150);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            StartupReport report = new StartupOrchestrator().setParallelism(4).setTimeout(400, TimeUnit.MILLISECONDS)
+                    .add(Database.class, slow)
+                    .add(Cache.class, slow)
+                    .add(Queue.class, slow)
+                    .add(Web.class, record(events, "web"), Queue.class)
+                    .start(executor);
+            assertTrue(report.toString(), report.isSuccessful());
+            assertEquals(Arrays.asList("start web", "end web"), events);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void boundsParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger most = new AtomicInteger();
+        StartupOrchestrator orchestrator = new StartupOrchestrator().setParallelism(2);
+        Class<?>[] types = {Database.class, Cache.class, Queue.class, Web.class, String.class, Integer.class};
+        for (Class<?> type : types) {
+            orchestrator.add(type, new StartupOrchestrator.Component() {
+                public void initialize() throws Exception {
+                    int now = running.incrementAndGet();
+                    synchronized (most) {
+                        most.set(Math.max(most.get(), now));
+                    }
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                }
+            });
+        }
+        assertTrue(orchestrator.start().isSuccessful());
+        assertEquals(2, most.get());
+    }
+
+    @Test
+    public void rejectsUnknownAndCyclicDependencies() throws Exception {
+        try {
+            new StartupOrchestrator().add(Web.class, NOTHING, Cache.class).start();
+            fail("expected an unknown dependency");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(Cache.class.getName()));
+        }
+        try {
+            new StartupOrchestrator()
+                    .add(Web.class, NOTHING, Cache.class)
+                    .add(Cache.class, NOTHING, Web.class)
+                    .add(Database.class, NOTHING)
+                    .start();
+            fail("expected a cycle");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cycle"));
+            assertFalse(e.getMessage().contains(Database.class.getName()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.rreganjr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ValidationCollectorTests {
+
+    @Test
+    public void nothingCollected() throws Exception {
+        ValidationCollector collector = new ValidationCollector();
+        assertFalse(collector.hasFailures());
+        assertNull(collector.toException());
+        collector.throwIfFailed();
+    }
+
+    @Test
+    public void singleFailuresUseTheSingleValueMessages() throws Exception {
+        assertEquals(ApplicationException.invalidParameterValue("name", "value"),
+                new ValidationCollector().invalid("name", "value").toException());
+        assertEquals(ApplicationException.missingParameterValue("name"),
+                new ValidationCollector().missing("name").toException());
+        ApplicationException nullValue = new ValidationCollector().invalid("name", null).toException();
+        assertEquals(ApplicationException.invalidParameterValue("name", null), nullValue);
+        assertEquals(ApplicationException.invalidParameterValue("name", null).getMessage(), nullValue.getMessage());
+    }
+
+    @Test
+    public void severalFailuresOfOneKind() throws Exception {
+        ValidationCollector collector = new ValidationCollector().invalid("a", 1).invalid("b", "x");
+        assertEquals(ApplicationException.invalidParameterValues("a, b", "1, x"), collector.toException());
+        collector = new ValidationCollector();
+        assertFalse(collector.require("a", null));
+        assertFalse(collector.require("b", ""));
+        assertTrue(collector.require("c", "value"));
+        assertEquals(ApplicationException.missingParameterValues("a, b"), collector.toException());
+    }
+
+    @Test
+    public void invalidAndMissing() throws Exception {
+        ValidationCollector collector = new ValidationCollector().invalid("a", 1).missing("b").missing("c");
+        ApplicationException exception = collector.toException();
+        assertEquals(ApplicationException.MessageKeys.MSG_INVALID_AND_MISSING_VALUES, exception.getMessageKey());
+        assertEquals("\"The parameters \"a\" have invalid values = '\"1\"' and the parameters \"b, c\" have no value.\";",
+                exception.getMessage());
+        try {
+            collector.throwIfFailed();
+            fail("expected the exception");
+        } catch (ApplicationException e) {
+            assertEquals(exception, e);
+        }
+    }
+
+    @Test
+    public void onlyTheFirstFailuresAreNamed() throws Exception {
+        ValidationCollector collector = new ValidationCollector(2);
+        for (int i = 0; i < 5; i++) {
+            collector.missing("field" + i);
+        }
+        assertEquals(5, collector.getMissingCount());
+        assertEquals(ApplicationException.missingParameterValues("field0, field1 and 3 more"), collector.toException());
+    }
+
+    @Test
+    public void mergeKeepsOrder() throws Exception {
+        ValidationCollector left = new ValidationCollector().invalid("a", 1).missing("b");
+        ValidationCollector right = new ValidationCollector().invalid("c", 2).missing("d");
+        left.merge(right).merge(new ValidationCollector());
+        assertArrayEquals(new String[] {"a", "c"}, left.getInvalidNames());
+        assertArrayEquals(new Object[] {1, 2}, left.getInvalidValues());
+        assertArrayEquals(new String[] {"b", "d"}, left.getMissingNames());
+        assertEquals("The merged collector is not changed", 1, right.getInvalidCount());
+    }
+
+    @Test
+    public void validatesLargeListsInParallel() throws Exception {
+        List<String> fields = new ArrayList<String>();
+        for (int i = 0; i < 50000; i++) {
+            fields.add(i % 10 == 0 ? null : i % 7 == 0 ? "bad" : "good");
+        }
+        ValidationCollector.Validator<String> validator = new ValidationCollector.Validator<String>() {
+            @Override
+            public void validate(String item, int index, ValidationCollector collector) {
+                if (collector.require("fields[" + index + "]", item) && !"good".equals(item)) {
+                    collector.invalid("fields[" + index + "]", item);
+                }
+            }
+        };
+        ValidationCollector collector = ValidationCollector.validate(fields, validator, new ForkJoinPool(4), 10);
+        assertEquals(5000, collector.getMissingCount());
+        int invalid = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            if (i % 10 != 0 && i % 7 == 0) {
+                invalid++;
+            }
+        }
+        assertEquals(invalid, collector.getInvalidCount());
+        String[] missing = collector.getMissingNames();
+        for (int i = 0; i < missing.length; i++) {
+            assertEquals("Failures are in list order", "fields[" + (i * 10) + "]", missing[i]);
+        }
+        assertEquals(collector.getMissingCount(), ValidationCollector.validate(fields, validator).getMissingCount());
+    }
+}
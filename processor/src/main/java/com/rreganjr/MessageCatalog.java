@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface whose methods declare the factory methods of an exception, each with a
+ * {@link Message}. The MessageCatalogProcessor generates, in the same package:
+ *
+ * - an ApplicationException subclass named {@link #exception()} with a static factory method
+ *   per interface method, taking the same parameters,
+ * - its nested Keys enum of CompiledMessageKeys rendering each message without a bundle,
+ * - its base bundle, exception().properties, for translators to copy.
+ *
+ * For example:
+ *
+ * &#64;MessageCatalog(exception = "RequirementException")
+ * interface RequirementErrors {
+ *     &#64;Message("The requirement %s was not found.")
+ *     ApplicationException requirementNotFound(String id);
+ * }
+ *
+ * throw RequirementException.requirementNotFound(id);
+ *
+ * @author reemar.app@gmail.com
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface MessageCatalog {
+
+    /**
+     * @return the simple name of the generated exception class
+     */
+    String exception();
+
+    /**
+     * @return prepended to the upper case method names to make the key names
+     */
+    String keyPrefix() default "MSG_";
+}
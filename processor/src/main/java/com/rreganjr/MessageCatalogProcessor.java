@@ -0,0 +1,516 @@
+/*
+ * Copyright 2015 Ron Regan Jr. All Rights Reserved.
+ * 
+ * This file is part of Reemar - a collaborative system for Requirements 
+ * Elicitation, Elaboration, Refinement and Management.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.rreganjr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an ApplicationException subclass, its CompiledMessageKeys and its base bundle
+ * from each {@link MessageCatalog} interface, see there for what is generated.
+ *
+ * The build fails when a method has no {@link Message}, a pattern uses anything but %s, %%
+ * and %n, the number of %s differs from the number of method parameters, two methods share a
+ * key or a method doesn't return an ApplicationException. Parameters that are Throwables are
+ * rendered like any other argument and the last one is also the cause of the exception.
+ *
+ * @author reemar.app@gmail.com
+ */
+public class MessageCatalogProcessor extends AbstractProcessor {
+    static final String APPLICATION_EXCEPTION = "com.rreganjr.ApplicationException";
+    static final String COMPILED_MESSAGE_KEY = "com.rreganjr.CompiledMessageKey";
+
+    private static final Set<String> RETURN_TYPES = new HashSet<String>(Arrays.asList(
+            APPLICATION_EXCEPTION, "java.lang.RuntimeException", "java.lang.Exception", "java.lang.Throwable",
+            "java.lang.Object"));
+    private static final Map<TypeKind, String> BOXES = new HashMap<TypeKind, String>();
+
+    static {
+        BOXES.put(TypeKind.BOOLEAN, "Boolean");
+        BOXES.put(TypeKind.BYTE, "Byte");
+        BOXES.put(TypeKind.SHORT, "Short");
+        BOXES.put(TypeKind.INT, "Integer");
+        BOXES.put(TypeKind.LONG, "Long");
+        BOXES.put(TypeKind.CHAR, "Character");
+        BOXES.put(TypeKind.FLOAT, "Float");
+        BOXES.put(TypeKind.DOUBLE, "Double");
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(MessageCatalog.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(MessageCatalog.class)) {
+            if (element.getKind() != ElementKind.INTERFACE) {
+                error(element, "@MessageCatalog is only allowed on interfaces");
+                continue;
+            }
+            Catalog catalog = read((TypeElement) element);
+            if (catalog != null) {
+                try {
+                    writeException(catalog);
+                    writeBundle(catalog);
+                } catch (IOException e) {
+                    error(element, "Failed to generate " + catalog.exception + ": " + e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the catalog or null if it has errors, which are reported
+     */
+    private Catalog read(TypeElement type) {
+        MessageCatalog annotation = type.getAnnotation(MessageCatalog.class);
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        Catalog catalog = new Catalog(type, pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString(), annotation.exception());
+        boolean valid = true;
+        if (!SourceVersion.isIdentifier(catalog.exception) || SourceVersion.isKeyword(catalog.exception)) {
+            error(type, "exception must be a Java identifier: " + catalog.exception);
+            valid = false;
+        }
+        Map<String, ExecutableElement> keys = new HashMap<String, ExecutableElement>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD || !member.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) member;
+            Message message = method.getAnnotation(Message.class);
+            if (message == null) {
+                error(method, "Missing @Message for " + method.getSimpleName());
+                valid = false;
+                continue;
+            }
+            if (!method.getTypeParameters().isEmpty()) {
+                error(method, "Generic factory methods are not supported");
+                valid = false;
+                continue;
+            }
+            String returnType = processingEnv.getTypeUtils().erasure(method.getReturnType()).toString();
+            if (!RETURN_TYPES.contains(returnType)) {
+                error(method, "Must return " + APPLICATION_EXCEPTION + " or a supertype of it, not " + returnType);
+                valid = false;
+            }
+            String key = message.key().isEmpty()
+                    ? annotation.keyPrefix() + constantName(method.getSimpleName().toString()) : message.key();
+            if (!SourceVersion.isIdentifier(key) || SourceVersion.isKeyword(key)) {
+                error(method, "The key must be a Java identifier: " + key);
+                valid = false;
+            } else if (keys.containsKey(key)) {
+                error(method, "The key " + key + " is also used by " + keys.get(key).getSimpleName());
+                valid = false;
+            }
+            keys.put(key, method);
+            List<Piece> pieces = parse(message.value());
+            if (pieces == null) {
+                error(method, "Only %s, %% and %n are allowed in the pattern: " + message.value());
+                valid = false;
+                continue;
+            }
+            int slots = 0;
+            for (Piece piece : pieces) {
+                if (piece.kind == Piece.SLOT) {
+                    slots++;
+                }
+            }
+            if (slots != method.getParameters().size()) {
+                error(method, "The pattern has " + slots + " %s but " + method.getSimpleName() + " has "
+                        + method.getParameters().size() + " parameters: " + message.value());
+                valid = false;
+                continue;
+            }
+            catalog.entries.add(new Entry(method, key, message.value(), pieces));
+        }
+        return valid ? catalog : null;
+    }
+
+    /**
+     * Splits a pattern into literals, line separators and slots, the same way MessageTemplate does.
+     *
+     * @return the pieces or null if the pattern uses other conversions
+     */
+    static List<Piece> parse(String pattern) {
+        List<Piece> pieces = new ArrayList<Piece>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            char conversion = i + 1 < pattern.length() ? pattern.charAt(i + 1) : 0;
+            if (conversion == '%') {
+                literal.append('%');
+            } else if (conversion == 's' || conversion == 'n') {
+                if (literal.length() > 0) {
+                    pieces.add(new Piece(Piece.LITERAL, literal.toString()));
+                    literal.setLength(0);
+                }
+                pieces.add(new Piece(conversion == 's' ? Piece.SLOT : Piece.LINE_SEPARATOR, null));
+            } else {
+                return null;
+            }
+            i += 2;
+        }
+        if (literal.length() > 0) {
+            pieces.add(new Piece(Piece.LITERAL, literal.toString()));
+        }
+        return pieces;
+    }
+
+    private void writeException(Catalog catalog) throws IOException {
+        String name = catalog.exception;
+        StringBuilder src = new StringBuilder();
+        if (!catalog.pkg.isEmpty()) {
+            src.append("package ").append(catalog.pkg).append(";\n\n");
+        }
+        src.append("/**\n");
+        src.append(" * Generated by ").append(MessageCatalogProcessor.class.getName()).append(" from ")
+                .append(catalog.type.getQualifiedName()).append(", do not edit.\n");
+        src.append(" */\n");
+        src.append("public class ").append(name).append(" extends ").append(APPLICATION_EXCEPTION).append(" {\n");
+        src.append("    static final long serialVersionUID = 0;\n\n");
+        src.append("    /**\n     * The base name of the bundle translations are looked up in.\n     */\n");
+        src.append("    public static final String BUNDLE = ").append(literal(catalog.bundleName())).append(";\n\n");
+
+        src.append("    public enum Keys implements ").append(COMPILED_MESSAGE_KEY).append(" {\n");
+        for (int i = 0; i < catalog.entries.size(); i++) {
+            Entry entry = catalog.entries.get(i);
+            src.append("        ").append(entry.key).append(" {\n");
+            src.append("            @Override\n");
+            src.append("            public String render(Object[] args) {\n");
+            src.append("                return ").append(entry.renderer()).append("(");
+            List<? extends VariableElement> parameters = entry.method.getParameters();
+            for (int p = 0; p < parameters.size(); p++) {
+                if (p > 0) {
+                    src.append(", ");
+                }
+                TypeMirror type = parameters.get(p).asType();
+                String box = BOXES.get(type.getKind());
+                if (box != null) {
+                    src.append("((").append(box).append(") args[").append(p).append("]).")
+                            .append(type.getKind().name().toLowerCase()).append("Value()");
+                } else {
+                    src.append("(").append(processingEnv.getTypeUtils().erasure(type)).append(") args[").append(p).append("]");
+                }
+            }
+            src.append(");\n");
+            src.append("            }\n");
+            src.append("        }").append(i + 1 < catalog.entries.size() ? ",\n" : ";\n");
+        }
+        if (catalog.entries.isEmpty()) {
+            src.append("        ;\n");
+        }
+        src.append("    }\n\n");
+
+        src.append("    protected ").append(name).append("(").append(APPLICATION_EXCEPTION)
+                .append(".MessageKey msgKey, Object... args) {\n");
+        src.append("        super(msgKey, args);\n");
+        src.append("    }\n\n");
+        src.append("    protected ").append(name).append("(Throwable cause, ").append(APPLICATION_EXCEPTION)
+                .append(".MessageKey msgKey, Object... args) {\n");
+        src.append("        super(cause, msgKey, args);\n");
+        src.append("    }\n\n");
+        src.append("    @Override\n");
+        src.append("    protected String getBundleName() {\n");
+        src.append("        return BUNDLE;\n");
+        src.append("    }\n");
+
+        for (Entry entry : catalog.entries) {
+            List<? extends VariableElement> parameters = entry.method.getParameters();
+            String cause = null;
+            for (VariableElement parameter : parameters) {
+                if (isThrowable(parameter.asType())) {
+                    cause = parameter.getSimpleName().toString();
+                }
+            }
+            src.append("\n    /**\n     * ").append(javadoc(entry.pattern)).append("\n     */\n");
+            src.append("    public static ").append(name).append(" ").append(entry.method.getSimpleName()).append("(");
+            appendParameters(src, entry);
+            src.append(") {\n");
+            src.append("        return new ").append(name).append("(");
+            if (cause != null) {
+                src.append(cause).append(", ");
+            }
+            src.append("Keys.").append(entry.key).append(", new Object[] {");
+            for (int p = 0; p < parameters.size(); p++) {
+                if (p > 0) {
+                    src.append(", ");
+                }
+                src.append(parameters.get(p).getSimpleName());
+            }
+            src.append("});\n");
+            src.append("    }\n");
+        }
+
+        for (Entry entry : catalog.entries) {
+            List<? extends VariableElement> parameters = entry.method.getParameters();
+            int literalLength = 0;
+            for (Piece piece : entry.pieces) {
+                if (piece.kind == Piece.LITERAL) {
+                    literalLength += piece.text.length();
+                }
+            }
+            src.append("\n    static String ").append(entry.renderer()).append("(");
+            appendParameters(src, entry);
+            src.append(") {\n");
+            src.append("        StringBuilder sb = new StringBuilder(").append(literalLength + 16 * parameters.size()).append(");\n");
+            int slot = 0;
+            for (Piece piece : entry.pieces) {
+                if (piece.kind == Piece.LITERAL) {
+                    src.append("        sb.append(").append(literal(piece.text)).append(");\n");
+                } else if (piece.kind == Piece.LINE_SEPARATOR) {
+                    src.append("        sb.append(System.lineSeparator());\n");
+                } else {
+                    VariableElement parameter = parameters.get(slot++);
+                    if (parameter.asType().getKind().isPrimitive()) {
+                        src.append("        sb.append(").append(parameter.getSimpleName()).append(");\n");
+                    } else {
+                        src.append("        ").append(APPLICATION_EXCEPTION).append(".appendArgument(sb, ")
+                                .append(parameter.getSimpleName()).append(");\n");
+                    }
+                }
+            }
+            src.append("        return sb.toString();\n");
+            src.append("    }\n");
+        }
+        src.append("}\n");
+
+        Writer writer = processingEnv.getFiler().createSourceFile(catalog.qualifiedException(), catalog.type).openWriter();
+        try {
+            writer.write(src.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeBundle(Catalog catalog) throws IOException {
+        StringBuilder properties = new StringBuilder();
+        properties.append("# Generated by ").append(MessageCatalogProcessor.class.getName()).append(" from ")
+                .append(catalog.type.getQualifiedName()).append(", copy to ").append(catalog.exception)
+                .append("_<locale>.properties to translate.\n");
+        for (Entry entry : catalog.entries) {
+            properties.append(entry.key).append(" = ").append(propertyValue(entry.pattern)).append('\n');
+        }
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, catalog.pkg,
+                catalog.exception + ".properties", catalog.type);
+        OutputStream out = file.openOutputStream();
+        try {
+            out.write(properties.toString().getBytes(StandardCharsets.ISO_8859_1));
+        } finally {
+            out.close();
+        }
+    }
+
+    private void appendParameters(StringBuilder src, Entry entry) {
+        List<? extends VariableElement> parameters = entry.method.getParameters();
+        for (int p = 0; p < parameters.size(); p++) {
+            if (p > 0) {
+                src.append(", ");
+            }
+            VariableElement parameter = parameters.get(p);
+            if (entry.method.isVarArgs() && p == parameters.size() - 1) {
+                String type = parameter.asType().toString();
+                src.append(type, 0, type.length() - 2).append("...");
+            } else {
+                src.append(parameter.asType());
+            }
+            src.append(' ').append(parameter.getSimpleName());
+        }
+    }
+
+    private boolean isThrowable(TypeMirror type) {
+        TypeMirror throwable = processingEnv.getElementUtils().getTypeElement("java.lang.Throwable").asType();
+        return type.getKind() == TypeKind.DECLARED && processingEnv.getTypeUtils().isAssignable(type, throwable);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * @return requirementNotFound as REQUIREMENT_NOT_FOUND
+     */
+    static String constantName(String methodName) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < methodName.length(); i++) {
+            char c = methodName.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(methodName.charAt(i - 1))) {
+                sb.append('_');
+            }
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the text as a Java string literal
+     */
+    static String literal(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else if (c == '\t') {
+                sb.append("\\t");
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @return the text escaped as a properties file value
+     */
+    static String propertyValue(String text) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == ' ' && i == 0) {
+                sb.append("\\ ");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else if (c == '\t') {
+                sb.append("\\t");
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String javadoc(String pattern) {
+        return pattern.replace("*/", "*&#47;").replace("@", "&#64;").replace("\n", " ");
+    }
+
+    /**
+     * An interface annotated with MessageCatalog.
+     */
+    private static final class Catalog {
+        final TypeElement type;
+        final String pkg;
+        final String exception;
+        final List<Entry> entries = new ArrayList<Entry>();
+
+        Catalog(TypeElement type, String pkg, String exception) {
+            this.type = type;
+            this.pkg = pkg;
+            this.exception = exception;
+        }
+
+        String qualifiedException() {
+            return pkg.isEmpty() ? exception : pkg + "." + exception;
+        }
+
+        String bundleName() {
+            return qualifiedException();
+        }
+    }
+
+    /**
+     * A method of a catalog.
+     */
+    private static final class Entry {
+        final ExecutableElement method;
+        final String key;
+        final String pattern;
+        final List<Piece> pieces;
+
+        Entry(ExecutableElement method, String key, String pattern, List<Piece> pieces) {
+            this.method = method;
+            this.key = key;
+            this.pattern = pattern;
+            this.pieces = pieces;
+        }
+
+        String renderer() {
+            String name = method.getSimpleName().toString();
+            return "render" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+
+    /**
+     * A part of a pattern.
+     */
+    static final class Piece {
+        static final int LITERAL = 0;
+        static final int SLOT = 1;
+        static final int LINE_SEPARATOR = 2;
+
+        final int kind;
+        final String text;
+
+        Piece(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+}
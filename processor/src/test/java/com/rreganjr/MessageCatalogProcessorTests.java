@@ -0,0 +1,258 @@
+package com.rreganjr;
+
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+public class MessageCatalogProcessorTests {
+
+    private static final String CATALOG = "package com.example;\n"
+            + "import com.rreganjr.*;\n"
+            + "@MessageCatalog(exception = \"RequirementException\")\n"
+            + "interface RequirementErrors {\n"
+            + "    @Message(\"The requirement %s was not found.\")\n"
+            + "    ApplicationException requirementNotFound(String id);\n"
+            + "    @Message(\"The requirement %s has %s children, at most %s are allowed (100%%).\")\n"
+            + "    ApplicationException tooManyChildren(String id, int count, long max);\n"
+            + "    @Message(key = \"MSG_LOAD\", value = \"Could not load %s: %s\")\n"
+            + "    ApplicationException failedToLoad(java.util.List<String> ids, Throwable cause);\n"
+            + "    @Message(\"Unknown types %s\")\n"
+            + "    ApplicationException unknownTypes(String... types);\n"
+            + "}\n";
+
+    private static class Compilation {
+        boolean success;
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        Path output;
+
+        String errors() {
+            StringBuilder sb = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    sb.append(diagnostic.getMessage(Locale.ENGLISH)).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<Path> outputs = new ArrayList<Path>();
+
+    @After
+    public void tearDown() throws Exception {
+        for (Path output : outputs) {
+            delete(output.toFile());
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File locationOf(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private Compilation compile(final String source) throws Exception {
+        Compilation compilation = new Compilation();
+        compilation.output = Files.createTempDirectory("catalog");
+        outputs.add(compilation.output);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(compilation.diagnostics, Locale.ENGLISH, StandardCharsets.UTF_8);
+        try {
+            fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Arrays.asList(compilation.output.toFile()));
+            fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Arrays.asList(compilation.output.toFile()));
+            fileManager.setLocation(StandardLocation.CLASS_PATH, Arrays.asList(
+                    locationOf(ApplicationException.class), locationOf(MessageCatalog.class), locationOf(Log.class)));
+            JavaFileObject file = new SimpleJavaFileObject(new URI("string:///com/example/RequirementErrors.java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, compilation.diagnostics,
+                    null, null, Arrays.asList(file));
+            task.setProcessors(Arrays.asList(new MessageCatalogProcessor()));
+            compilation.success = task.call();
+        } finally {
+            fileManager.close();
+        }
+        return compilation;
+    }
+
+    private static Object invoke(Class<?> type, String name, Class<?>[] parameterTypes, Object... args) throws Exception {
+        Method method = type.getMethod(name, parameterTypes);
+        return method.invoke(null, args);
+    }
+
+    @Test
+    public void generatesExceptionKeysAndBundle() throws Exception {
+        Compilation compilation = compile(CATALOG);
+        assertTrue(compilation.errors(), compilation.success);
+        URLClassLoader loader = new URLClassLoader(new URL[] {compilation.output.toUri().toURL()}, getClass().getClassLoader());
+        try {
+            Class<?> type = loader.loadClass("com.example.RequirementException");
+            assertTrue(ApplicationException.class.isAssignableFrom(type));
+
+            ApplicationException notFound = (ApplicationException) invoke(type, "requirementNotFound",
+                    new Class<?>[] {String.class}, "R-1");
+            assertEquals("The requirement \"R-1\" was not found.", notFound.getMessage());
+            assertTrue(notFound.getMessageKey() instanceof CompiledMessageKey);
+            assertEquals("MSG_REQUIREMENT_NOT_FOUND", notFound.getMessageKey().name());
+
+            ApplicationException tooMany = (ApplicationException) invoke(type, "tooManyChildren",
+                    new Class<?>[] {String.class, int.class, long.class}, "R-1", 12, 10L);
+            assertEquals("The requirement \"R-1\" has 12 children, at most 10 are allowed (100%).", tooMany.getMessage());
+
+            IllegalStateException cause = new IllegalStateException("broken");
+            ApplicationException load = (ApplicationException) invoke(type, "failedToLoad",
+                    new Class<?>[] {List.class, Throwable.class}, Arrays.asList("R-1", "R-2"), cause);
+            assertEquals("MSG_LOAD", load.getMessageKey().name());
+            assertSame(cause, load.getCause());
+            assertEquals("Could not load \"R-1\", \"R-2\": " + cause, load.getMessage());
+
+            ApplicationException unknown = (ApplicationException) invoke(type, "unknownTypes",
+                    new Class<?>[] {String[].class}, (Object) new String[] {"a", "b"});
+            assertEquals("Unknown types \"a\", \"b\"", unknown.getMessage());
+
+            String bundle = new String(Files.readAllBytes(compilation.output.resolve("com/example/RequirementException.properties")),
+                    StandardCharsets.ISO_8859_1);
+            assertTrue(bundle, bundle.contains("MSG_REQUIREMENT_NOT_FOUND = The requirement %s was not found.\n"));
+            assertTrue(bundle, bundle.contains("MSG_LOAD = Could not load %s: %s\n"));
+
+            Files.write(compilation.output.resolve("com/example/RequirementException_fr.properties"),
+                    "MSG_TOO_MANY_CHILDREN = L'exigence %s a %s enfants, au plus %s sont permis (100%%).\n"
+                            .getBytes(StandardCharsets.ISO_8859_1));
+            assertEquals("L'exigence \"R-1\" a 12 enfants, au plus 10 sont permis (100%).", tooMany.getMessage(Locale.FRENCH));
+            if (!Locale.getDefault().getLanguage().equals("de")) {
+                assertEquals("Other locales fall back to the generated bundle",
+                        "The requirement \"R-1\" has 12 children, at most 10 are allowed (100%).", tooMany.getMessage(Locale.GERMAN));
+            }
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    public void generatedExceptionsRoundTripThroughTheCodec() throws Exception {
+        Compilation compilation = compile(CATALOG);
+        assertTrue(compilation.errors(), compilation.success);
+        URLClassLoader loader = new URLClassLoader(new URL[] {compilation.output.toUri().toURL()}, getClass().getClassLoader());
+        try {
+            Class<?> type = loader.loadClass("com.example.RequirementException");
+            ApplicationException[] exceptions = {
+                    (ApplicationException) invoke(type, "tooManyChildren",
+                            new Class<?>[] {String.class, int.class, long.class}, "R-1", 12, 10L),
+                    (ApplicationException) invoke(type, "failedToLoad",
+                            new Class<?>[] {List.class, Throwable.class}, Arrays.asList("R-1", "R-2"), new IllegalStateException("broken")),
+                    (ApplicationException) invoke(type, "unknownTypes",
+                            new Class<?>[] {String[].class}, (Object) new String[] {"a", "b"})
+            };
+            for (ApplicationException exception : exceptions) {
+                ByteBuffer buffer = ByteBuffer.allocate(4096);
+                ExceptionCodec.encode(exception, buffer);
+                ((Buffer) buffer).flip();
+                ApplicationException decoded = ExceptionCodec.decode(buffer, loader);
+                assertSame(type, decoded.getClass());
+                assertSame(exception.getMessageKey(), decoded.getMessageKey());
+                assertEquals(exception.getMessage(), decoded.getMessage());
+                assertEquals(exception, decoded);
+            }
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    public void aTranslationForTheDefaultLocaleWins() throws Exception {
+        Compilation compilation = compile(CATALOG);
+        assertTrue(compilation.errors(), compilation.success);
+        Files.write(compilation.output.resolve("com/example/RequirementException_de.properties"),
+                "MSG_REQUIREMENT_NOT_FOUND = Die Anforderung %s wurde nicht gefunden.\n".getBytes(StandardCharsets.ISO_8859_1));
+        URLClassLoader loader = new URLClassLoader(new URL[] {compilation.output.toUri().toURL()}, getClass().getClassLoader());
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Class<?> type = loader.loadClass("com.example.RequirementException");
+            Locale.setDefault(Locale.GERMANY);
+            ApplicationException notFound = (ApplicationException) invoke(type, "requirementNotFound",
+                    new Class<?>[] {String.class}, "R-1");
+            assertEquals("Die Anforderung \"R-1\" wurde nicht gefunden.", notFound.getMessage());
+            Locale.setDefault(Locale.ENGLISH);
+            notFound = (ApplicationException) invoke(type, "requirementNotFound", new Class<?>[] {String.class}, "R-1");
+            assertEquals("The requirement \"R-1\" was not found.", notFound.getMessage());
+        } finally {
+            Locale.setDefault(defaultLocale);
+            loader.close();
+        }
+    }
+
+    @Test
+    public void failsWhenSlotsAndParametersDiffer() throws Exception {
+        Compilation compilation = compile(CATALOG.replace("was not found.", "was not found in %s."));
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains("The pattern has 2 %s but requirementNotFound has 1 parameters"));
+    }
+
+    @Test
+    public void failsWhenAMessageIsMissing() throws Exception {
+        Compilation compilation = compile(CATALOG.replace("    @Message(\"Unknown types %s\")\n", ""));
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains("Missing @Message for unknownTypes"));
+    }
+
+    @Test
+    public void failsOnUnsupportedConversions() throws Exception {
+        Compilation compilation = compile(CATALOG.replace("has %s children", "has %d children"));
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains("Only %s, %% and %n are allowed"));
+    }
+
+    @Test
+    public void failsOnDuplicateKeys() throws Exception {
+        Compilation compilation = compile(CATALOG.replace("key = \"MSG_LOAD\"", "key = \"MSG_REQUIREMENT_NOT_FOUND\""));
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains("The key MSG_REQUIREMENT_NOT_FOUND is also used by"));
+    }
+
+    @Test
+    public void names() throws Exception {
+        assertEquals("REQUIREMENT_NOT_FOUND", MessageCatalogProcessor.constantName("requirementNotFound"));
+        assertEquals("\"a\\\"b\\\\c\\n\\u00e9\"", MessageCatalogProcessor.literal("a\"b\\c\né"));
+        assertEquals("\\ a\\\\b\\u00e9", MessageCatalogProcessor.propertyValue(" a\\bé"));
+        assertNull(MessageCatalogProcessor.parse("%d"));
+        assertEquals(6, MessageCatalogProcessor.parse("a %s b%n%s%%").size());
+    }
+}